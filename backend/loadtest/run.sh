@@ -0,0 +1,19 @@
+#!/usr/bin/env bash
+# Runs threads.js at 1k and 5k concurrent connections against an already running
+# backend and writes results/<mode>-<vus>.json. Start the backend once per mode:
+#
+#   platform: mvn spring-boot:run
+#   virtual:  mvn -Pvirtual-threads spring-boot:run        (JDK 21)
+#
+# then run e.g. ./run.sh platform and ./run.sh virtual and compare the summaries.
+set -euo pipefail
+
+MODE=${1:?usage: run.sh <platform|virtual> [vus...]}
+shift
+LEVELS=${*:-1000 5000}
+
+cd "$(dirname "$0")"
+mkdir -p results
+for vus in $LEVELS; do
+    k6 run --quiet -e MODE="$MODE" -e VUS="$vus" threads.js
+done
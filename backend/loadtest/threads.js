@@ -0,0 +1,69 @@
+// Load test for comparing platform-thread and virtual-thread mode.
+//
+//   k6 run -e MODE=platform -e VUS=1000 threads.js
+//
+// Every virtual user keeps one connection open and loops over a storefront mix:
+// catalog reads, the caller's order list, and (with ORDER_ID set) a Stripe
+// PaymentIntent for a PENDING order, which blocks the request thread on Stripe.
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const MODE = __ENV.MODE || 'platform';
+const VUS = parseInt(__ENV.VUS || '1000', 10);
+const DURATION = __ENV.DURATION || '2m';
+const ORDER_ID = __ENV.ORDER_ID;
+
+export const options = {
+    scenarios: {
+        steady: {
+            executor: 'constant-vus',
+            vus: VUS,
+            duration: DURATION,
+            gracefulStop: '30s',
+        },
+    },
+    // Reported, not enforced: the point is the comparison between modes
+    thresholds: {
+        'http_req_duration{route:products}': ['p(99)>=0'],
+        'http_req_duration{route:orders}': ['p(99)>=0'],
+        'http_req_duration{route:payment}': ['p(99)>=0'],
+    },
+    summaryTrendStats: ['avg', 'med', 'p(90)', 'p(99)', 'max'],
+};
+
+export function setup() {
+    const res = http.post(`${BASE_URL}/api/auth/signin`, JSON.stringify({
+        email: __ENV.EMAIL || 'loadtest@example.com',
+        password: __ENV.PASSWORD || 'loadtest123',
+    }), { headers: { 'Content-Type': 'application/json' } });
+    check(res, { 'signed in': (r) => r.status === 200 });
+    return { token: res.json('token') };
+}
+
+export default function (data) {
+    const auth = { headers: { Authorization: `Bearer ${data.token}`, 'Content-Type': 'application/json' } };
+    const roll = Math.random();
+
+    if (roll < 0.7) {
+        const res = http.get(`${BASE_URL}/api/products`, { tags: { route: 'products' } });
+        check(res, { 'products 200': (r) => r.status === 200 });
+    } else if (roll < 0.9 || !ORDER_ID) {
+        const res = http.get(`${BASE_URL}/api/orders?size=20`, Object.assign({ tags: { route: 'orders' } }, auth));
+        check(res, { 'orders 200': (r) => r.status === 200 });
+    } else {
+        // Any answer from Stripe (even a declined test key) exercises the blocking call
+        const res = http.post(`${BASE_URL}/api/payments/create-payment-intent`,
+            JSON.stringify({ orderId: ORDER_ID }), Object.assign({ tags: { route: 'payment' } }, auth));
+        check(res, { 'payment answered': (r) => r.status !== 0 && r.status < 502 });
+    }
+}
+
+export function handleSummary(data) {
+    const file = `results/${MODE}-${VUS}.json`;
+    const out = { stdout: `${MODE} @ ${VUS} connections: ` +
+        `${data.metrics.http_reqs.values.rate.toFixed(1)} req/s, ` +
+        `p99 ${data.metrics.http_req_duration.values['p(99)'].toFixed(1)} ms\n` };
+    out[file] = JSON.stringify(data, null, 2);
+    return out;
+}
@@ -1,9 +1,14 @@
 package com.sutrini;
 
 import org.springframework.boot.SpringApplication;
+import com.sutrini.repository.TenantAwareMongoRepository;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
+@EnableMongoRepositories(repositoryBaseClass = TenantAwareMongoRepository.class)
 public class SutriniApplication {
 
 	public static void main(String[] args) {
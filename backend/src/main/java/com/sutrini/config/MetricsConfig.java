@@ -0,0 +1,77 @@
+package com.sutrini.config;
+
+import com.sutrini.security.BoundedPasswordEncoder;
+import com.sutrini.security.PrincipalCache;
+import com.sutrini.security.RateLimitFilter;
+import com.sutrini.service.OrderOutboxDispatcher;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.core.instrument.binder.mongodb.MongoCommandTagsProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+
+/**
+ * Application metrics next to the ones Spring Boot records on its own (HTTP requests
+ * per endpoint, repository invocations per method, Mongo commands and connection
+ * pool, Tomcat threads, JVM). All of them are scraped from
+ * {@code /actuator/prometheus} on the management port.
+ */
+@Configuration
+public class MetricsConfig {
+
+    // Replaces Boot's default provider, which the driver command listener then uses
+    @Bean
+    public MongoCommandTagsProvider mongoCommandTagsProvider() {
+        return new RepositoryCommandTagsProvider();
+    }
+
+    // Static, so it exists before the repository factory beans are created
+    @Bean
+    public static BeanPostProcessor repositoryOriginPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+                    factoryBean.addRepositoryFactoryCustomizer(factory ->
+                            factory.addRepositoryProxyPostProcessor(RepositoryCommandTagsProvider.originTracker()));
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * Hits, misses, evictions and size of the authenticated principal cache, as
+     * {@code cache.gets}, {@code cache.evictions} and {@code cache.size} tagged
+     * {@code cache=principals}.
+     */
+    @Bean
+    public MeterBinder principalCacheMetrics(PrincipalCache principalCache) {
+        return registry -> CaffeineCacheMetrics.monitor(registry, principalCache.getCache(), "principals");
+    }
+
+    /**
+     * Occupancy of the application's own pools, read when scraped.
+     */
+    @Bean
+    public MeterBinder applicationPoolMetrics(BoundedPasswordEncoder passwordEncoder, RateLimitFilter rateLimitFilter,
+            OrderOutboxDispatcher outboxDispatcher) {
+        return registry -> {
+            Gauge.builder("sutrini.password.hashing.active", passwordEncoder, BoundedPasswordEncoder::getActiveCount)
+                    .description("Password hashes being computed")
+                    .register(registry);
+            Gauge.builder("sutrini.password.hashing.queued", passwordEncoder, BoundedPasswordEncoder::getQueueDepth)
+                    .description("Password hashes waiting for a hashing thread")
+                    .register(registry);
+            Gauge.builder("sutrini.ratelimit.clients", rateLimitFilter, RateLimitFilter::getTrackedClients)
+                    .description("Clients with a partly used rate limit allowance")
+                    .register(registry);
+            Gauge.builder("sutrini.outbox.in.flight", outboxDispatcher, OrderOutboxDispatcher::getInFlight)
+                    .description("Orders whose outbox events are being published")
+                    .register(registry);
+        };
+    }
+}
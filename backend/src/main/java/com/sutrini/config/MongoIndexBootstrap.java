@@ -0,0 +1,224 @@
+package com.sutrini.config;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mapping.context.MappingContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Creates the indexes declared with {@code @Indexed}/{@code @CompoundIndex} on the
+ * document classes, then reports drift between declared and actual indexes and the
+ * query plan of every repository finder, so a finder that falls back to a collection
+ * scan shows up as a warning at startup rather than as a slow page in production.
+ * Disable with {@code mongo.indexes.bootstrap=false}.
+ */
+@Component
+@Order(0)
+@ConditionalOnProperty(name = "mongo.indexes.bootstrap", havingValue = "true", matchIfMissing = true)
+public class MongoIndexBootstrap implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(MongoIndexBootstrap.class);
+
+    /**
+     * The query shape each repository finder sends, with placeholder values.
+     */
+    private record Finder(String name, String collection, Document filter, Document sort) {
+    }
+
+    private static final List<Finder> FINDERS = List.of(
+            new Finder("UserRepository.findByEmail", "users",
+                    new Document("email", "explain@example.invalid"), new Document()),
+            new Finder("OrderRepository.findByTenantIdAndCustomerId (newest first)", "orders",
+                    new Document("tenantId", "explain").append("customerId", "explain"),
+                    new Document("createdAt", -1).append("_id", -1)),
+            new Finder("OrderRepository.findSummariesByTenantId (newest first)", "orders",
+                    new Document("tenantId", "explain"), new Document("createdAt", -1).append("_id", -1)),
+            new Finder("OrderRepository.findByTenantIdAndStatus / label sheets", "orders",
+                    new Document("tenantId", "explain").append("status", "PENDING"),
+                    new Document("createdAt", 1).append("_id", 1)),
+            new Finder("StockService.releaseExpiredReservations", "orders",
+                    new Document("status", "PENDING").append("stockReserved", true)
+                            .append("reservationExpiresAt", new Document("$lt", new Date())),
+                    new Document()),
+            new Finder("OrderOutboxDispatcher.claim", "orders",
+                    new Document("outboxDueAt", new Document("$lte", new Date())), new Document("outboxDueAt", 1)),
+            new Finder("ProductRepository.findByTenantIdAndCategory", "products",
+                    new Document("tenantId", "explain").append("category", "explain"), new Document()),
+            new Finder("ProductRepository.findByTenantIdAndActiveTrue (by name)", "products",
+                    new Document("tenantId", "explain").append("active", true),
+                    new Document("name", 1).append("_id", 1)),
+            new Finder("AnalyticsService best sellers", "analytics_products",
+                    new Document("tenantId", "explain"), new Document("revenue", -1)));
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${mongo.indexes.explain-report:true}")
+    private boolean explainReport;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> mappingContext =
+                mongoTemplate.getConverter().getMappingContext();
+        IndexResolver resolver = IndexResolver.create(mappingContext);
+
+        for (MongoPersistentEntity<?> entity : mappingContext.getPersistentEntities()) {
+            if (!entity.isAnnotationPresent(org.springframework.data.mongodb.core.mapping.Document.class)) {
+                continue;
+            }
+            List<IndexDefinition> declared = new ArrayList<>();
+            resolver.resolveIndexFor(entity.getType()).forEach(declared::add);
+            ensureIndexes(entity.getCollection(), declared);
+            reportDrift(entity.getCollection(), declared);
+        }
+
+        if (explainReport) {
+            FINDERS.forEach(this::explain);
+        }
+    }
+
+    /**
+     * The winning plan of every repository finder as its stages from the top down, by
+     * finder name; empty when the finder could not be explained.
+     */
+    Map<String, Set<String>> queryPlans() {
+        Map<String, Set<String>> plans = new LinkedHashMap<>();
+        for (Finder finder : FINDERS) {
+            plans.put(finder.name(), explain(finder));
+        }
+        return plans;
+    }
+
+    private void ensureIndexes(String collection, List<IndexDefinition> declared) {
+        IndexOperations indexOps = mongoTemplate.indexOps(collection);
+        for (IndexDefinition index : declared) {
+            try {
+                indexOps.ensureIndex(index);
+            } catch (RuntimeException e) {
+                // Typically an index of the same name with other keys or options; see the drift report
+                logger.warn("Could not create index {} on {}: {}", nameOf(index), collection, e.getMessage());
+            }
+        }
+    }
+
+    private void reportDrift(String collection, List<IndexDefinition> declared) {
+        Map<String, Document> actual = new LinkedHashMap<>();
+        for (Document index : mongoTemplate.getCollection(collection).listIndexes()) {
+            actual.put(index.getString("name"), index);
+        }
+        actual.remove("_id_");
+
+        int drift = 0;
+        for (IndexDefinition index : declared) {
+            Document existing = actual.remove(nameOf(index));
+            if (existing == null) {
+                logger.warn("Index drift on {}: declared index {} {} is missing", collection, nameOf(index),
+                        index.getIndexKeys().toJson());
+                drift++;
+            } else if (!sameKeys(index.getIndexKeys(), existing.get("key", Document.class))
+                    || index.getIndexOptions().getBoolean("unique", false) != existing.getBoolean("unique", false)) {
+                logger.warn("Index drift on {}: {} is declared as {} but exists as {}", collection, nameOf(index),
+                        index.getIndexKeys().toJson(), existing.get("key", Document.class).toJson());
+                drift++;
+            }
+        }
+        for (Document undeclared : actual.values()) {
+            logger.warn("Index drift on {}: index {} {} is not declared on the document class", collection,
+                    undeclared.getString("name"), undeclared.get("key", Document.class).toJson());
+            drift++;
+        }
+        if (drift == 0) {
+            logger.info("Indexes on {} match the declared {}", collection, declared.size());
+        }
+    }
+
+    private Set<String> explain(Finder finder) {
+        Document command = new Document("explain", new Document("find", finder.collection())
+                .append("filter", finder.filter())
+                .append("sort", finder.sort()))
+                .append("verbosity", "queryPlanner");
+        Set<String> stages = new LinkedHashSet<>();
+        try {
+            Document planner = mongoTemplate.getDb().runCommand(command).get("queryPlanner", Document.class);
+            collectStages(planner.get("winningPlan"), stages);
+            String plan = String.join(" <- ", stages);
+            if (stages.contains("COLLSCAN")) {
+                logger.warn("Query plan for {}: {} - collection scan, check the declared indexes", finder.name(), plan);
+            } else {
+                logger.info("Query plan for {}: {}", finder.name(), plan);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Could not explain {}: {}", finder.name(), e.getMessage());
+        }
+        return stages;
+    }
+
+    // Stage names from the top of the plan down, across classic and slot-based plan layouts
+    private static void collectStages(Object node, Set<String> stages) {
+        if (node instanceof Document document) {
+            Object stage = document.get("stage");
+            if (stage instanceof String name) {
+                String indexName = document.getString("indexName");
+                stages.add(indexName != null ? name + " " + indexName : name);
+            }
+            for (Object value : document.values()) {
+                collectStages(value, stages);
+            }
+        } else if (node instanceof List<?> list) {
+            for (Object value : list) {
+                collectStages(value, stages);
+            }
+        }
+    }
+
+    private static boolean sameKeys(Document declared, Document actual) {
+        if (actual == null || declared.size() != actual.size()) {
+            return false;
+        }
+        Iterator<Map.Entry<String, Object>> expected = declared.entrySet().iterator();
+        Iterator<Map.Entry<String, Object>> found = actual.entrySet().iterator();
+        while (expected.hasNext()) {
+            Map.Entry<String, Object> e = expected.next();
+            Map.Entry<String, Object> f = found.next();
+            if (!e.getKey().equals(f.getKey()) || !sameDirection(e.getValue(), f.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The server may echo 1 back as 1.0 or a long
+    private static boolean sameDirection(Object declared, Object actual) {
+        if (declared instanceof Number d && actual instanceof Number a) {
+            return d.intValue() == a.intValue();
+        }
+        return Objects.equals(declared, actual);
+    }
+
+    private static String nameOf(IndexDefinition index) {
+        return index.getIndexOptions().getString("name");
+    }
+}
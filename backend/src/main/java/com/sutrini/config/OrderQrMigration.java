@@ -0,0 +1,44 @@
+package com.sutrini.config;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * One-off migration replacing the base64 QR images stored in old orders with the
+ * link to the on-demand QR endpoint. Runs server-side as a single pipeline update;
+ * enable with {@code migrations.strip-order-qr=true} and remove the flag afterwards.
+ */
+@Component
+@ConditionalOnProperty(name = "migrations.strip-order-qr", havingValue = "true")
+public class OrderQrMigration implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderQrMigration.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Document qrPath = new Document("$concat", List.of(
+                "/api/orders/", new Document("$toString", "$_id"), "/qr"));
+
+        UpdateResult result = mongoTemplate.getCollection("orders").updateMany(
+                Filters.regex("qrCodeUrl", "^data:image/"),
+                List.of(new Document("$set", new Document("qrCodeUrl", qrPath)
+                        .append("version", new Document("$add", List.of(new Document("$ifNull", List.of("$version", 0)), 1)))
+                        .append("updatedAt", "$$NOW"))));
+
+        logger.info("Stripped embedded QR images from {} orders", result.getModifiedCount());
+    }
+}
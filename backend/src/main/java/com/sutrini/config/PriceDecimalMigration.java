@@ -0,0 +1,69 @@
+package com.sutrini.config;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * One-off migration converting the prices written as strings before they were mapped
+ * to Decimal128 (product base prices, order totals and item unit prices), so sorting
+ * and range queries on them compare numbers. Runs server-side as one pipeline update
+ * per collection; enable with {@code migrations.decimal-prices=true} and remove the
+ * flag afterwards.
+ */
+@Component
+@ConditionalOnProperty(name = "migrations.decimal-prices", havingValue = "true")
+public class PriceDecimalMigration implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(PriceDecimalMigration.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        UpdateResult products = mongoTemplate.getCollection("products").updateMany(
+                Filters.type("basePrice", BsonType.STRING),
+                List.of(versioned(new Document("basePrice", toDecimal("$basePrice")))));
+        logger.info("Converted the base price of {} products to Decimal128", products.getModifiedCount());
+
+        Document items = new Document("$map", new Document("input", "$items")
+                .append("as", "item")
+                .append("in", new Document("$mergeObjects", List.of("$$item",
+                        new Document("unitPrice", toDecimal("$$item.unitPrice"))))));
+        Bson stringPrices = Filters.or(
+                Filters.type("totalAmount", BsonType.STRING),
+                Filters.type("items.unitPrice", BsonType.STRING));
+        UpdateResult orders = mongoTemplate.getCollection("orders").updateMany(stringPrices,
+                List.of(versioned(new Document("totalAmount", toDecimal("$totalAmount"))
+                        .append("items", new Document("$cond", List.of(
+                                new Document("$isArray", "$items"), items, "$items"))))));
+        logger.info("Converted the prices of {} orders to Decimal128", orders.getModifiedCount());
+    }
+
+    // Missing and null values stay as they are
+    private static Document toDecimal(String field) {
+        return new Document("$convert", new Document("input", field)
+                .append("to", "decimal")
+                .append("onNull", field));
+    }
+
+    // Versioned documents; a changed document must get a new ETag
+    private static Document versioned(Document set) {
+        return new Document("$set", set
+                .append("version", new Document("$add", List.of(new Document("$ifNull", List.of("$version", 0)), 1)))
+                .append("updatedAt", "$$NOW"));
+    }
+}
@@ -0,0 +1,81 @@
+package com.sutrini.config;
+
+import com.mongodb.event.CommandEvent;
+import com.mongodb.event.CommandStartedEvent;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.mongodb.DefaultMongoCommandTagsProvider;
+import io.micrometer.core.instrument.binder.mongodb.MongoCommandTagsProvider;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.data.repository.core.support.RepositoryProxyPostProcessor;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tags the driver's {@code mongodb.driver.commands} timers with the repository method
+ * that sent each command ({@code origin=UserRepository.findByEmail}), so time in Mongo
+ * can be read per repository method and not only per command and collection. The
+ * method is recorded in a thread local around each repository call by the proxy
+ * post-processor from {@link #originTracker()}; the synchronous driver notifies its
+ * command listeners on the calling thread. Commands sent through MongoTemplate
+ * directly are tagged {@value #NO_REPOSITORY}.
+ */
+public class RepositoryCommandTagsProvider implements MongoCommandTagsProvider {
+
+    static final String NO_REPOSITORY = "none";
+
+    private static final ThreadLocal<String> ORIGIN = new ThreadLocal<>();
+
+    private final MongoCommandTagsProvider defaults = new DefaultMongoCommandTagsProvider();
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        defaults.commandStarted(event);
+    }
+
+    @Override
+    public Iterable<Tag> commandTags(CommandEvent event) {
+        String origin = ORIGIN.get();
+        return Tags.concat(defaults.commandTags(event), "origin", origin != null ? origin : NO_REPOSITORY);
+    }
+
+    /**
+     * Records the repository method being invoked for the duration of the call.
+     */
+    public static RepositoryProxyPostProcessor originTracker() {
+        return (factory, repositoryInformation) -> factory.addAdvice(
+                new OriginInterceptor(repositoryInformation.getRepositoryInterface().getSimpleName()));
+    }
+
+    private static final class OriginInterceptor implements MethodInterceptor {
+
+        private final String repository;
+
+        // Tag values are built once per method
+        private final Map<Method, String> origins = new ConcurrentHashMap<>();
+
+        OriginInterceptor(String repository) {
+            this.repository = repository;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            String origin = origins.computeIfAbsent(invocation.getMethod(), method -> repository + "." + method.getName());
+            String outer = ORIGIN.get();
+            ORIGIN.set(origin);
+            try {
+                return invocation.proceed();
+            } finally {
+                // A repository calling another (default methods) keeps the outer origin afterwards
+                if (outer != null) {
+                    ORIGIN.set(outer);
+                } else {
+                    ORIGIN.remove();
+                }
+            }
+        }
+    }
+}
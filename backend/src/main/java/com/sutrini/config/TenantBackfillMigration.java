@@ -0,0 +1,54 @@
+package com.sutrini.config;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.result.UpdateResult;
+import com.sutrini.security.TenantContext;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * One-off migration moving data created before tenant scoping into the default
+ * tenant: products without a tenant, and users and orders carrying the random
+ * per-user tenant id that registration used to mint. Enable with
+ * {@code migrations.backfill-tenant=true} and remove the flag afterwards.
+ */
+@Component
+@ConditionalOnProperty(name = "migrations.backfill-tenant", havingValue = "true")
+public class TenantBackfillMigration implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(TenantBackfillMigration.class);
+
+    private static final String RANDOM_TENANT = "^[0-9a-f]{8}-[0-9a-f]{4}-4[0-9a-f]{3}-[89ab][0-9a-f]{3}-[0-9a-f]{12}$";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        String tenant = TenantContext.getDefaultTenant();
+        // eq null also matches documents without the field
+        Bson unassigned = Filters.or(
+                Filters.eq(TenantContext.FIELD, null),
+                Filters.regex(TenantContext.FIELD, RANDOM_TENANT));
+
+        for (String collection : List.of("users", "orders", "products")) {
+            Bson update = Updates.set(TenantContext.FIELD, tenant);
+            if (!collection.equals("users")) {
+                // Orders and products are versioned; a changed document must get a new ETag
+                update = Updates.combine(update, Updates.inc("version", 1L), Updates.currentDate("updatedAt"));
+            }
+            UpdateResult result = mongoTemplate.getCollection(collection).updateMany(unassigned, update);
+            logger.info("Moved {} {} into tenant {}", result.getModifiedCount(), collection, tenant);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.sutrini.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reports virtual threads pinned to their carrier (blocking inside a
+ * {@code synchronized} block or native frame, e.g. in the Mongo or Stripe client)
+ * for longer than {@code threads.pinning-monitor.threshold-ms}, using the JDK's own
+ * {@code jdk.VirtualThreadPinned} flight recorder event. Each pinning site is logged
+ * with its stack the first time and then at every power of two occurrences, so a hot
+ * site shows up without flooding the log. On JVMs without virtual threads the event
+ * does not exist and nothing is reported. Enable with
+ * {@code threads.pinning-monitor.enabled=true}.
+ */
+@Component
+@ConditionalOnProperty(name = "threads.pinning-monitor.enabled", havingValue = "true")
+public class VirtualThreadPinningMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    @Value("${threads.pinning-monitor.threshold-ms:20}")
+    private long thresholdMs;
+
+    @Value("${threads.pinning-monitor.stack-depth:12}")
+    private int stackDepth;
+
+    private final Map<String, AtomicLong> sites = new ConcurrentHashMap<>();
+
+    private RecordingStream stream;
+
+    @PostConstruct
+    void start() {
+        stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(Duration.ofMillis(thresholdMs)).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::pinned);
+        stream.startAsync();
+        logger.info("Reporting virtual threads pinned for more than {} ms", thresholdMs);
+    }
+
+    @PreDestroy
+    void stop() {
+        stream.close();
+    }
+
+    private void pinned(RecordedEvent event) {
+        String stack = stack(event.getStackTrace());
+        long count = sites.computeIfAbsent(stack, s -> new AtomicLong()).incrementAndGet();
+        // 1st, 2nd, 4th, 8th, ... occurrence of this site
+        if ((count & (count - 1)) == 0) {
+            logger.warn("Virtual thread pinned for {} ms (seen {} times here):\n{}",
+                    event.getDuration().toMillis(), count, stack);
+        }
+    }
+
+    private String stack(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "\tat <no stack trace>";
+        }
+        List<RecordedFrame> frames = stackTrace.getFrames();
+        StringBuilder stack = new StringBuilder();
+        for (int i = 0; i < Math.min(stackDepth, frames.size()); i++) {
+            RecordedFrame frame = frames.get(i);
+            if (i > 0) {
+                stack.append('\n');
+            }
+            stack.append("\tat ").append(frame.getMethod().getType().getName())
+                    .append('.').append(frame.getMethod().getName())
+                    .append(':').append(frame.getLineNumber());
+        }
+        return stack.toString();
+    }
+}
@@ -0,0 +1,64 @@
+package com.sutrini.controller;
+
+import com.sutrini.dto.MessageResponse;
+import com.sutrini.security.TenantContext;
+import com.sutrini.service.AnalyticsService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/analytics")
+@Tag(name = "Analytics", description = "Sales and production dashboard APIs - Admin endpoints")
+public class AnalyticsController {
+
+    @Autowired
+    AnalyticsService analyticsService;
+
+    @Value("${analytics.max-days:366}")
+    int maxDays;
+
+    @Operation(summary = "Get Dashboard (Admin)", description = "Revenue, orders and units per day for a date range (default: the last 30 days), the best-selling products and the number of orders in each status. Served from rollups maintained as orders are placed and change status, and cached briefly, so it loads in constant time whatever the order volume. Requires ADMIN role.", security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Dashboard"),
+            @ApiResponse(responseCode = "400", description = "Invalid or too long date range"),
+            @ApiResponse(responseCode = "403", description = "Not authorized - Admin role required")
+    })
+    @GetMapping("/dashboard")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getDashboard(
+            @Parameter(description = "First day, inclusive (optional)", example = "2024-12-01") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @Parameter(description = "Last day, inclusive (optional, default today)", example = "2024-12-31") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(29);
+        if (start.isAfter(end) || ChronoUnit.DAYS.between(start, end) >= maxDays) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: Date range must be between 1 and " + maxDays + " days"));
+        }
+        return ResponseEntity.ok(analyticsService.dashboard(TenantContext.current(), start, end));
+    }
+
+    @Operation(summary = "Rebuild Analytics (Admin)", description = "Recompute the tenant's dashboard rollups from all of its orders with server-side aggregation pipelines. Only needed after data was changed outside the API or an update failed; best run when the shop is quiet. Requires ADMIN role.", security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Number of rollup documents written and time taken"),
+            @ApiResponse(responseCode = "403", description = "Not authorized - Admin role required")
+    })
+    @PostMapping("/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> rebuild() {
+        return ResponseEntity.ok(analyticsService.rebuild(TenantContext.current()));
+    }
+}
@@ -3,33 +3,43 @@ package com.sutrini.controller;
 import com.sutrini.dto.JwtResponse;
 import com.sutrini.dto.LoginRequest;
 import com.sutrini.dto.MessageResponse;
+import com.sutrini.dto.RefreshTokenRequest;
 import com.sutrini.dto.RegisterRequest;
+import com.sutrini.dto.StaffRequest;
 import com.sutrini.model.Role;
 import com.sutrini.model.User;
 import com.sutrini.repository.UserRepository;
 import com.sutrini.security.JwtUtil;
+import com.sutrini.security.LoginThrottle;
+import com.sutrini.security.TenantContext;
+import com.sutrini.security.TokenRevocationList;
+import com.sutrini.security.UserPrincipal;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
@@ -49,49 +59,108 @@ public class AuthController {
     @Autowired
     JwtUtil jwtUtils;
 
+    @Autowired
+    TokenRevocationList revocationList;
+
+    @Autowired
+    LoginThrottle loginThrottle;
+
     @Operation(summary = "User Sign In", description = "Authenticate user credentials and receive JWT token. Used by both consumers and admins. The returned JWT token must be included in the Authorization header (as 'Bearer {token}') for subsequent authenticated requests.")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Successfully authenticated", content = @Content(mediaType = "application/json", schema = @Schema(implementation = JwtResponse.class), examples = @ExampleObject(name = "Successful Login", value = "{\"token\": \"eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9...\", \"id\": \"123abc\", \"email\": \"user@example.com\", \"roles\": [\"CUSTOMER\"]}"))),
-            @ApiResponse(responseCode = "401", description = "Invalid credentials", content = @Content(mediaType = "application/json"))
+            @ApiResponse(responseCode = "200", description = "Successfully authenticated", content = @Content(mediaType = "application/json", schema = @Schema(implementation = JwtResponse.class), examples = @ExampleObject(name = "Successful Login", value = "{\"token\": \"eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9...\", \"refreshToken\": \"eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9...\", \"id\": \"123abc\", \"email\": \"user@example.com\", \"roles\": [\"CUSTOMER\"]}"))),
+            @ApiResponse(responseCode = "401", description = "Invalid credentials", content = @Content(mediaType = "application/json")),
+            @ApiResponse(responseCode = "429", description = "Too many attempts from this address or failed attempts for this email; see Retry-After", content = @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class))),
+            @ApiResponse(responseCode = "503", description = "Password hashing is saturated; see Retry-After", content = @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class)))
     })
     @PostMapping("/signin")
-    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest,
+            HttpServletRequest request) {
+        long retryAfter = loginThrottle.signInAttempt(loginRequest.getEmail(), request.getRemoteAddr());
+        if (retryAfter > 0) {
+            return tooManyAttempts(retryAfter);
+        }
 
-        Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(loginRequest.getEmail(), loginRequest.getPassword()));
+        Authentication authentication;
+        try {
+            authentication = authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(loginRequest.getEmail(), loginRequest.getPassword()));
+        } catch (BadCredentialsException e) {
+            loginThrottle.signInFailed(loginRequest.getEmail());
+            throw e;
+        }
+        loginThrottle.signInSucceeded(loginRequest.getEmail());
 
         SecurityContextHolder.getContext().setAuthentication(authentication);
-        UserDetails userDetails = (UserDetails) authentication.getPrincipal(); // Assuming UserDetailsServiceImpl
-                                                                               // returns standard UserDetails
-        String jwt = jwtUtils.generateToken(userDetails);
-
-        List<String> roles = userDetails.getAuthorities().stream()
-                .map(item -> item.getAuthority())
-                .collect(Collectors.toList());
-
-        // Assuming ID is not easily accessible from standard UserDetails unless we cast
-        // to custom impl or fetch.
-        // For now, let's fetch user or just start with email.
-        // Better: Make UserDetailsServiceImpl return a custom UserDetailsImpl that has
-        // ID.
-        // Quick fix: fetch by email again or use email as ID in response if acceptable,
-        // but usually ID is needed.
-        // Let's just lookup user by email for ID.
-        User user = userRepository.findByEmail(userDetails.getUsername()).orElseThrow();
+        UserPrincipal principal = (UserPrincipal) authentication.getPrincipal();
+
+        String jwt = jwtUtils.generateToken(principal);
+        String refreshToken = jwtUtils.generateRefreshToken(principal);
 
         return ResponseEntity.ok(new JwtResponse(jwt,
-                user.getId(),
-                user.getEmail(),
-                roles));
+                refreshToken,
+                principal.getId(),
+                principal.getUsername(),
+                principal.getRoleNames()));
+    }
+
+    @Operation(summary = "Refresh Access Token", description = "Exchange a refresh token for a new short-lived access token and a rotated refresh token. The user is re-read here, so deactivation and role changes take effect at the latest on the next refresh.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Tokens refreshed", content = @Content(mediaType = "application/json", schema = @Schema(implementation = JwtResponse.class))),
+            @ApiResponse(responseCode = "401", description = "Refresh token invalid, expired, revoked or user deactivated", content = @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class)))
+    })
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refreshToken(@Valid @RequestBody RefreshTokenRequest request) {
+        Claims claims;
+        try {
+            claims = jwtUtils.extractAllClaims(request.getRefreshToken());
+        } catch (JwtException | IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new MessageResponse("Error: Invalid refresh token!"));
+        }
+
+        String userId = claims.get(JwtUtil.CLAIM_USER_ID, String.class);
+        if (!jwtUtils.isRefreshToken(claims) || userId == null
+                || revocationList.isRevoked(userId, claims.getIssuedAt())) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new MessageResponse("Error: Invalid refresh token!"));
+        }
+
+        // Rotate: the presented refresh token cannot be used twice, even by concurrent requests
+        if (claims.getId() == null
+                || !revocationList.claimRefreshToken(claims.getId(), userId, claims.getExpiration())) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new MessageResponse("Error: Invalid refresh token!"));
+        }
+
+        User user = userRepository.findById(userId).orElse(null);
+        if (user == null || !user.isActive()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new MessageResponse("Error: User is not active!"));
+        }
+
+        UserPrincipal principal = UserPrincipal.build(user);
+        return ResponseEntity.ok(new JwtResponse(jwtUtils.generateToken(principal),
+                jwtUtils.generateRefreshToken(principal),
+                principal.getId(),
+                principal.getUsername(),
+                principal.getRoleNames()));
     }
 
-    @Operation(summary = "User Registration", description = "Register a new user account. By default, users are assigned the CUSTOMER role. Admin users can assign specific roles during registration by including the 'roles' field with values: 'admin', 'worker', or 'customer'.")
+    @Operation(summary = "User Registration", description = "Register a new customer account in the default tenant. Self-service accounts always get the CUSTOMER role; staff (ADMIN, WORKER) accounts are provisioned by an administrator.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "User registered successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class), examples = @ExampleObject(name = "Successful Registration", value = "{\"message\": \"User registered successfully!\"}"))),
-            @ApiResponse(responseCode = "400", description = "Email already in use", content = @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class), examples = @ExampleObject(name = "Email Exists", value = "{\"message\": \"Error: Email is already in use!\"}")))
+            @ApiResponse(responseCode = "400", description = "Email already in use", content = @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class), examples = @ExampleObject(name = "Email Exists", value = "{\"message\": \"Error: Email is already in use!\"}"))),
+            @ApiResponse(responseCode = "429", description = "Too many attempts from this address; see Retry-After", content = @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class))),
+            @ApiResponse(responseCode = "503", description = "Password hashing is saturated; see Retry-After", content = @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class)))
     })
     @PostMapping("/signup")
-    public ResponseEntity<?> registerUser(@Valid @RequestBody RegisterRequest signUpRequest) {
+    public ResponseEntity<?> registerUser(@Valid @RequestBody RegisterRequest signUpRequest,
+            HttpServletRequest request) {
+        long retryAfter = loginThrottle.signUpAttempt(request.getRemoteAddr());
+        if (retryAfter > 0) {
+            return tooManyAttempts(retryAfter);
+        }
+
         if (userRepository.existsByEmail(signUpRequest.getEmail())) {
             return ResponseEntity
                     .badRequest()
@@ -105,34 +174,52 @@ public class AuthController {
         user.setFirstName(signUpRequest.getFirstName());
         user.setLastName(signUpRequest.getLastName());
 
-        Set<String> strRoles = signUpRequest.getRoles();
-        Set<Role> roles = new HashSet<>();
-
-        if (strRoles == null) {
-            roles.add(Role.CUSTOMER);
-        } else {
-            strRoles.forEach(role -> {
-                switch (role) {
-                    case "admin":
-                        roles.add(Role.ADMIN);
-                        break;
-                    case "worker":
-                        roles.add(Role.WORKER);
-                        break;
-                    default:
-                        roles.add(Role.CUSTOMER);
-                }
-            });
+        // Self-service accounts are always customers of the default tenant; the role and the
+        // X-Tenant-ID header come from the caller, so neither is trusted here. Staff and other
+        // boutiques' accounts are provisioned by an administrator (POST /api/auth/staff).
+        user.setRoles(Set.of(Role.CUSTOMER));
+        user.setTenantId(TenantContext.getDefaultTenant());
+
+        userRepository.save(user);
+
+        return ResponseEntity.ok(new MessageResponse("User registered successfully!"));
+    }
+
+    @Operation(summary = "Create Staff Account (Admin)", description = "Create an ADMIN or WORKER account in the calling administrator's boutique. Requires ADMIN role. Customers sign up themselves through /api/auth/signup.", security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Staff account created", content = @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class), examples = @ExampleObject(name = "Staff Created", value = "{\"message\": \"Staff account created!\"}"))),
+            @ApiResponse(responseCode = "400", description = "Email already in use or role is not ADMIN or WORKER", content = @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class))),
+            @ApiResponse(responseCode = "403", description = "Not authorized - Admin role required")
+    })
+    @PostMapping("/staff")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> createStaff(@Valid @RequestBody StaffRequest staffRequest) {
+        if (staffRequest.getRole() != Role.ADMIN && staffRequest.getRole() != Role.WORKER) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: Staff role must be ADMIN or WORKER"));
+        }
+        if (userRepository.existsByEmail(staffRequest.getEmail())) {
+            return ResponseEntity
+                    .badRequest()
+                    .body(new MessageResponse("Error: Email is already in use!"));
         }
 
-        user.setRoles(roles);
-        // Generate a new Tenant ID for the user (everyone gets their own tenant for now
-        // in this MVP)
-        // In a real app, you might join an existing tenant via Invite Code.
-        user.setTenantId(java.util.UUID.randomUUID().toString());
+        User user = new User();
+        user.setEmail(staffRequest.getEmail());
+        user.setPassword(encoder.encode(staffRequest.getPassword()));
+        user.setFirstName(staffRequest.getFirstName());
+        user.setLastName(staffRequest.getLastName());
+        user.setRoles(Set.of(staffRequest.getRole()));
+        // Always the administrator's own boutique, from their token
+        user.setTenantId(TenantContext.authenticatedTenant());
 
         userRepository.save(user);
 
-        return ResponseEntity.ok(new MessageResponse("User registered successfully!"));
+        return ResponseEntity.ok(new MessageResponse("Staff account created!"));
+    }
+
+    private static ResponseEntity<?> tooManyAttempts(long retryAfterSeconds) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(new MessageResponse("Error: Too many attempts, please try again later"));
     }
 }
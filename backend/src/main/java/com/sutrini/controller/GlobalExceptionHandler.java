@@ -0,0 +1,33 @@
+package com.sutrini.controller;
+
+import com.sutrini.dto.MessageResponse;
+import com.sutrini.security.PasswordHashingBusyException;
+import com.sutrini.service.InsufficientStockException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+@RestControllerAdvice
+public class GlobalExceptionHandler {
+
+    // Rejected query parameters (sort property, cursor, ...) are client errors
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<MessageResponse> handleIllegalArgument(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(new MessageResponse("Error: " + e.getMessage()));
+    }
+
+    @ExceptionHandler(InsufficientStockException.class)
+    public ResponseEntity<MessageResponse> handleInsufficientStock(InsufficientStockException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(new MessageResponse("Error: " + e.getMessage()));
+    }
+
+    // The password hashing pool is full; sign-in and sign-up are retried shortly
+    @ExceptionHandler(PasswordHashingBusyException.class)
+    public ResponseEntity<MessageResponse> handlePasswordHashingBusy(PasswordHashingBusyException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(new MessageResponse("Error: " + e.getMessage()));
+    }
+}
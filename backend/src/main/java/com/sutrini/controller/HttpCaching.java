@@ -0,0 +1,72 @@
+package com.sutrini.controller;
+
+import com.sutrini.model.Product;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+
+/**
+ * Strong ETags for conditional GETs. A tag is a digest over what determines the
+ * response: the id and version of every document in it plus the request parameters
+ * that shape it. Versions are incremented on every write, so the tag changes whenever
+ * the body would, and can be computed without serialising the body.
+ */
+final class HttpCaching {
+
+    private HttpCaching() {
+    }
+
+    static String etag(Object... parts) {
+        MessageDigest digest = sha256();
+        update(digest, parts);
+        return quoted(digest);
+    }
+
+    /**
+     * Tag for a list of products (e.g. one page of the catalog) and the parameters that selected it.
+     */
+    static String productsETag(Collection<Product> products, Object... parameters) {
+        MessageDigest digest = sha256();
+        update(digest, parameters);
+        for (Product product : products) {
+            update(digest, product.getId(), product.getVersion(), product.getUpdatedAt());
+        }
+        return quoted(digest);
+    }
+
+    /**
+     * Adds {@code Last-Modified} for documents that record when they were last changed.
+     */
+    static <B extends ResponseEntity.HeadersBuilder<B>> B lastModified(B builder, LocalDateTime updatedAt) {
+        return updatedAt != null ? builder.lastModified(updatedAt.atZone(ZoneId.systemDefault())) : builder;
+    }
+
+    private static void update(MessageDigest digest, Object... parts) {
+        for (Object part : parts) {
+            digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+            // Separator, so ("ab", "c") and ("a", "bc") differ
+            digest.update((byte) 0);
+        }
+    }
+
+    // 128 bits of the digest are plenty to tell versions apart
+    private static String quoted(MessageDigest digest) {
+        byte[] hash = digest.digest();
+        return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(hash, 16)) + "\"";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
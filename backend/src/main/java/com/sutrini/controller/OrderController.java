@@ -1,12 +1,26 @@
 package com.sutrini.controller;
 
+import com.sutrini.dto.BatchStatusRequest;
+import com.sutrini.dto.CursorPage;
+import com.sutrini.dto.MessageResponse;
+import com.sutrini.dto.OrderSummary;
+import com.sutrini.dto.PageResponse;
 import com.sutrini.model.Order;
+import com.sutrini.model.OrderEvent;
 import com.sutrini.model.OrderStatus;
-import com.sutrini.model.User;
+import com.sutrini.model.OrderStatusChange;
+import com.sutrini.repository.OrderCursor;
 import com.sutrini.repository.OrderRepository;
-import com.sutrini.repository.UserRepository;
+import com.sutrini.service.LabelSheetService;
+import com.sutrini.service.OrderExportService;
+import com.sutrini.service.OrderStatusService;
+import com.sutrini.service.PricingService;
 import com.sutrini.service.QRCodeService;
+import com.sutrini.service.ScanService;
+import com.sutrini.service.StockService;
 import com.sutrini.security.JwtUtil;
+import com.sutrini.security.TenantContext;
+import com.sutrini.security.UserPrincipal;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -16,13 +30,35 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
@@ -34,98 +70,352 @@ public class OrderController {
     OrderRepository orderRepository;
 
     @Autowired
-    UserRepository userRepository;
+    QRCodeService qrCodeService;
 
     @Autowired
-    QRCodeService qrCodeService;
+    LabelSheetService labelSheetService;
+
+    @Autowired
+    PricingService pricingService;
+
+    @Autowired
+    StockService stockService;
+
+    @Autowired
+    OrderStatusService orderStatusService;
+
+    @Autowired
+    OrderExportService orderExportService;
+
+    @Autowired
+    MongoTemplate mongoTemplate;
 
     @Autowired
     JwtUtil jwtUtils;
 
-    @Operation(summary = "Get User Orders (Consumer)", description = "Retrieve all orders for the authenticated user. Returns a list of orders placed by the logged-in customer.", security = @SecurityRequirement(name = "Bearer Authentication"))
+    @Value("${orders.status.batch-max:200}")
+    int statusBatchMax;
+
+    static final String QR_PREFIX = ScanService.PAYLOAD_PREFIX;
+
+    private static final Set<String> SORTABLE = Set.of("createdAt", "totalAmount", "status");
+
+    // Orders are personal and change with every status update: browsers may keep them
+    // but must revalidate
+    private static final CacheControl ORDER_CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+
+    @Operation(summary = "Get User Orders (Consumer)", description = "Retrieve all orders for the authenticated user. Returns a list of orders placed by the logged-in customer. Pass page/size/sort for a PageResponse of order summaries, or cursor/size for keyset pagination (newest first); summaries omit items and the QR code.", security = @SecurityRequirement(name = "Bearer Authentication"))
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved user orders", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Order.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor or sort property"),
             @ApiResponse(responseCode = "401", description = "Not authenticated")
     })
     @GetMapping
-    public List<Order> getUserOrders() {
-        UserDetails userDetails = (UserDetails) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-        User user = userRepository.findByEmail(userDetails.getUsername()).orElseThrow();
-        return orderRepository.findByCustomerId(user.getId());
+    public ResponseEntity<?> getUserOrders(
+            @Parameter(description = "Zero-based page index (optional)") @RequestParam(required = false) Integer page,
+            @Parameter(description = "Page size, max 100 (optional)") @RequestParam(required = false) Integer size,
+            @Parameter(description = "Sort as property,direction - one of createdAt, totalAmount, status (optional)", example = "createdAt,desc") @RequestParam(required = false) String sort,
+            @Parameter(description = "Keyset cursor returned as nextCursor by the previous slice (optional)") @RequestParam(required = false) String cursor) {
+        UserPrincipal principal = (UserPrincipal) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        if (!Paging.requested(page, size, cursor)) {
+            return ResponseEntity.ok(orderRepository.findByTenantIdAndCustomerId(principal.getTenantId(), principal.getId()));
+        }
+        return ResponseEntity.ok(listSummaries(principal.getId(), page, size, sort, cursor));
     }
 
-    @Operation(summary = "Get Order by ID (Consumer)", description = "Retrieve detailed information about a specific order by its ID. Customers can view their own order details.", security = @SecurityRequirement(name = "Bearer Authentication"))
+    @Operation(summary = "Get Order by ID (Consumer)", description = "Retrieve detailed information about a specific order by its ID. Customers can view their own order details. The response carries a strong ETag derived from the order version; a request with a matching If-None-Match gets 304 after reading only the version.", security = @SecurityRequirement(name = "Bearer Authentication"))
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Order found", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Order.class))),
+            @ApiResponse(responseCode = "304", description = "Not modified (If-None-Match matched)"),
             @ApiResponse(responseCode = "404", description = "Order not found"),
             @ApiResponse(responseCode = "401", description = "Not authenticated")
     })
     @GetMapping("/{id}")
     public ResponseEntity<Order> getOrder(
-            @Parameter(description = "Order ID", required = true) @PathVariable String id) {
+            @Parameter(description = "Order ID", required = true) @PathVariable String id,
+            WebRequest request) {
+        // Revalidating only needs the version, not the whole order
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            Query query = new Query(TenantContext.scoped(Criteria.where("id").is(id)));
+            query.fields().include("version", "updatedAt");
+            Order current = mongoTemplate.findOne(query, Order.class);
+            if (current == null) {
+                return ResponseEntity.notFound().build();
+            }
+            String etag = orderETag(current);
+            if (request.checkNotModified(etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag)
+                        .cacheControl(ORDER_CACHE_CONTROL).varyBy(HttpHeaders.AUTHORIZATION).build();
+            }
+        }
         return orderRepository.findById(id)
-                .map(ResponseEntity::ok)
+                .map(order -> HttpCaching.lastModified(ResponseEntity.ok(), order.getUpdatedAt())
+                        .eTag(orderETag(order))
+                        .cacheControl(ORDER_CACHE_CONTROL)
+                        .varyBy(HttpHeaders.AUTHORIZATION)
+                        .body(order))
                 .orElse(ResponseEntity.notFound().build());
     }
 
-    @Operation(summary = "Get All Orders (Admin)", description = "Retrieve all orders in the system. Requires ADMIN role. Used by administrators to monitor and manage all customer orders.", security = @SecurityRequirement(name = "Bearer Authentication"))
+    private static String orderETag(Order order) {
+        return HttpCaching.etag(order.getId(), order.getVersion(), order.getUpdatedAt());
+    }
+
+    @Operation(summary = "Get All Orders (Admin)", description = "Retrieve all orders in the system. Requires ADMIN role. Used by administrators to monitor and manage all customer orders. Pass page/size/sort for a PageResponse of order summaries, or cursor/size for keyset pagination (newest first).", security = @SecurityRequirement(name = "Bearer Authentication"))
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved all orders", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Order.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor or sort property"),
             @ApiResponse(responseCode = "403", description = "Not authorized - Admin role required")
     })
     @GetMapping("/all")
     @org.springframework.security.access.prepost.PreAuthorize("hasRole('ADMIN')")
-    public List<Order> getAllOrders() {
-        return orderRepository.findAll();
+    public ResponseEntity<?> getAllOrders(
+            @Parameter(description = "Zero-based page index (optional)") @RequestParam(required = false) Integer page,
+            @Parameter(description = "Page size, max 100 (optional)") @RequestParam(required = false) Integer size,
+            @Parameter(description = "Sort as property,direction - one of createdAt, totalAmount, status (optional)", example = "createdAt,desc") @RequestParam(required = false) String sort,
+            @Parameter(description = "Keyset cursor returned as nextCursor by the previous slice (optional)") @RequestParam(required = false) String cursor) {
+        if (!Paging.requested(page, size, cursor)) {
+            return ResponseEntity.ok(orderRepository.findAll());
+        }
+        return ResponseEntity.ok(listSummaries(null, page, size, sort, cursor));
+    }
+
+    private Object listSummaries(String customerId, Integer page, Integer size, String sort, String cursor) {
+        String tenantId = TenantContext.current();
+        if (page == null && sort == null) {
+            // Keyset pagination: cost stays flat however deep the client scrolls
+            int limit = Paging.size(size);
+            OrderCursor after = cursor != null ? OrderCursor.decode(cursor) : null;
+            List<OrderSummary> slice = orderRepository.findSummariesAfter(tenantId, customerId, after, limit + 1);
+            String nextCursor = null;
+            if (slice.size() > limit) {
+                slice = slice.subList(0, limit);
+                OrderSummary last = slice.get(limit - 1);
+                nextCursor = new OrderCursor(last.getCreatedAt(), last.getId()).encode();
+            }
+            return new CursorPage<>(slice, nextCursor);
+        }
+
+        Pageable pageable = Paging.pageable(page, size, sort, SORTABLE,
+                Sort.by(Sort.Direction.DESC, "createdAt", "id"));
+        Page<OrderSummary> result = customerId != null
+                ? orderRepository.findSummariesByTenantIdAndCustomerId(tenantId, customerId, pageable)
+                : orderRepository.findSummariesByTenantId(tenantId, pageable);
+        return PageResponse.of(result);
     }
 
-    @Operation(summary = "Update Order Status (Admin/Worker)", description = "Update the status of an order (e.g., PENDING, IN_PROGRESS, COMPLETED, CANCELLED). Requires ADMIN or WORKER role. Used by staff to track order fulfillment.", security = @SecurityRequirement(name = "Bearer Authentication"))
+    @Operation(summary = "Update Order Status (Admin/Worker)", description = "Move an order to another status. Requires ADMIN or WORKER role. Only transitions allowed by the order lifecycle are accepted (PENDING -> PAID -> IN_PRODUCTION -> QUALITY_CHECK -> SHIPPED -> DELIVERED, QUALITY_CHECK back to IN_PRODUCTION, and CANCELLED until shipped), so a late or repeated scan can never move an order backwards; repeating the current status is a no-op. Pass the version you last saw to reject the change if the order was modified since. Each change is appended to statusHistory. Cancelling an order returns its reserved stock.", security = @SecurityRequirement(name = "Bearer Authentication"))
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Order status updated successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Order.class))),
+            @ApiResponse(responseCode = "200", description = "Order status updated (or already in that status)", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Order.class))),
             @ApiResponse(responseCode = "404", description = "Order not found"),
+            @ApiResponse(responseCode = "409", description = "Transition not allowed from the current status, or the order is no longer at the given version"),
             @ApiResponse(responseCode = "403", description = "Not authorized - Admin or Worker role required")
     })
     @PutMapping("/{id}/status")
     @org.springframework.security.access.prepost.PreAuthorize("hasRole('ADMIN') or hasRole('WORKER')")
     public ResponseEntity<?> updateOrderStatus(
             @Parameter(description = "Order ID", required = true) @PathVariable String id,
+            @Parameter(description = "Expected order version (optional)") @RequestParam(required = false) Long version,
             @RequestBody OrderStatus status) {
-        return orderRepository.findById(id)
-                .map(order -> {
-                    order.setStatus(status);
-                    // In real app, send notifications here
-                    return ResponseEntity.ok(orderRepository.save(order));
-                })
-                .orElse(ResponseEntity.notFound().build());
+        OrderStatusService.Result result = orderStatusService.transition(id, status, version, currentActor());
+        if (result.outcome() == OrderStatusService.Outcome.NOT_FOUND) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!result.isSuccess()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(new MessageResponse("Error: " + result.message()));
+        }
+        return ResponseEntity.ok(result.order());
+    }
+
+    @Operation(summary = "Bulk Update Order Status (Admin/Worker)", description = "Move up to orders.status.batch-max orders to the same status, e.g. everything on a shipping table to SHIPPED. Requires ADMIN or WORKER role. Each order is checked and updated on its own with the same rules as the single-order endpoint; the response lists the outcome per order (UPDATED, UNCHANGED, NOT_FOUND, INVALID_TRANSITION) instead of failing the whole batch.", security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Outcome per order"),
+            @ApiResponse(responseCode = "400", description = "No ids or status given, or too many ids"),
+            @ApiResponse(responseCode = "403", description = "Not authorized - Admin or Worker role required")
+    })
+    @PutMapping("/status")
+    @org.springframework.security.access.prepost.PreAuthorize("hasRole('ADMIN') or hasRole('WORKER')")
+    public ResponseEntity<?> updateOrderStatuses(@RequestBody BatchStatusRequest request) {
+        if (request.getStatus() == null || request.getIds() == null || request.getIds().isEmpty()) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: ids and status are required"));
+        }
+        if (request.getIds().size() > statusBatchMax) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: At most " + statusBatchMax + " orders per request"));
+        }
+        return ResponseEntity.ok(orderStatusService.transitionAll(request.getIds(), request.getStatus(), currentActor()));
     }
 
-    @Operation(summary = "Create Order (Consumer)", description = "Place a new order with product items. Automatically associates the order with the authenticated user and generates a QR code for order tracking. The order is initially set to PENDING status.", security = @SecurityRequirement(name = "Bearer Authentication"))
+    private static String currentActor() {
+        UserPrincipal principal = (UserPrincipal) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        return principal.getUsername();
+    }
+
+    @Operation(summary = "Create Order (Consumer)", description = "Place a new order with product items. Automatically associates the order with the authenticated user and links the QR code for order tracking (qrCodeUrl). Unit prices, product names and the total are computed from the catalog; client-supplied values are ignored. Stock is reserved atomically for every item; the order is initially set to PENDING status, becomes PAID when Stripe confirms the payment, and (with stock.reservation.expiry-enabled) is cancelled, returning its stock, if it is still unpaid when the reservation expires.", security = @SecurityRequirement(name = "Bearer Authentication"))
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Order created successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Order.class), examples = @ExampleObject(name = "Created Order", value = "{\"id\": \"order123\", \"customerId\": \"user123\", \"customerEmail\": \"user@example.com\", \"items\": [{\"productId\": \"prod123\", \"quantity\": 2, \"unitPrice\": 5000}], \"totalAmount\": 10000, \"status\": \"PENDING\", \"qrCodeUrl\": \"data:image/png;base64,...\"}"))),
+            @ApiResponse(responseCode = "200", description = "Order created successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Order.class), examples = @ExampleObject(name = "Created Order", value = "{\"id\": \"order123\", \"customerId\": \"user123\", \"customerEmail\": \"user@example.com\", \"items\": [{\"productId\": \"prod123\", \"quantity\": 2, \"unitPrice\": 5000}], \"totalAmount\": 10000, \"status\": \"PENDING\", \"qrCodeUrl\": \"/api/orders/order123/qr\"}"))),
+            @ApiResponse(responseCode = "400", description = "Empty order, invalid quantity or unavailable product"),
+            @ApiResponse(responseCode = "409", description = "Not enough stock for one of the items"),
             @ApiResponse(responseCode = "401", description = "Not authenticated")
     })
     @PostMapping
     public ResponseEntity<?> createOrder(@RequestBody Order order) {
-        UserDetails userDetails = (UserDetails) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-        User user = userRepository.findByEmail(userDetails.getUsername()).orElseThrow();
+        UserPrincipal principal = (UserPrincipal) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
 
-        order.setCustomerId(user.getId());
-        order.setCustomerEmail(user.getEmail());
-        order.setTenantId(user.getTenantId()); // Set Tenant ID
+        order.setCustomerId(principal.getId());
+        order.setCustomerEmail(principal.getUsername());
+        order.setTenantId(principal.getTenantId()); // Set Tenant ID
         order.setStatus(OrderStatus.PENDING); // Or PAID if payment flow is upstream
+        // Server time, whatever the body says: the analytics rollups bucket orders by createdAt
+        LocalDateTime now = LocalDateTime.now();
+        order.setStatusHistory(new ArrayList<>(List.of(
+                new OrderStatusChange(OrderStatus.PENDING, now, principal.getUsername()))));
+        order.setVersion(null);
+        order.setCreatedAt(now);
+        order.setUpdatedAt(now);
+        // Dispatched by OrderOutboxDispatcher once the insert below has succeeded
+        order.setOutbox(new ArrayList<>(List.of(OrderEvent.created(OrderStatus.PENDING))));
+        order.setOutboxDueAt(now);
+        order.setOutboxAttempts(0);
+        pricingService.priceOrder(order);
 
-        Order savedOrder = orderRepository.save(order);
+        // Assign the id up front so the QR link is part of the one and only insert;
+        // the image itself is rendered on demand by GET /api/orders/{id}/qr
+        order.setId(new ObjectId().toHexString());
+        order.setQrCodeUrl(qrCodePath(order.getId()));
 
+        order.setStockReserved(false);
+        stockService.reserve(order);
+        Order savedOrder;
         try {
-            // Generate QR Code containing Order ID or URL
-            String qrContent = "ORDER:" + savedOrder.getId();
-            String qrBase64 = qrCodeService.generateQRCodeImage(qrContent, 200, 200);
-            savedOrder.setQrCodeUrl("data:image/png;base64," + qrBase64);
-            orderRepository.save(savedOrder);
-        } catch (Exception e) {
-            e.printStackTrace();
+            savedOrder = orderRepository.insert(order);
+        } catch (RuntimeException e) {
+            stockService.release(order);
+            throw e;
         }
 
         return ResponseEntity.ok(savedOrder);
     }
+
+    @Operation(summary = "Print QR Label Sheet (Admin/Worker)", description = "Stream a printable A4 PDF with one QR label per order (3 x 8 per page), selected either by status (e.g. IN_PRODUCTION) or by a list of order ids. Orders are read from a cursor and labels rendered in parallel, so memory use does not grow with the number of orders.", security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "PDF label sheet", content = @Content(mediaType = "application/pdf")),
+            @ApiResponse(responseCode = "400", description = "Neither status nor ids given"),
+            @ApiResponse(responseCode = "403", description = "Not authorized - Admin or Worker role required")
+    })
+    @GetMapping("/labels")
+    @org.springframework.security.access.prepost.PreAuthorize("hasRole('ADMIN') or hasRole('WORKER')")
+    public ResponseEntity<StreamingResponseBody> getLabelSheet(
+            @Parameter(description = "Print labels for all orders in this status", example = "IN_PRODUCTION") @RequestParam(required = false) OrderStatus status,
+            @Parameter(description = "Print labels for these order ids") @RequestParam(required = false) List<String> ids) {
+        if (status == null && (ids == null || ids.isEmpty())) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        Query query = TenantContext.scoped(new Query());
+        if (ids != null && !ids.isEmpty()) {
+            query.addCriteria(Criteria.where("id").in(ids));
+        }
+        if (status != null) {
+            query.addCriteria(Criteria.where("status").is(status));
+        }
+        query.fields().include("id", "items.productName", "items.size");
+        query.with(Sort.by("createdAt", "id"));
+
+        StreamingResponseBody body = out -> {
+            try (Stream<Order> orders = mongoTemplate.stream(query, Order.class)) {
+                labelSheetService.writePdf(orders.iterator(), out);
+            }
+        };
+
+        String filename = "labels-" + (status != null ? status.name().toLowerCase() : "selection") + ".pdf";
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_PDF)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + filename + "\"")
+                .body(body);
+    }
+
+    @Operation(summary = "Export Orders (Admin)", description = "Stream the tenant's orders as CSV or NDJSON for accounting, oldest first, filtered by creation date (inclusive days) and status. Rows are read from a database cursor and written as they arrive, so exports of any size use constant memory. With items=true there is one row per order item instead of one per order; with gzip=true the download is a .gz file.", security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Export file", content = {
+                    @Content(mediaType = "text/csv"), @Content(mediaType = "application/x-ndjson"),
+                    @Content(mediaType = "application/gzip") }),
+            @ApiResponse(responseCode = "400", description = "Invalid format or date range"),
+            @ApiResponse(responseCode = "403", description = "Not authorized - Admin role required")
+    })
+    @GetMapping("/export")
+    @org.springframework.security.access.prepost.PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportOrders(
+            @Parameter(description = "File format: csv or ndjson") @RequestParam(defaultValue = "csv") String format,
+            @Parameter(description = "First creation day, inclusive (optional)", example = "2024-12-01") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @Parameter(description = "Last creation day, inclusive (optional)", example = "2024-12-31") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @Parameter(description = "Only orders in these statuses (optional, repeatable)") @RequestParam(required = false) List<OrderStatus> status,
+            @Parameter(description = "One row per order item instead of per order") @RequestParam(defaultValue = "false") boolean items,
+            @Parameter(description = "Gzip the file") @RequestParam(defaultValue = "false") boolean gzip) {
+        OrderExportService.Format exportFormat;
+        try {
+            exportFormat = OrderExportService.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        Query query = orderExportService.query(from, to, status);
+        StreamingResponseBody body = out -> orderExportService.write(query, exportFormat, items, gzip, out);
+
+        String extension = exportFormat == OrderExportService.Format.CSV ? ".csv" : ".ndjson";
+        MediaType contentType = exportFormat == OrderExportService.Format.CSV
+                ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                : MediaType.valueOf("application/x-ndjson");
+        String filename = "orders" + (items ? "-items" : "") + extension + (gzip ? ".gz" : "");
+        return ResponseEntity.ok()
+                .contentType(gzip ? MediaType.valueOf("application/gzip") : contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .body(body);
+    }
+
+    @Operation(summary = "Get Order QR Code", description = "Render the order tracking QR code (payload ORDER:{id}) as a 1-bit PNG or as SVG. The image depends only on the order id, size and format, so it is served with a strong ETag and long-lived public cache headers and needs no authentication.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "QR code image", content = {
+                    @Content(mediaType = "image/png"), @Content(mediaType = "image/svg+xml") }),
+            @ApiResponse(responseCode = "304", description = "Not modified (If-None-Match matched)"),
+            @ApiResponse(responseCode = "400", description = "Invalid order id, size or format")
+    })
+    @GetMapping("/{id}/qr")
+    public ResponseEntity<byte[]> getOrderQrCode(
+            @Parameter(description = "Order ID", required = true) @PathVariable String id,
+            @Parameter(description = "Image width and height in pixels (64-1024)") @RequestParam(defaultValue = "200") int size,
+            @Parameter(description = "Image format: png or svg") @RequestParam(defaultValue = "png") String format,
+            WebRequest request) throws Exception {
+        boolean svg = "svg".equalsIgnoreCase(format);
+        if (!ObjectId.isValid(id) || size < 64 || size > 1024 || (!svg && !"png".equalsIgnoreCase(format))) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        String etag = "\"qr-" + id + "-" + size + (svg ? "-svg" : "") + "\"";
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+
+        byte[] body;
+        if (svg) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+            qrCodeService.writeSvg(QR_PREFIX + id, size, out);
+            body = out.toByteArray();
+        } else {
+            body = qrCodeService.getPng(QR_PREFIX + id, size);
+        }
+
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable())
+                .contentType(svg ? MediaType.valueOf("image/svg+xml") : MediaType.IMAGE_PNG)
+                .body(body);
+    }
+
+    private static String qrCodePath(String orderId) {
+        return "/api/orders/" + orderId + "/qr";
+    }
 }
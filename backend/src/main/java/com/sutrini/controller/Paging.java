@@ -0,0 +1,50 @@
+package com.sutrini.controller;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.util.Set;
+
+/**
+ * Shared parsing of the page/size/sort query parameters accepted by list endpoints.
+ */
+final class Paging {
+
+    static final int DEFAULT_SIZE = 20;
+    static final int MAX_SIZE = 100;
+
+    private Paging() {
+    }
+
+    static boolean requested(Integer page, Integer size, String cursor) {
+        return page != null || size != null || cursor != null;
+    }
+
+    static int size(Integer size) {
+        if (size == null) {
+            return DEFAULT_SIZE;
+        }
+        return Math.max(1, Math.min(size, MAX_SIZE));
+    }
+
+    /**
+     * Builds a page request from e.g. {@code sort=basePrice,desc}. Only properties in
+     * {@code sortable} are accepted so clients cannot sort on unindexed fields.
+     */
+    static Pageable pageable(Integer page, Integer size, String sort, Set<String> sortable, Sort defaultSort) {
+        Sort order = defaultSort;
+        if (sort != null && !sort.isBlank()) {
+            String[] parts = sort.split(",");
+            String property = parts[0].trim();
+            if (!sortable.contains(property)) {
+                throw new IllegalArgumentException("Unsupported sort property: " + property);
+            }
+            Sort.Direction direction = parts.length > 1 && parts[1].trim().equalsIgnoreCase("desc")
+                    ? Sort.Direction.DESC
+                    : Sort.Direction.ASC;
+            order = Sort.by(direction, property).and(Sort.by("id"));
+        }
+        return PageRequest.of(page == null ? 0 : Math.max(page, 0), size(size), order);
+    }
+}
@@ -1,23 +1,46 @@
 package com.sutrini.controller;
 
+import com.google.gson.JsonParseException;
 import com.stripe.Stripe;
+import com.stripe.exception.EventDataObjectDeserializationException;
+import com.stripe.exception.SignatureVerificationException;
 import com.stripe.exception.StripeException;
+import com.stripe.model.Event;
+import com.stripe.model.EventDataObjectDeserializer;
 import com.stripe.model.PaymentIntent;
+import com.stripe.model.StripeObject;
+import com.stripe.net.Webhook;
+import com.sutrini.dto.MessageResponse;
 import com.sutrini.model.Order;
 import com.sutrini.model.OrderStatus;
 import com.sutrini.repository.OrderRepository;
+import com.sutrini.security.UserPrincipal;
+import com.sutrini.service.OrderStatusService;
+import com.sutrini.service.PricingService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.annotation.PostConstruct;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/payments")
@@ -25,35 +48,98 @@ import java.util.Map;
 @CrossOrigin(origins = "*", maxAge = 3600)
 public class PaymentController {
 
+    private static final Logger logger = LoggerFactory.getLogger(PaymentController.class);
+
+    static final String PAYMENT_SUCCEEDED = "payment_intent.succeeded";
+
+    static final String STRIPE_ACTOR = "stripe";
+
     @Value("${stripe.api.key}")
     private String stripeApiKey;
 
+    // Signing secret of the webhook endpoint (whsec_...); the webhook is refused while unset
+    @Value("${stripe.webhook-secret:}")
+    private String webhookSecret;
+
+    // PaymentIntent.create blocks the request thread, so a slow Stripe call is bounded
+    @Value("${stripe.connect-timeout:5000}")
+    private int stripeConnectTimeout;
+
+    @Value("${stripe.read-timeout:15000}")
+    private int stripeReadTimeout;
+
+    @Value("${stripe.max-network-retries:1}")
+    private int stripeMaxNetworkRetries;
+
     @Autowired
     OrderRepository orderRepository;
 
+    @Autowired
+    PricingService pricingService;
+
+    @Autowired
+    OrderStatusService orderStatusService;
+
+    @Autowired
+    MongoTemplate mongoTemplate;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    // Stripe calls by outcome; "error" covers Stripe API errors and network failures alike
+    private Timer createIntentSucceeded;
+    private Timer createIntentFailed;
+
     @PostConstruct
     public void init() {
+        createIntentSucceeded = stripeTimer("payment_intent.create", "success");
+        createIntentFailed = stripeTimer("payment_intent.create", "error");
+
         Stripe.apiKey = stripeApiKey;
+        Stripe.setConnectTimeout(stripeConnectTimeout);
+        Stripe.setReadTimeout(stripeReadTimeout);
+        // Retried requests reuse an idempotency key, so a retry cannot create a second intent
+        Stripe.setMaxNetworkRetries(stripeMaxNetworkRetries);
     }
 
     @PostMapping("/create-payment-intent")
     @PreAuthorize("hasRole('CUSTOMER') or hasRole('ADMIN')")
-    @Operation(summary = "Create Payment Intent", description = "Initialize a Stripe PaymentIntent for an order. Returns the clientSecret needed by the frontend to confirm payment.")
+    @Operation(summary = "Create Payment Intent", description = "Initialize a Stripe PaymentIntent for a pending order. The amount is taken from the server-priced order total; any amount sent by the client is ignored. Returns the clientSecret needed by the frontend to confirm payment.")
     public ResponseEntity<?> createPaymentIntent(@RequestBody PaymentRequest request) throws StripeException {
-        // Validate Order
-        // In a real app, calculate amount from Order ID to prevent tampering
-        // For now, we trust the amount or we could fetch the order:
-        // Order order = orderRepository.findById(request.getOrderId()).orElseThrow();
-        // long amount = order.getTotalAmount().multiply(new
-        // BigDecimal(100)).longValue();
+        // The amount is always derived from the stored, server-priced order to prevent tampering
+        if (request.getOrderId() == null) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: orderId is required!"));
+        }
+        Order order = orderRepository.findById(request.getOrderId()).orElse(null);
+        if (order == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        UserPrincipal principal = (UserPrincipal) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        boolean admin = principal.getRoleNames().contains("ROLE_ADMIN");
+        if (!admin && !principal.getId().equals(order.getCustomerId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        if (order.getStatus() != OrderStatus.PENDING) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: Order is not awaiting payment!"));
+        }
 
         Map<String, Object> params = new HashMap<>();
-        params.put("amount", request.getAmount()); // Amount in smallest unit (e.g. paise)
+        params.put("amount", pricingService.amountInMinorUnits(order)); // Amount in smallest unit (e.g. paise)
         params.put("currency", "inr");
         params.put("automatic_payment_methods",
                 Map.of("enabled", true)); // Enables UPI if configured in Stripe Dashboard
-
-        PaymentIntent paymentIntent = PaymentIntent.create(params);
+        params.put("metadata", Map.of("orderId", order.getId()));
+
+        PaymentIntent paymentIntent;
+        long start = System.nanoTime();
+        try {
+            paymentIntent = PaymentIntent.create(params);
+        } catch (StripeException | RuntimeException e) {
+            createIntentFailed.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+        createIntentSucceeded.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
 
         Map<String, String> responseData = new HashMap<>();
         responseData.put("clientSecret", paymentIntent.getClientSecret());
@@ -61,11 +147,90 @@ public class PaymentController {
 
         return ResponseEntity.ok(responseData);
     }
+
+    @PostMapping("/webhook")
+    @Operation(summary = "Stripe Webhook", description = "Receives events from Stripe; the Stripe-Signature header is verified against stripe.webhook-secret. payment_intent.succeeded moves the order named in the intent's metadata from PENDING to PAID, provided the amount and currency match the order. Other events are acknowledged and ignored, as are repeated deliveries of an event already applied.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Event received", content = @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Missing or invalid signature", content = @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class))),
+            @ApiResponse(responseCode = "503", description = "Webhook secret not configured", content = @Content(mediaType = "application/json", schema = @Schema(implementation = MessageResponse.class)))
+    })
+    public ResponseEntity<?> handleWebhook(@RequestBody String payload,
+            @RequestHeader(value = "Stripe-Signature", required = false) String signature) {
+        if (webhookSecret.isBlank()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(new MessageResponse("Error: Payment webhook is not configured!"));
+        }
+        Event event = null;
+        if (signature != null) {
+            try {
+                event = Webhook.constructEvent(payload, signature, webhookSecret);
+            } catch (SignatureVerificationException | JsonParseException e) {
+                logger.debug("Rejected webhook call: {}", e.getMessage());
+            }
+        }
+        if (event == null) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: Invalid webhook signature!"));
+        }
+
+        if (!PAYMENT_SUCCEEDED.equals(event.getType())) {
+            return ResponseEntity.ok(new MessageResponse("Event ignored"));
+        }
+        PaymentIntent intent = paymentIntent(event);
+        String orderId = intent != null && intent.getMetadata() != null ? intent.getMetadata().get("orderId") : null;
+        if (orderId == null) {
+            logger.warn("Stripe event {} has no order id", event.getId());
+            return ResponseEntity.ok(new MessageResponse("Event ignored"));
+        }
+
+        // Stripe calls without a tenant, so the order is looked up across tenants
+        Order order = mongoTemplate.findById(orderId, Order.class);
+        if (order == null) {
+            logger.warn("Payment {} succeeded for unknown order {}", intent.getId(), orderId);
+            return ResponseEntity.ok(new MessageResponse("Event ignored"));
+        }
+        if (!"inr".equals(intent.getCurrency()) || intent.getAmountReceived() == null
+                || intent.getAmountReceived() != pricingService.amountInMinorUnits(order)) {
+            logger.warn("Payment {} for order {} received {} {}, expected {} inr; order left unpaid", intent.getId(),
+                    orderId, intent.getAmountReceived(), intent.getCurrency(), pricingService.amountInMinorUnits(order));
+            return ResponseEntity.ok(new MessageResponse("Amount does not match the order"));
+        }
+
+        OrderStatusService.Result result = orderStatusService.transitionAnyTenant(orderId, OrderStatus.PAID,
+                STRIPE_ACTOR);
+        if (!result.isSuccess() && result.status() != OrderStatus.PAID) {
+            // Typically cancelled when its reservation expired: the money has to go back
+            logger.warn("Payment {} succeeded for order {} which is {}; refund it", intent.getId(), orderId,
+                    result.status());
+        }
+        // Acknowledged either way; a non-2xx answer only makes Stripe deliver it again
+        return ResponseEntity.ok(new MessageResponse(result.isSuccess() ? "Order paid" : result.message()));
+    }
+
+    // The typed object, or the raw one when the event's API version differs from the library's
+    private static PaymentIntent paymentIntent(Event event) {
+        EventDataObjectDeserializer data = event.getDataObjectDeserializer();
+        try {
+            StripeObject object = data.getObject().isPresent() ? data.getObject().get() : data.deserializeUnsafe();
+            return object instanceof PaymentIntent intent ? intent : null;
+        } catch (EventDataObjectDeserializationException e) {
+            logger.warn("Could not read Stripe event {}: {}", event.getId(), e.getMessage());
+            return null;
+        }
+    }
+
+    private Timer stripeTimer(String operation, String outcome) {
+        return Timer.builder("sutrini.stripe.requests")
+                .description("Blocking calls to the Stripe API, including its network retries")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
 }
 
 class PaymentRequest {
     private String orderId;
-    private Long amount; // in cents/paise
+    private Long amount; // in cents/paise; ignored, the order total is authoritative
 
     public String getOrderId() {
         return orderId;
@@ -3,6 +3,17 @@ package com.sutrini.controller;
 import com.sutrini.model.Product;
 import com.sutrini.repository.ProductRepository;
 import com.sutrini.dto.MessageResponse;
+import com.sutrini.dto.FacetedPageResponse;
+import com.sutrini.dto.PageResponse;
+import com.sutrini.dto.StockAdjustmentRequest;
+import com.sutrini.security.TenantContext;
+import com.sutrini.security.UserPrincipal;
+import com.sutrini.service.CatalogResponseCache;
+import com.sutrini.service.CatalogService;
+import com.sutrini.service.CatalogSnapshot;
+import com.sutrini.service.ProductFacetIndex;
+import com.sutrini.service.ProductPriceCache;
+import com.sutrini.service.StockService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -13,11 +24,31 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
@@ -28,40 +59,172 @@ public class ProductController {
     @Autowired
     ProductRepository productRepository;
 
-    @Operation(summary = "Get All Products (Consumer)", description = "Retrieve all active products from the catalog. Optionally filter by category. This is a public endpoint used by consumers to browse the product catalog.")
+    @Autowired
+    ProductPriceCache priceCache;
+
+    @Autowired
+    CatalogService catalogService;
+
+    @Autowired
+    CatalogResponseCache responseCache;
+
+    @Autowired
+    MongoTemplate mongoTemplate;
+
+    private static final Set<String> SORTABLE = Set.of("name", "basePrice", "category");
+
+    @Value("${catalog.http.max-age:30}")
+    private long httpMaxAge;
+
+    @Value("${catalog.http.stale-while-revalidate:30}")
+    private long httpStaleWhileRevalidate;
+
+    @Operation(summary = "Get All Products (Consumer)", description = "Retrieve all active products from the catalog. Optionally filter by category. This is a public endpoint used by consumers to browse the product catalog. Pass page and/or size to receive a paginated response instead of the full list. Responses carry a strong ETag and Cache-Control (public for anonymous callers, so a CDN can serve them per X-Tenant-ID); send If-None-Match to get 304 when nothing changed. Unpaged lists are sent from pre-serialised JSON, gzip-encoded when Accept-Encoding allows it.")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Successfully retrieved product list", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Product.class)))
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved product list (or a PageResponse when paginated)", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Product.class))),
+            @ApiResponse(responseCode = "304", description = "Not modified (If-None-Match matched)"),
+            @ApiResponse(responseCode = "400", description = "Unsupported sort property")
     })
     @GetMapping
-    public List<Product> getAllProducts(
-            @Parameter(description = "Filter products by category (optional)") @RequestParam(required = false) String category) {
-        if (category != null) {
-            return productRepository.findByCategory(category);
+    public ResponseEntity<?> getAllProducts(
+            @Parameter(description = "Filter products by category (optional)") @RequestParam(required = false) String category,
+            @Parameter(description = "Zero-based page index (optional)") @RequestParam(required = false) Integer page,
+            @Parameter(description = "Page size, max 100 (optional)") @RequestParam(required = false) Integer size,
+            @Parameter(description = "Sort as property,direction - one of name, basePrice, category (optional)", example = "basePrice,asc") @RequestParam(required = false) String sort,
+            @Parameter(hidden = true) @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        if (!Paging.requested(page, size, null)) {
+            CatalogResponseCache.Entry serialized = responseCache.get(category);
+            if (serialized != null) {
+                return serialized(serialized, acceptEncoding);
+            }
+            List<Product> products = category != null ? catalogService.findByCategory(category)
+                    : catalogService.findActive();
+            return cached(products, products, category);
+        }
+
+        Pageable pageable = Paging.pageable(page, size, sort, SORTABLE, Sort.by("name", "id"));
+        Page<Product> result = category != null ? catalogService.findByCategory(category, pageable)
+                : catalogService.findActive(pageable);
+        return cached(PageResponse.of(result), result.getContent(), category, pageable, result.getTotalElements());
+    }
+
+    // The ETag is computed from the product versions, so a 304 needs no serialisation
+    private ResponseEntity<Object> cached(Object body, List<Product> products, Object... parameters) {
+        return ResponseEntity.ok()
+                .eTag(HttpCaching.productsETag(products, parameters))
+                .cacheControl(catalogCacheControl())
+                .varyBy(TenantContext.HEADER, HttpHeaders.AUTHORIZATION)
+                .body(body);
+    }
+
+    // Pre-serialised list bytes, gzipped when the client accepts it
+    private ResponseEntity<byte[]> serialized(CatalogResponseCache.Entry entry, String acceptEncoding) {
+        boolean gzip = entry.gzip() != null && acceptsGzip(acceptEncoding);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(gzip ? entry.gzipETag() : entry.etag())
+                .cacheControl(catalogCacheControl())
+                .varyBy(TenantContext.HEADER, HttpHeaders.AUTHORIZATION, HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
         }
-        return productRepository.findByActiveTrue();
+        return response.body(gzip ? entry.gzip() : entry.json());
     }
 
-    @Operation(summary = "Get Product by ID (Consumer)", description = "Retrieve detailed information about a specific product by its ID. Used by consumers to view product details.")
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        boolean any = false;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            // e.g. gzip;q=0 refuses it
+            boolean accepted = parts.length < 2 || !parts[1].trim().matches("q=0(\\.0*)?");
+            if (name.equalsIgnoreCase("gzip")) {
+                return accepted;
+            }
+            if (name.equals("*")) {
+                any = accepted;
+            }
+        }
+        return any;
+    }
+
+    // Anonymous storefront reads may be kept by a CDN, keyed by the tenant header; a
+    // signed-in caller's tenant comes from the token, so only their browser may keep those
+    private CacheControl catalogCacheControl() {
+        CacheControl cacheControl = CacheControl.maxAge(httpMaxAge, TimeUnit.SECONDS)
+                .staleWhileRevalidate(httpStaleWhileRevalidate, TimeUnit.SECONDS);
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        boolean signedIn = authentication != null && authentication.getPrincipal() instanceof UserPrincipal;
+        return signedIn ? cacheControl.cachePrivate() : cacheControl.cachePublic();
+    }
+
+    @Operation(summary = "Browse Products with Facets (Consumer)", description = "List active products filtered by category, size, color and price bucket, together with the number of matching products for every facet value so the storefront can render its filters without downloading the catalog. Values within one facet are combined with OR, different facets with AND; the counts of a facet ignore the selection in that facet.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Page of matching products with facet counts", content = @Content(mediaType = "application/json", schema = @Schema(implementation = FacetedPageResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Unsupported sort property")
+    })
+    @GetMapping("/browse")
+    public ResponseEntity<FacetedPageResponse<Product>> browseProducts(
+            @Parameter(description = "Categories to include (repeatable)") @RequestParam(required = false) List<String> categories,
+            @Parameter(description = "Available sizes to include (repeatable)") @RequestParam(required = false) List<String> sizes,
+            @Parameter(description = "Available colors to include (repeatable)") @RequestParam(required = false) List<String> colors,
+            @Parameter(description = "Price buckets to include, as returned in the price facet (repeatable)", example = "1000-2500") @RequestParam(required = false) List<String> prices,
+            @Parameter(description = "Zero-based page index (optional)") @RequestParam(required = false) Integer page,
+            @Parameter(description = "Page size, max 100 (optional)") @RequestParam(required = false) Integer size,
+            @Parameter(description = "Sort as property,direction - one of name, basePrice, category (optional)") @RequestParam(required = false) String sort) {
+        Pageable pageable = Paging.pageable(page, size, sort, SORTABLE, Sort.unsorted());
+        ProductFacetIndex.Result result = catalogService.browse(new ProductFacetIndex.Selection(
+                toSet(categories), toSet(sizes), toSet(colors), toSet(prices)));
+        return ResponseEntity.ok(new FacetedPageResponse<>(
+                CatalogSnapshot.page(result.products(), pageable), result.facets()));
+    }
+
+    private static Set<String> toSet(List<String> values) {
+        return values != null ? new HashSet<>(values) : null;
+    }
+
+    @Operation(summary = "Get Product by ID (Consumer)", description = "Retrieve detailed information about a specific product by its ID. Used by consumers to view product details. Served with a strong ETag, Last-Modified and Cache-Control like the product list.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Product found", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Product.class))),
+            @ApiResponse(responseCode = "304", description = "Not modified (If-None-Match or If-Modified-Since matched)"),
             @ApiResponse(responseCode = "404", description = "Product not found")
     })
     @GetMapping("/{id}")
     public ResponseEntity<?> getProductById(
             @Parameter(description = "Product ID", required = true) @PathVariable String id) {
-        return productRepository.findById(id)
-                .map(product -> ResponseEntity.ok(product))
+        return catalogService.findById(id)
+                .map(product -> HttpCaching.lastModified(ResponseEntity.ok(), product.getUpdatedAt())
+                        .eTag(HttpCaching.productsETag(List.of(product)))
+                        .cacheControl(catalogCacheControl())
+                        .varyBy(TenantContext.HEADER, HttpHeaders.AUTHORIZATION)
+                        .body(product))
                 .orElse(ResponseEntity.notFound().build());
     }
 
-    @Operation(summary = "Search Products (Consumer)", description = "Search for products by name (case-insensitive). Returns all products whose names contain the search query.")
+    @Operation(summary = "Search Products (Consumer)", description = "Full-text product search over name, category, colors, sizes and description, ranked by relevance. The last word also matches as a prefix, so the endpoint can back a search-as-you-type box. Optionally filter by price range and active flag. Pass page and/or size to receive a paginated response; pass sort to order by a field instead of relevance.")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Search results returned (may be empty)", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Product.class)))
+            @ApiResponse(responseCode = "200", description = "Search results returned (may be empty)", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Product.class))),
+            @ApiResponse(responseCode = "400", description = "Unsupported sort property")
     })
     @GetMapping("/search")
-    public List<Product> searchProducts(
-            @Parameter(description = "Search query (product name)", required = true) @RequestParam String query) {
-        return productRepository.findByNameContainingIgnoreCase(query);
+    public ResponseEntity<?> searchProducts(
+            @Parameter(description = "Search query, e.g. 'red silk sar'", required = true) @RequestParam String query,
+            @Parameter(description = "Minimum base price, inclusive (optional)") @RequestParam(required = false) BigDecimal minPrice,
+            @Parameter(description = "Maximum base price, inclusive (optional)") @RequestParam(required = false) BigDecimal maxPrice,
+            @Parameter(description = "Only active (true) or inactive (false) products (optional)") @RequestParam(required = false) Boolean active,
+            @Parameter(description = "Zero-based page index (optional)") @RequestParam(required = false) Integer page,
+            @Parameter(description = "Page size, max 100 (optional)") @RequestParam(required = false) Integer size,
+            @Parameter(description = "Sort as property,direction - one of name, basePrice, category (optional, default relevance)") @RequestParam(required = false) String sort) {
+        if (!Paging.requested(page, size, null)) {
+            Pageable unpaged = sort != null ? Pageable.unpaged(Paging.pageable(0, 1, sort, SORTABLE, Sort.unsorted()).getSort())
+                    : Pageable.unpaged();
+            return ResponseEntity.ok(catalogService.search(query, minPrice, maxPrice, active, unpaged).getContent());
+        }
+        Pageable pageable = Paging.pageable(page, size, sort, SORTABLE, Sort.unsorted());
+        return ResponseEntity.ok(PageResponse.of(catalogService.search(query, minPrice, maxPrice, active, pageable)));
     }
 
     @Operation(summary = "Create Product (Admin)", description = "Create a new product in the catalog. Requires ADMIN role. Include all product details including name, description, category, pricing, images, sizes, colors, and stock information.", security = @SecurityRequirement(name = "Bearer Authentication"))
@@ -72,11 +235,16 @@ public class ProductController {
     @PostMapping
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> createProduct(@RequestBody Product product) {
-        Product savedProduct = productRepository.save(product);
+        // Insert rather than save, so a client-supplied id cannot overwrite another tenant's product
+        product.setTenantId(TenantContext.current());
+        product.setVersion(null);
+        product.setUpdatedAt(LocalDateTime.now());
+        Product savedProduct = productRepository.insert(product);
+        catalogService.productSaved(savedProduct);
         return ResponseEntity.ok(savedProduct);
     }
 
-    @Operation(summary = "Update Product (Admin)", description = "Update an existing product's details. Requires ADMIN role. All product fields can be updated including name, description, pricing, stock, and availability status.", security = @SecurityRequirement(name = "Bearer Authentication"))
+    @Operation(summary = "Update Product (Admin)", description = "Update an existing product's details. Requires ADMIN role. All product fields can be updated including name, description, pricing, stock, and availability status. The fields are written in one atomic update; stockQuantity is only replaced when given, so use PATCH /api/products/{id}/stock for relative changes that must not race with checkouts.", security = @SecurityRequirement(name = "Bearer Authentication"))
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Product updated successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Product.class))),
             @ApiResponse(responseCode = "404", description = "Product not found"),
@@ -87,20 +255,58 @@ public class ProductController {
     public ResponseEntity<?> updateProduct(
             @Parameter(description = "Product ID", required = true) @PathVariable String id,
             @RequestBody Product productRequest) {
-        return productRepository.findById(id)
-                .map(product -> {
-                    product.setName(productRequest.getName());
-                    product.setDescription(productRequest.getDescription());
-                    product.setCategory(productRequest.getCategory());
-                    product.setBasePrice(productRequest.getBasePrice());
-                    product.setImages(productRequest.getImages());
-                    product.setAvailableSizes(productRequest.getAvailableSizes());
-                    product.setAvailableColors(productRequest.getAvailableColors());
-                    product.setStockQuantity(productRequest.getStockQuantity());
-                    product.setActive(productRequest.isActive());
-                    return ResponseEntity.ok(productRepository.save(product));
-                })
-                .orElse(ResponseEntity.notFound().build());
+        Update update = new Update()
+                .set("name", productRequest.getName())
+                .set("description", productRequest.getDescription())
+                .set("category", productRequest.getCategory())
+                .set("basePrice", productRequest.getBasePrice())
+                .set("images", productRequest.getImages())
+                .set("availableSizes", productRequest.getAvailableSizes())
+                .set("availableColors", productRequest.getAvailableColors())
+                .set("active", productRequest.isActive())
+                .set("updatedAt", LocalDateTime.now());
+        if (productRequest.getStockQuantity() != null) {
+            update.set("stockQuantity", productRequest.getStockQuantity());
+        }
+
+        Product saved = mongoTemplate.findAndModify(new Query(TenantContext.scoped(Criteria.where("id").is(id))), update,
+                FindAndModifyOptions.options().returnNew(true), Product.class);
+        if (saved == null) {
+            return ResponseEntity.notFound().build();
+        }
+        priceCache.invalidate(id);
+        catalogService.productSaved(saved);
+        return ResponseEntity.ok(saved);
+    }
+
+    @Operation(summary = "Adjust Product Stock (Admin)", description = "Add or remove stock units with a single atomic increment, e.g. after a delivery or a stock count. Requires ADMIN role. A decrement that would take the stock below zero is rejected.", security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Stock adjusted", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Product.class))),
+            @ApiResponse(responseCode = "404", description = "Product not found"),
+            @ApiResponse(responseCode = "409", description = "Not enough stock to remove"),
+            @ApiResponse(responseCode = "403", description = "Not authorized - Admin role required")
+    })
+    @PatchMapping("/{id}/stock")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> adjustStock(
+            @Parameter(description = "Product ID", required = true) @PathVariable String id,
+            @RequestBody StockAdjustmentRequest request) {
+        Criteria criteria = TenantContext.scoped(Criteria.where("id").is(id));
+        if (request.getDelta() < 0) {
+            criteria = criteria.and("stockQuantity").gte(-request.getDelta());
+        }
+        Product product = mongoTemplate.findAndModify(new Query(criteria),
+                StockService.stockUpdate(request.getDelta()),
+                FindAndModifyOptions.options().returnNew(true), Product.class);
+        if (product != null) {
+            catalogService.productSaved(product);
+            return ResponseEntity.ok(product);
+        }
+        if (!productRepository.existsById(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new MessageResponse("Error: Not enough stock to remove " + (-request.getDelta()) + " units"));
     }
 
     @Operation(summary = "Delete Product (Admin)", description = "Permanently delete a product from the catalog. Requires ADMIN role. This action cannot be undone.", security = @SecurityRequirement(name = "Bearer Authentication"))
@@ -115,8 +321,21 @@ public class ProductController {
             @Parameter(description = "Product ID", required = true) @PathVariable String id) {
         if (productRepository.existsById(id)) {
             productRepository.deleteById(id);
+            priceCache.invalidate(id);
+            catalogService.productDeleted(id);
             return ResponseEntity.ok(new MessageResponse("Product deleted successfully!"));
         }
         return ResponseEntity.notFound().build();
     }
+
+    @Operation(summary = "Catalog Snapshot Status (Admin)", description = "Report how the in-memory catalog behind the consumer read endpoints is kept current (change stream or polling), its version and size, and how stale it is.", security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Snapshot statistics", content = @Content(mediaType = "application/json", schema = @Schema(implementation = CatalogService.CatalogStats.class))),
+            @ApiResponse(responseCode = "403", description = "Not authorized - Admin role required")
+    })
+    @GetMapping("/catalog-status")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<CatalogService.CatalogStats> getCatalogStatus() {
+        return ResponseEntity.ok(catalogService.getStats());
+    }
 }
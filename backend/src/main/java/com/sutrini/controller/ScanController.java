@@ -0,0 +1,81 @@
+package com.sutrini.controller;
+
+import com.sutrini.dto.MessageResponse;
+import com.sutrini.dto.ScanRequest;
+import com.sutrini.security.UserPrincipal;
+import com.sutrini.service.ScanService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/scan")
+@Tag(name = "Scanning", description = "Production floor QR scan APIs for handheld scanners - Worker endpoints")
+public class ScanController {
+
+    @Autowired
+    ScanService scanService;
+
+    @Value("${scan.batch-max:500}")
+    int batchMax;
+
+    @Operation(summary = "Scan Order QR (Admin/Worker)", description = "Apply one scan of an order QR label (payload ORDER:{id}) at a station. The station decides the status the order moves to (see GET /api/scan/stations); the move is one atomic conditional update and only the status is read back, so the response stays small. Rescanning an order already at the station's status reports UNCHANGED. Pass a key to make retries idempotent.", security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Order moved (UPDATED) or already there (UNCHANGED)"),
+            @ApiResponse(responseCode = "400", description = "Unknown station or not an order QR code"),
+            @ApiResponse(responseCode = "404", description = "Order not found"),
+            @ApiResponse(responseCode = "409", description = "Order is in a status this station cannot move it from"),
+            @ApiResponse(responseCode = "403", description = "Not authorized - Admin or Worker role required")
+    })
+    @PostMapping
+    @PreAuthorize("hasRole('ADMIN') or hasRole('WORKER')")
+    public ResponseEntity<ScanService.ScanResult> scan(@RequestBody ScanRequest request) {
+        ScanService.ScanResult result = scanService.scan(request, currentActor());
+        HttpStatus status = switch (result.outcome()) {
+            case UPDATED, UNCHANGED -> HttpStatus.OK;
+            case NOT_FOUND -> HttpStatus.NOT_FOUND;
+            default -> HttpStatus.CONFLICT;
+        };
+        return ResponseEntity.status(status).body(result);
+    }
+
+    @Operation(summary = "Upload Scan Batch (Admin/Worker)", description = "Apply scans buffered by a scanner while it was offline, in the order given by their scannedAt. Every scan is applied on its own and gets its own result in request order; scans whose key was already seen return the first result again, so re-uploading a batch is safe.", security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "One result per scan"),
+            @ApiResponse(responseCode = "400", description = "Empty or too large batch"),
+            @ApiResponse(responseCode = "403", description = "Not authorized - Admin or Worker role required")
+    })
+    @PostMapping("/batch")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('WORKER')")
+    public ResponseEntity<?> scanBatch(@RequestBody List<ScanRequest> requests) {
+        if (requests == null || requests.isEmpty() || requests.size() > batchMax) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error: A batch holds between 1 and " + batchMax + " scans"));
+        }
+        return ResponseEntity.ok(scanService.scanAll(requests, currentActor()));
+    }
+
+    @Operation(summary = "List Scan Stations (Admin/Worker)", description = "Stations known to the scan endpoint and the status each one moves orders to.", security = @SecurityRequirement(name = "Bearer Authentication"))
+    @GetMapping("/stations")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('WORKER')")
+    public ResponseEntity<?> getStations() {
+        return ResponseEntity.ok(scanService.getStations());
+    }
+
+    private static String currentActor() {
+        UserPrincipal principal = (UserPrincipal) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        return principal.getUsername();
+    }
+}
@@ -0,0 +1,31 @@
+package com.sutrini.dto;
+
+import com.sutrini.model.OrderStatus;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Move several orders to the same status")
+public class BatchStatusRequest {
+    @Schema(description = "Order IDs", example = "[\"order123\", \"order456\"]")
+    private List<String> ids;
+
+    @Schema(description = "Target status", example = "SHIPPED")
+    private OrderStatus status;
+
+    public List<String> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<String> ids) {
+        this.ids = ids;
+    }
+
+    public OrderStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(OrderStatus status) {
+        this.status = status;
+    }
+}
@@ -0,0 +1,35 @@
+package com.sutrini.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "One slice of a keyset-paginated list")
+public class CursorPage<T> {
+    @Schema(description = "Items in this slice")
+    private List<T> content;
+
+    @Schema(description = "Opaque cursor for the next slice; null when there are no more items", example = "MTcwMjIwOTYwMDAwMDo2NTc1YjI...")
+    private String nextCursor;
+
+    public CursorPage(List<T> content, String nextCursor) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public void setContent(List<T> content) {
+        this.content = content;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,25 @@
+package com.sutrini.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import org.springframework.data.domain.Page;
+
+import java.util.Map;
+
+@Schema(description = "One page of a faceted product listing, with counts per facet value")
+public class FacetedPageResponse<T> extends PageResponse<T> {
+    @Schema(description = "Per facet (category, size, color, price) the number of matching items per value", example = "{\"color\": {\"Blue\": 4, \"Red\": 12}, \"price\": {\"0-1000\": 3, \"1000-2500\": 9}}")
+    private Map<String, Map<String, Integer>> facets;
+
+    public FacetedPageResponse(Page<T> page, Map<String, Map<String, Integer>> facets) {
+        super(page.getContent(), page.getNumber(), page.getSize(), page.getTotalElements());
+        this.facets = facets;
+    }
+
+    public Map<String, Map<String, Integer>> getFacets() {
+        return facets;
+    }
+
+    public void setFacets(Map<String, Map<String, Integer>> facets) {
+        this.facets = facets;
+    }
+}
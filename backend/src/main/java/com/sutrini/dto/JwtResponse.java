@@ -9,6 +9,9 @@ public class JwtResponse {
     @Schema(description = "JWT access token", example = "eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9...")
     private String token;
 
+    @Schema(description = "Refresh token, exchanged at /api/auth/refresh for a new access token", example = "eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9...")
+    private String refreshToken;
+
     @Schema(description = "Token type", example = "Bearer", defaultValue = "Bearer")
     private String type = "Bearer";
 
@@ -28,6 +31,11 @@ public class JwtResponse {
         this.roles = roles;
     }
 
+    public JwtResponse(String accessToken, String refreshToken, String id, String email, List<String> roles) {
+        this(accessToken, id, email, roles);
+        this.refreshToken = refreshToken;
+    }
+
     public String getToken() {
         return token;
     }
@@ -36,6 +44,14 @@ public class JwtResponse {
         this.token = token;
     }
 
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+
+    public void setRefreshToken(String refreshToken) {
+        this.refreshToken = refreshToken;
+    }
+
     public String getType() {
         return type;
     }
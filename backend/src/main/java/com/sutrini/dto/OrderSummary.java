@@ -0,0 +1,26 @@
+package com.sutrini.dto;
+
+import com.sutrini.model.OrderStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Closed projection of {@link com.sutrini.model.Order} used by list endpoints.
+ * Only these fields are read from Mongo; items and the QR image are left out.
+ */
+public interface OrderSummary {
+    String getId();
+
+    String getCustomerId();
+
+    String getCustomerEmail();
+
+    String getTenantId();
+
+    BigDecimal getTotalAmount();
+
+    OrderStatus getStatus();
+
+    LocalDateTime getCreatedAt();
+}
@@ -0,0 +1,76 @@
+package com.sutrini.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import org.springframework.data.domain.Page;
+
+import java.util.List;
+
+@Schema(description = "One page of a paginated list")
+public class PageResponse<T> {
+    @Schema(description = "Items on this page")
+    private List<T> content;
+
+    @Schema(description = "Zero-based page index", example = "0")
+    private int page;
+
+    @Schema(description = "Requested page size", example = "20")
+    private int size;
+
+    @Schema(description = "Total number of matching items", example = "125")
+    private long totalElements;
+
+    @Schema(description = "Total number of pages", example = "7")
+    private int totalPages;
+
+    public PageResponse(List<T> content, int page, int size, long totalElements) {
+        this.content = content;
+        this.page = page;
+        this.size = size;
+        this.totalElements = totalElements;
+        this.totalPages = size == 0 ? 0 : (int) ((totalElements + size - 1) / size);
+    }
+
+    public static <T> PageResponse<T> of(Page<T> page) {
+        return new PageResponse<>(page.getContent(), page.getNumber(), page.getSize(), page.getTotalElements());
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public void setContent(List<T> content) {
+        this.content = content;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public void setPage(int page) {
+        this.page = page;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public long getTotalElements() {
+        return totalElements;
+    }
+
+    public void setTotalElements(long totalElements) {
+        this.totalElements = totalElements;
+    }
+
+    public int getTotalPages() {
+        return totalPages;
+    }
+
+    public void setTotalPages(int totalPages) {
+        this.totalPages = totalPages;
+    }
+}
@@ -0,0 +1,19 @@
+package com.sutrini.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotBlank;
+
+@Schema(description = "Request to exchange a refresh token for a new access token")
+public class RefreshTokenRequest {
+    @NotBlank
+    @Schema(description = "Refresh token returned by /api/auth/signin or a previous refresh", example = "eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9...")
+    private String refreshToken;
+
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+
+    public void setRefreshToken(String refreshToken) {
+        this.refreshToken = refreshToken;
+    }
+}
@@ -4,7 +4,6 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.Data;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
-import java.util.Set;
 
 @Schema(description = "User registration request")
 public class RegisterRequest {
@@ -25,9 +24,6 @@ public class RegisterRequest {
     @Schema(description = "User password", example = "securePassword123")
     private String password;
 
-    @Schema(description = "User roles (optional, defaults to CUSTOMER)", example = "[\"customer\"]")
-    private Set<String> roles;
-
     public String getFirstName() {
         return firstName;
     }
@@ -59,12 +55,4 @@ public class RegisterRequest {
     public void setPassword(String password) {
         this.password = password;
     }
-
-    public Set<String> getRoles() {
-        return roles;
-    }
-
-    public void setRoles(Set<String> roles) {
-        this.roles = roles;
-    }
 }
@@ -0,0 +1,50 @@
+package com.sutrini.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "One QR scan at a production floor station")
+public class ScanRequest {
+    @Schema(description = "Scanned QR payload", example = "ORDER:6579a1f2c3d4e5f6a7b8c9d0")
+    private String payload;
+
+    @Schema(description = "Station the scanner belongs to; decides the status the order moves to", example = "quality")
+    private String station;
+
+    @Schema(description = "Client-generated id of this scan; a retried or re-uploaded scan with the same key is answered from the first result", example = "scanner-07-000123")
+    private String key;
+
+    @Schema(description = "When the scan happened on the device (epoch millis); offline batches are applied in this order", example = "1702209600000")
+    private Long scannedAt;
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public String getStation() {
+        return station;
+    }
+
+    public void setStation(String station) {
+        this.station = station;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public Long getScannedAt() {
+        return scannedAt;
+    }
+
+    public void setScannedAt(Long scannedAt) {
+        this.scannedAt = scannedAt;
+    }
+}
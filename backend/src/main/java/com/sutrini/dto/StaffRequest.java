@@ -0,0 +1,71 @@
+package com.sutrini.dto;
+
+import com.sutrini.model.Role;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+
+@Schema(description = "Staff account created by an administrator in their own boutique")
+public class StaffRequest {
+    @NotBlank
+    @Schema(description = "Staff member first name", example = "Meera")
+    private String firstName;
+
+    @NotBlank
+    @Schema(description = "Staff member last name", example = "Iyer")
+    private String lastName;
+
+    @NotBlank
+    @Email
+    @Schema(description = "Staff member email address", example = "meera@example.com")
+    private String email;
+
+    @NotBlank
+    @Schema(description = "Initial password", example = "securePassword123")
+    private String password;
+
+    @NotNull
+    @Schema(description = "ADMIN or WORKER", example = "WORKER")
+    private Role role;
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public void setFirstName(String firstName) {
+        this.firstName = firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public void setLastName(String lastName) {
+        this.lastName = lastName;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public Role getRole() {
+        return role;
+    }
+
+    public void setRole(Role role) {
+        this.role = role;
+    }
+}
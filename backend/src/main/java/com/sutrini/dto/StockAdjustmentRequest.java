@@ -0,0 +1,17 @@
+package com.sutrini.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Relative change to a product's stock quantity")
+public class StockAdjustmentRequest {
+    @Schema(description = "Units to add (positive, e.g. a new delivery) or remove (negative, e.g. damaged goods)", example = "25")
+    private int delta;
+
+    public int getDelta() {
+        return delta;
+    }
+
+    public void setDelta(int delta) {
+        this.delta = delta;
+    }
+}
@@ -0,0 +1,106 @@
+package com.sutrini.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+
+import java.math.BigDecimal;
+
+/**
+ * Orders placed on one day, per tenant. The id is {@code tenantId|yyyy-MM-dd}, so a
+ * date range is a range scan of the primary key.
+ */
+@Document(collection = "analytics_daily")
+@Schema(description = "Sales rollup for one day")
+public class DailySales {
+    @Id
+    private String id;
+
+    private String tenantId;
+
+    @Schema(description = "Day the orders were placed", example = "2024-12-10")
+    private String day;
+
+    @Schema(description = "Orders placed", example = "42")
+    private long orders;
+
+    @Schema(description = "Units ordered", example = "57")
+    private long units;
+
+    @Schema(description = "Value of the orders placed", example = "210000.00")
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal revenue;
+
+    @Schema(description = "Orders placed that day and cancelled since", example = "3")
+    private long cancelledOrders;
+
+    @Schema(description = "Value of the cancelled orders", example = "15000.00")
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal cancelledRevenue;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    public void setTenantId(String tenantId) {
+        this.tenantId = tenantId;
+    }
+
+    public String getDay() {
+        return day;
+    }
+
+    public void setDay(String day) {
+        this.day = day;
+    }
+
+    public long getOrders() {
+        return orders;
+    }
+
+    public void setOrders(long orders) {
+        this.orders = orders;
+    }
+
+    public long getUnits() {
+        return units;
+    }
+
+    public void setUnits(long units) {
+        this.units = units;
+    }
+
+    public BigDecimal getRevenue() {
+        return revenue;
+    }
+
+    public void setRevenue(BigDecimal revenue) {
+        this.revenue = revenue;
+    }
+
+    public long getCancelledOrders() {
+        return cancelledOrders;
+    }
+
+    public void setCancelledOrders(long cancelledOrders) {
+        this.cancelledOrders = cancelledOrders;
+    }
+
+    public BigDecimal getCancelledRevenue() {
+        return cancelledRevenue;
+    }
+
+    public void setCancelledRevenue(BigDecimal cancelledRevenue) {
+        this.cancelledRevenue = cancelledRevenue;
+    }
+}
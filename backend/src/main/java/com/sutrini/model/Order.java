@@ -1,16 +1,32 @@
 package com.sutrini.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 
 @Document(collection = "orders")
+// Every request-path query starts with the tenant, so each index leads with it.
+// "My orders" and its keyset pagination (newest first)
+@CompoundIndex(name = "tenant_customer_created", def = "{'tenantId': 1, 'customerId': 1, 'createdAt': -1, '_id': -1}")
+// Admin order list and its keyset pagination
+@CompoundIndex(name = "tenant_created", def = "{'tenantId': 1, 'createdAt': -1, '_id': -1}")
+// Orders by status (workshop queues, label sheets)
+@CompoundIndex(name = "tenant_status_created", def = "{'tenantId': 1, 'status': 1, 'createdAt': -1, '_id': -1}")
+// Expiry job; only orders currently holding stock are indexed
+@CompoundIndex(name = "reservation_expiry", def = "{'reservationExpiresAt': 1}", partialFilter = "{'stockReserved': true}")
+// Outbox dispatcher; only orders with undispatched events are indexed
+@CompoundIndex(name = "outbox_due", def = "{'outboxDueAt': 1}", partialFilter = "{'outboxDueAt': {$exists: true}}")
 @Schema(description = "Order entity representing a customer's purchase order")
-public class Order {
+public class Order implements TenantScoped {
     @Id
     @Schema(description = "Unique order identifier", example = "order123")
     private String id;
@@ -28,19 +44,48 @@ public class Order {
     private List<OrderItem> items;
 
     @Schema(description = "Total order amount", example = "10000.00")
+    @Field(targetType = FieldType.DECIMAL128)
     private BigDecimal totalAmount;
 
-    @Schema(description = "Current order status", example = "PENDING", allowableValues = { "PENDING", "IN_PROGRESS",
-            "COMPLETED", "CANCELLED" })
+    @Schema(description = "Current order status", example = "PENDING")
     private OrderStatus status;
 
+    @Schema(description = "Status changes, oldest first (the most recent 50 are kept)")
+    private List<OrderStatusChange> statusHistory;
+
+    // Incremented by MongoTemplate on every update (outbox bookkeeping aside); clients may
+    // pass it back to update only the version they saw, and it is the basis of the ETag
+    @Version
+    @Schema(description = "Revision of the order, incremented on every change", example = "3")
+    private Long version;
+
     @Schema(description = "Order creation timestamp", example = "2024-12-10T12:00:00")
     private LocalDateTime createdAt = LocalDateTime.now();
 
+    @Schema(description = "When the order was last changed", example = "2024-12-10T12:05:00")
+    private LocalDateTime updatedAt;
+
     // QR Code path/url
-    @Schema(description = "Base64 encoded QR code for order tracking", example = "data:image/png;base64,iVBORw0KGgo...")
+    @Schema(description = "Link to the order tracking QR code image", example = "/api/orders/order123/qr")
     private String qrCodeUrl;
 
+    @Schema(description = "Whether stock is currently held for this order's items", example = "true")
+    private boolean stockReserved;
+
+    @Schema(description = "When the stock reservation lapses if the order is still unpaid", example = "2024-12-10T12:30:00")
+    private LocalDateTime reservationExpiresAt;
+
+    // Transactional outbox: events not yet dispatched, oldest first, and when the
+    // dispatcher should next look at them (unset once the outbox is empty)
+    @JsonIgnore
+    private List<OrderEvent> outbox;
+
+    @JsonIgnore
+    private LocalDateTime outboxDueAt;
+
+    @JsonIgnore
+    private int outboxAttempts;
+
     public Order() {
     }
 
@@ -100,6 +145,22 @@ public class Order {
         this.status = status;
     }
 
+    public List<OrderStatusChange> getStatusHistory() {
+        return statusHistory;
+    }
+
+    public void setStatusHistory(List<OrderStatusChange> statusHistory) {
+        this.statusHistory = statusHistory;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -115,4 +176,52 @@ public class Order {
     public void setQrCodeUrl(String qrCodeUrl) {
         this.qrCodeUrl = qrCodeUrl;
     }
+
+    public boolean isStockReserved() {
+        return stockReserved;
+    }
+
+    public void setStockReserved(boolean stockReserved) {
+        this.stockReserved = stockReserved;
+    }
+
+    public LocalDateTime getReservationExpiresAt() {
+        return reservationExpiresAt;
+    }
+
+    public void setReservationExpiresAt(LocalDateTime reservationExpiresAt) {
+        this.reservationExpiresAt = reservationExpiresAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public List<OrderEvent> getOutbox() {
+        return outbox;
+    }
+
+    public void setOutbox(List<OrderEvent> outbox) {
+        this.outbox = outbox;
+    }
+
+    public LocalDateTime getOutboxDueAt() {
+        return outboxDueAt;
+    }
+
+    public void setOutboxDueAt(LocalDateTime outboxDueAt) {
+        this.outboxDueAt = outboxDueAt;
+    }
+
+    public int getOutboxAttempts() {
+        return outboxAttempts;
+    }
+
+    public void setOutboxAttempts(int outboxAttempts) {
+        this.outboxAttempts = outboxAttempts;
+    }
 }
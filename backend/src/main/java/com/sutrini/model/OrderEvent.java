@@ -0,0 +1,77 @@
+package com.sutrini.model;
+
+import org.bson.types.ObjectId;
+
+import java.time.LocalDateTime;
+
+/**
+ * Pending side effect of an order change, kept in the order's outbox until it has been
+ * dispatched. Written in the same update as the change itself, so it is never lost.
+ */
+public class OrderEvent {
+
+    public enum Type { CREATED, STATUS_CHANGED }
+
+    private String id;
+
+    private Type type;
+
+    // Status the order left; null for CREATED
+    private OrderStatus from;
+
+    private OrderStatus to;
+
+    private LocalDateTime createdAt;
+
+    public OrderEvent() {
+    }
+
+    public static OrderEvent created(OrderStatus status) {
+        OrderEvent event = new OrderEvent();
+        event.setId(new ObjectId().toHexString());
+        event.setType(Type.CREATED);
+        event.setTo(status);
+        event.setCreatedAt(LocalDateTime.now());
+        return event;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public OrderStatus getFrom() {
+        return from;
+    }
+
+    public void setFrom(OrderStatus from) {
+        this.from = from;
+    }
+
+    public OrderStatus getTo() {
+        return to;
+    }
+
+    public void setTo(OrderStatus to) {
+        this.to = to;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -2,6 +2,8 @@ package com.sutrini.model;
 
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.Data;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
 import java.math.BigDecimal;
 
 @Schema(description = "Order item representing a single product in an order")
@@ -16,6 +18,7 @@ public class OrderItem {
     private int quantity;
 
     @Schema(description = "Unit price at time of order", example = "5000.00")
+    @Field(targetType = FieldType.DECIMAL128)
     private BigDecimal unitPrice;
 
     @Schema(description = "Selected size", example = "M")
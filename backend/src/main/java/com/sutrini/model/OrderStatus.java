@@ -1,5 +1,13 @@
 package com.sutrini.model;
 
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Order lifecycle. An order moves forward through production and shipping; it can be
+ * cancelled until it ships, and quality check can send it back to production.
+ * DELIVERED and CANCELLED are final.
+ */
 public enum OrderStatus {
     PENDING,
     PAID,
@@ -7,5 +15,37 @@ public enum OrderStatus {
     QUALITY_CHECK,
     SHIPPED,
     DELIVERED,
-    CANCELLED
+    CANCELLED;
+
+    /**
+     * Statuses this status may move to.
+     */
+    public Set<OrderStatus> next() {
+        return switch (this) {
+            case PENDING -> EnumSet.of(PAID, CANCELLED);
+            case PAID -> EnumSet.of(IN_PRODUCTION, CANCELLED);
+            case IN_PRODUCTION -> EnumSet.of(QUALITY_CHECK, CANCELLED);
+            case QUALITY_CHECK -> EnumSet.of(IN_PRODUCTION, SHIPPED, CANCELLED);
+            case SHIPPED -> EnumSet.of(DELIVERED);
+            case DELIVERED, CANCELLED -> EnumSet.noneOf(OrderStatus.class);
+        };
+    }
+
+    public boolean canTransitionTo(OrderStatus target) {
+        return next().contains(target);
+    }
+
+    /**
+     * Statuses from which this status may be reached, i.e. the statuses an order must
+     * currently be in for a move to this one to be accepted.
+     */
+    public Set<OrderStatus> previous() {
+        Set<OrderStatus> previous = EnumSet.noneOf(OrderStatus.class);
+        for (OrderStatus status : values()) {
+            if (status.canTransitionTo(this)) {
+                previous.add(status);
+            }
+        }
+        return previous;
+    }
 }
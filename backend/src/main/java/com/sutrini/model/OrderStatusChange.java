@@ -0,0 +1,50 @@
+package com.sutrini.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDateTime;
+
+@Schema(description = "One entry of an order's status history")
+public class OrderStatusChange {
+    @Schema(description = "Status the order moved to", example = "IN_PRODUCTION")
+    private OrderStatus status;
+
+    @Schema(description = "When the status changed", example = "2024-12-11T09:30:00")
+    private LocalDateTime changedAt;
+
+    @Schema(description = "Who changed it: the staff member's email, or system for automatic changes", example = "worker@example.com")
+    private String changedBy;
+
+    public OrderStatusChange() {
+    }
+
+    public OrderStatusChange(OrderStatus status, LocalDateTime changedAt, String changedBy) {
+        this.status = status;
+        this.changedAt = changedAt;
+        this.changedBy = changedBy;
+    }
+
+    public OrderStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(OrderStatus status) {
+        this.status = status;
+    }
+
+    public LocalDateTime getChangedAt() {
+        return changedAt;
+    }
+
+    public void setChangedAt(LocalDateTime changedAt) {
+        this.changedAt = changedAt;
+    }
+
+    public String getChangedBy() {
+        return changedBy;
+    }
+
+    public void setChangedBy(String changedBy) {
+        this.changedBy = changedBy;
+    }
+}
@@ -0,0 +1,45 @@
+package com.sutrini.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * An order event (see {@link OrderEvent}) whose analytics updates have all been applied.
+ * The id is the event id, so a redelivered event is recognised by one lookup; the entry
+ * is dropped by its TTL index long after the outbox could deliver the event again.
+ */
+@Document(collection = "analytics_processed_events")
+public class ProcessedEvent {
+    @Id
+    private String id;
+
+    @Indexed(name = "expireAt_ttl", expireAfterSeconds = 0)
+    private Date expireAt;
+
+    public ProcessedEvent() {
+    }
+
+    public ProcessedEvent(String eventId, Date expireAt) {
+        this.id = eventId;
+        this.expireAt = expireAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Date getExpireAt() {
+        return expireAt;
+    }
+
+    public void setExpireAt(Date expireAt) {
+        this.expireAt = expireAt;
+    }
+}
@@ -3,16 +3,25 @@ package com.sutrini.model;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
 @Data
 @Document(collection = "products")
+// Products of a category, per tenant
+@CompoundIndex(name = "tenant_category_active", def = "{'tenantId': 1, 'category': 1, 'active': 1}")
+// A tenant's active catalog listed by name
+@CompoundIndex(name = "tenant_active_name", def = "{'tenantId': 1, 'active': 1, 'name': 1}")
 @Schema(description = "Product entity representing items available in the catalog")
-public class Product {
+public class Product implements TenantScoped {
     @Id
     @Schema(description = "Unique product identifier", example = "prod123")
     private String id;
@@ -32,6 +41,7 @@ public class Product {
     private List<String> images;
 
     @Schema(description = "Base price of the product", example = "5000.00")
+    @Field(targetType = FieldType.DECIMAL128)
     private BigDecimal basePrice;
 
     // e.g. "S", "M", "L", "XL"
@@ -49,6 +59,14 @@ public class Product {
     @Schema(description = "Whether the product is active and available for purchase", example = "true", defaultValue = "true")
     private boolean active = true;
 
+    // Incremented by MongoTemplate on every update, including stock changes; the basis of the ETag
+    @Version
+    @Schema(description = "Revision of the product, incremented on every change", example = "7")
+    private Long version;
+
+    @Schema(description = "When the product was last changed", example = "2024-12-10T12:00:00")
+    private LocalDateTime updatedAt;
+
     public String getId() {
         return id;
     }
@@ -140,4 +158,20 @@ public class Product {
     public void setActive(boolean active) {
         this.active = active;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
 }
@@ -0,0 +1,86 @@
+package com.sutrini.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+
+import java.math.BigDecimal;
+
+/**
+ * Units and revenue per product and tenant, net of cancelled orders. The id is
+ * {@code tenantId|productId}.
+ */
+@Document(collection = "analytics_products")
+// Best sellers
+@CompoundIndex(name = "tenant_revenue", def = "{'tenantId': 1, 'revenue': -1}")
+@Schema(description = "Sales rollup for one product")
+public class ProductSales {
+    @Id
+    private String id;
+
+    private String tenantId;
+
+    @Schema(description = "Product ID", example = "prod123")
+    private String productId;
+
+    @Schema(description = "Product name as last ordered", example = "Custom Silk Saree")
+    private String productName;
+
+    @Schema(description = "Units sold", example = "12")
+    private long units;
+
+    @Schema(description = "Revenue", example = "60000.00")
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal revenue;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    public void setTenantId(String tenantId) {
+        this.tenantId = tenantId;
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+
+    public void setProductId(String productId) {
+        this.productId = productId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public void setProductName(String productName) {
+        this.productName = productName;
+    }
+
+    public long getUnits() {
+        return units;
+    }
+
+    public void setUnits(long units) {
+        this.units = units;
+    }
+
+    public BigDecimal getRevenue() {
+        return revenue;
+    }
+
+    public void setRevenue(BigDecimal revenue) {
+        this.revenue = revenue;
+    }
+}
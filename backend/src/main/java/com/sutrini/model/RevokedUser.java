@@ -0,0 +1,56 @@
+package com.sutrini.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * Access tokens of this user issued before {@code notBefore} are rejected. Shared by
+ * every instance; the entry is dropped by its TTL index once every token it could
+ * match has expired.
+ */
+@Document(collection = "revoked_users")
+public class RevokedUser {
+    @Id
+    private String id;
+
+    private Date notBefore;
+
+    @Indexed(name = "expireAt_ttl", expireAfterSeconds = 0)
+    private Date expireAt;
+
+    public RevokedUser() {
+    }
+
+    public RevokedUser(String userId, Date notBefore, Date expireAt) {
+        this.id = userId;
+        this.notBefore = notBefore;
+        this.expireAt = expireAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Date getNotBefore() {
+        return notBefore;
+    }
+
+    public void setNotBefore(Date notBefore) {
+        this.notBefore = notBefore;
+    }
+
+    public Date getExpireAt() {
+        return expireAt;
+    }
+
+    public void setExpireAt(Date expireAt) {
+        this.expireAt = expireAt;
+    }
+}
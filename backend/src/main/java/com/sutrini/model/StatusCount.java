@@ -0,0 +1,51 @@
+package com.sutrini.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Number of orders currently in one status, per tenant. The id is {@code tenantId|status}.
+ */
+@Document(collection = "analytics_status")
+public class StatusCount {
+    @Id
+    private String id;
+
+    private String tenantId;
+
+    private OrderStatus status;
+
+    private long count;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    public void setTenantId(String tenantId) {
+        this.tenantId = tenantId;
+    }
+
+    public OrderStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(OrderStatus status) {
+        this.status = status;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+}
@@ -0,0 +1,12 @@
+package com.sutrini.model;
+
+/**
+ * Documents that belong to one tenant. Repository reads of these types are scoped to
+ * the caller's tenant, and new documents are stamped with it on save.
+ */
+public interface TenantScoped {
+
+    String getTenantId();
+
+    void setTenantId(String tenantId);
+}
@@ -0,0 +1,56 @@
+package com.sutrini.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * A refresh token id ({@code jti}) that has been exchanged once. The id is the jti, so
+ * claiming a token is a single insert that fails for the second caller; the entry is
+ * dropped by its TTL index when the token would have expired anyway.
+ */
+@Document(collection = "used_refresh_tokens")
+public class UsedRefreshToken {
+    @Id
+    private String id;
+
+    private String userId;
+
+    @Indexed(name = "expireAt_ttl", expireAfterSeconds = 0)
+    private Date expireAt;
+
+    public UsedRefreshToken() {
+    }
+
+    public UsedRefreshToken(String tokenId, String userId, Date expireAt) {
+        this.id = tokenId;
+        this.userId = userId;
+        this.expireAt = expireAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public Date getExpireAt() {
+        return expireAt;
+    }
+
+    public void setExpireAt(Date expireAt) {
+        this.expireAt = expireAt;
+    }
+}
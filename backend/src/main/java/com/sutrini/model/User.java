@@ -2,6 +2,7 @@ package com.sutrini.model;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.util.Set;
 
@@ -11,6 +12,8 @@ public class User {
     @Id
     private String id;
 
+    // Looked up on every sign-in and, outside stateless mode, every authenticated request
+    @Indexed(name = "email_unique", unique = true)
     private String email;
     private String password;
     private String firstName;
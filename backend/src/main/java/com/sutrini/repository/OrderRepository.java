@@ -1,11 +1,23 @@
 package com.sutrini.repository;
 
+import com.sutrini.dto.OrderSummary;
 import com.sutrini.model.Order;
+import com.sutrini.model.OrderStatus;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import java.util.List;
 
-public interface OrderRepository extends MongoRepository<Order, String> {
-    List<Order> findByCustomerId(String customerId);
+/**
+ * Finders take the tenant as their leading parameter so every query is served by a
+ * tenant-prefixed index and can never span boutiques.
+ */
+public interface OrderRepository extends MongoRepository<Order, String>, OrderRepositoryCustom {
+    List<Order> findByTenantIdAndCustomerId(String tenantId, String customerId);
 
-    List<Order> findByStatus(String status); // Will need fix for Enum if query by string
+    Page<OrderSummary> findSummariesByTenantIdAndCustomerId(String tenantId, String customerId, Pageable pageable);
+
+    Page<OrderSummary> findSummariesByTenantId(String tenantId, Pageable pageable);
+
+    List<Order> findByTenantIdAndStatus(String tenantId, OrderStatus status);
 }
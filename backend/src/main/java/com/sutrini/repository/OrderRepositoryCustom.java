@@ -0,0 +1,13 @@
+package com.sutrini.repository;
+
+import com.sutrini.dto.OrderSummary;
+
+import java.util.List;
+
+public interface OrderRepositoryCustom {
+    /**
+     * Keyset page of a tenant's order summaries, newest first. {@code customerId} and
+     * {@code after} are optional; pass null for all customers or the first slice.
+     */
+    List<OrderSummary> findSummariesAfter(String tenantId, String customerId, OrderCursor after, int limit);
+}
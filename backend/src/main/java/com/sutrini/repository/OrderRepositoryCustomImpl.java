@@ -0,0 +1,44 @@
+package com.sutrini.repository;
+
+import com.sutrini.dto.OrderSummary;
+import com.sutrini.model.Order;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+public class OrderRepositoryCustomImpl implements OrderRepositoryCustom {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public List<OrderSummary> findSummariesAfter(String tenantId, String customerId, OrderCursor after, int limit) {
+        List<Criteria> criteria = new ArrayList<>();
+        criteria.add(where("tenantId").is(tenantId));
+        if (customerId != null) {
+            criteria.add(where("customerId").is(customerId));
+        }
+        if (after != null) {
+            criteria.add(new Criteria().orOperator(
+                    where("createdAt").lt(after.createdAt()),
+                    new Criteria().andOperator(
+                            where("createdAt").is(after.createdAt()),
+                            where("id").lt(after.id()))));
+        }
+
+        Query query = new Query(new Criteria().andOperator(criteria));
+        query.with(Sort.by(Sort.Direction.DESC, "createdAt", "id")).limit(limit);
+
+        return mongoTemplate.query(Order.class)
+                .as(OrderSummary.class)
+                .matching(query)
+                .all();
+    }
+}
@@ -1,13 +1,17 @@
 package com.sutrini.repository;
 
 import com.sutrini.model.Product;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import java.util.List;
 
 public interface ProductRepository extends MongoRepository<Product, String> {
-    List<Product> findByCategory(String category);
+    List<Product> findByTenantIdAndCategory(String tenantId, String category);
 
-    List<Product> findByNameContainingIgnoreCase(String name);
+    List<Product> findByTenantIdAndActiveTrue(String tenantId);
 
-    List<Product> findByActiveTrue();
+    Page<Product> findByTenantIdAndCategory(String tenantId, String category, Pageable pageable);
+
+    Page<Product> findByTenantIdAndActiveTrue(String tenantId, Pageable pageable);
 }
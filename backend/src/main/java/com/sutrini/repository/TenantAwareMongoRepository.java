@@ -0,0 +1,295 @@
+package com.sutrini.repository;
+
+import com.sutrini.model.TenantScoped;
+import com.sutrini.security.TenantContext;
+import org.bson.Document;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.repository.query.MongoEntityInformation;
+import org.springframework.data.mongodb.repository.support.SimpleMongoRepository;
+import org.springframework.data.repository.query.FluentQuery.FetchableFluentQuery;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Repository base class that scopes every built-in CRUD and query-by-example method
+ * of {@link TenantScoped} documents to the caller's tenant, so e.g. {@code findById}
+ * cannot return another boutique's order and {@code save} cannot overwrite one. New
+ * documents are stamped with the caller's tenant; saving a document of another tenant
+ * is rejected. Derived finders take the tenant as their leading {@code tenantId}
+ * parameter instead, which also keeps every query on a tenant-prefixed index. Other
+ * document types, and calls made outside a request, behave exactly like
+ * {@link SimpleMongoRepository}.
+ */
+public class TenantAwareMongoRepository<T, ID> extends SimpleMongoRepository<T, ID> {
+
+    private final MongoEntityInformation<T, ID> entityInformation;
+    private final MongoOperations mongoOperations;
+    private final boolean tenantScoped;
+
+    public TenantAwareMongoRepository(MongoEntityInformation<T, ID> metadata, MongoOperations mongoOperations) {
+        super(metadata, mongoOperations);
+        this.entityInformation = metadata;
+        this.mongoOperations = mongoOperations;
+        this.tenantScoped = TenantScoped.class.isAssignableFrom(metadata.getJavaType());
+    }
+
+    @Override
+    public <S extends T> S save(S entity) {
+        String tenant = tenant();
+        if (tenant != null) {
+            stamp(entity, tenant);
+            if (!entityInformation.isNew(entity)
+                    && ownedByOtherTenant(entityInformation.getRequiredId(entity), tenant)) {
+                throw new IllegalArgumentException("Document belongs to another tenant");
+            }
+        }
+        return super.save(entity);
+    }
+
+    // Entities that are not new go through save(S) one by one
+    @Override
+    public <S extends T> List<S> saveAll(Iterable<S> entities) {
+        String tenant = tenant();
+        if (tenant != null) {
+            entities.forEach(entity -> stamp(entity, tenant));
+        }
+        return super.saveAll(entities);
+    }
+
+    @Override
+    public <S extends T> S insert(S entity) {
+        String tenant = tenant();
+        if (tenant != null) {
+            stamp(entity, tenant);
+        }
+        return super.insert(entity);
+    }
+
+    @Override
+    public <S extends T> List<S> insert(Iterable<S> entities) {
+        String tenant = tenant();
+        if (tenant != null) {
+            entities.forEach(entity -> stamp(entity, tenant));
+        }
+        return super.insert(entities);
+    }
+
+    @Override
+    public Optional<T> findById(ID id) {
+        String tenant = tenant();
+        if (tenant == null) {
+            return super.findById(id);
+        }
+        return Optional.ofNullable(mongoOperations.findOne(byId(id, tenant), entityInformation.getJavaType(),
+                entityInformation.getCollectionName()));
+    }
+
+    @Override
+    public boolean existsById(ID id) {
+        String tenant = tenant();
+        if (tenant == null) {
+            return super.existsById(id);
+        }
+        return mongoOperations.exists(byId(id, tenant), entityInformation.getJavaType(),
+                entityInformation.getCollectionName());
+    }
+
+    @Override
+    public List<T> findAll() {
+        String tenant = tenant();
+        return tenant == null ? super.findAll() : find(byTenant(tenant));
+    }
+
+    @Override
+    public List<T> findAll(Sort sort) {
+        String tenant = tenant();
+        return tenant == null ? super.findAll(sort) : find(byTenant(tenant).with(sort));
+    }
+
+    @Override
+    public Page<T> findAll(Pageable pageable) {
+        String tenant = tenant();
+        if (tenant == null) {
+            return super.findAll(pageable);
+        }
+        List<T> content = find(byTenant(tenant).with(pageable));
+        return PageableExecutionUtils.getPage(content, pageable, () -> mongoOperations.count(byTenant(tenant),
+                entityInformation.getJavaType(), entityInformation.getCollectionName()));
+    }
+
+    @Override
+    public List<T> findAllById(Iterable<ID> ids) {
+        String tenant = tenant();
+        if (tenant == null) {
+            return super.findAllById(ids);
+        }
+        List<ID> idList = new ArrayList<>();
+        ids.forEach(idList::add);
+        return find(new Query(Criteria.where(entityInformation.getIdAttribute()).in(idList)
+                .and(TenantContext.FIELD).is(tenant)));
+    }
+
+    @Override
+    public long count() {
+        String tenant = tenant();
+        return tenant == null ? super.count()
+                : mongoOperations.count(byTenant(tenant), entityInformation.getJavaType(),
+                        entityInformation.getCollectionName());
+    }
+
+    @Override
+    public void deleteById(ID id) {
+        String tenant = tenant();
+        if (tenant == null) {
+            super.deleteById(id);
+            return;
+        }
+        mongoOperations.remove(byId(id, tenant), entityInformation.getJavaType(),
+                entityInformation.getCollectionName());
+    }
+
+    // Another tenant's document is left alone, as deleteById does
+    @Override
+    public void delete(T entity) {
+        String tenant = tenant();
+        if (tenant != null && ownedByOtherTenant(entityInformation.getRequiredId(entity), tenant)) {
+            return;
+        }
+        super.delete(entity);
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends ID> ids) {
+        String tenant = tenant();
+        if (tenant == null) {
+            super.deleteAllById(ids);
+            return;
+        }
+        List<ID> idList = new ArrayList<>();
+        ids.forEach(idList::add);
+        mongoOperations.remove(new Query(Criteria.where(entityInformation.getIdAttribute()).in(idList)
+                .and(TenantContext.FIELD).is(tenant)), entityInformation.getJavaType(),
+                entityInformation.getCollectionName());
+    }
+
+    @Override
+    public void deleteAll() {
+        String tenant = tenant();
+        if (tenant == null) {
+            super.deleteAll();
+            return;
+        }
+        mongoOperations.remove(byTenant(tenant), entityInformation.getJavaType(),
+                entityInformation.getCollectionName());
+    }
+
+    @Override
+    public <S extends T> Optional<S> findOne(Example<S> example) {
+        String tenant = tenant();
+        if (tenant == null) {
+            return super.findOne(example);
+        }
+        return Optional.ofNullable(mongoOperations.findOne(byExample(example, tenant), example.getProbeType(),
+                entityInformation.getCollectionName()));
+    }
+
+    @Override
+    public <S extends T> List<S> findAll(Example<S> example, Sort sort) {
+        String tenant = tenant();
+        if (tenant == null) {
+            return super.findAll(example, sort);
+        }
+        return mongoOperations.find(byExample(example, tenant).with(sort), example.getProbeType(),
+                entityInformation.getCollectionName());
+    }
+
+    @Override
+    public <S extends T> Page<S> findAll(Example<S> example, Pageable pageable) {
+        String tenant = tenant();
+        if (tenant == null) {
+            return super.findAll(example, pageable);
+        }
+        List<S> content = mongoOperations.find(byExample(example, tenant).with(pageable), example.getProbeType(),
+                entityInformation.getCollectionName());
+        return PageableExecutionUtils.getPage(content, pageable, () -> mongoOperations.count(
+                byExample(example, tenant), example.getProbeType(), entityInformation.getCollectionName()));
+    }
+
+    @Override
+    public <S extends T> long count(Example<S> example) {
+        String tenant = tenant();
+        if (tenant == null) {
+            return super.count(example);
+        }
+        return mongoOperations.count(byExample(example, tenant), example.getProbeType(),
+                entityInformation.getCollectionName());
+    }
+
+    @Override
+    public <S extends T> boolean exists(Example<S> example) {
+        String tenant = tenant();
+        if (tenant == null) {
+            return super.exists(example);
+        }
+        return mongoOperations.exists(byExample(example, tenant), example.getProbeType(),
+                entityInformation.getCollectionName());
+    }
+
+    // The fluent query is built by SimpleMongoRepository and cannot take the tenant
+    @Override
+    public <S extends T, R> R findBy(Example<S> example, Function<FetchableFluentQuery<S>, R> queryFunction) {
+        if (tenant() != null) {
+            throw new UnsupportedOperationException(
+                    "findBy(Example, ...) is not tenant-scoped; use findAll(Example, ...) or a derived finder");
+        }
+        return super.findBy(example, queryFunction);
+    }
+
+    private String tenant() {
+        return tenantScoped ? TenantContext.current() : null;
+    }
+
+    private Query byId(ID id, String tenant) {
+        return new Query(Criteria.where(entityInformation.getIdAttribute()).is(id).and(TenantContext.FIELD).is(tenant));
+    }
+
+    private static Query byExample(Example<?> example, String tenant) {
+        return new Query(new Criteria().alike(example)).addCriteria(Criteria.where(TenantContext.FIELD).is(tenant));
+    }
+
+    // New documents take the caller's tenant; one naming another tenant is refused
+    private static void stamp(Object entity, String tenant) {
+        TenantScoped document = (TenantScoped) entity;
+        if (document.getTenantId() == null) {
+            document.setTenantId(tenant);
+        } else if (!tenant.equals(document.getTenantId())) {
+            throw new IllegalArgumentException("Document belongs to another tenant");
+        }
+    }
+
+    // The entity may claim our tenant while the stored document with its id is another's
+    private boolean ownedByOtherTenant(ID id, String tenant) {
+        Query query = new Query(Criteria.where(entityInformation.getIdAttribute()).is(id));
+        query.fields().include(TenantContext.FIELD);
+        Document stored = mongoOperations.findOne(query, Document.class, entityInformation.getCollectionName());
+        return stored != null && !tenant.equals(stored.getString(TenantContext.FIELD));
+    }
+
+    private static Query byTenant(String tenant) {
+        return new Query(Criteria.where(TenantContext.FIELD).is(tenant));
+    }
+
+    private List<T> find(Query query) {
+        return mongoOperations.find(query, entityInformation.getJavaType(), entityInformation.getCollectionName());
+    }
+}
@@ -1,5 +1,6 @@
 package com.sutrini.security;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -23,6 +24,12 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     @Autowired
     private UserDetailsServiceImpl userDetailsService;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Autowired
+    private TokenRevocationList revocationList;
+
     private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
     @Override
@@ -30,16 +37,15 @@ public class AuthTokenFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
         try {
             String jwt = parseJwt(request);
-            if (jwt != null && jwtUtils.validateToken(jwt,
-                    userDetailsService.loadUserByUsername(jwtUtils.extractUsername(jwt)))) {
-                String username = jwtUtils.extractUsername(jwt);
+            if (jwt != null) {
+                UserDetails userDetails = resolvePrincipal(jwt);
+                if (userDetails != null) {
+                    UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                            userDetails, null, userDetails.getAuthorities());
+                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                        userDetails, null, userDetails.getAuthorities());
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-
-                SecurityContextHolder.getContext().setAuthentication(authentication);
+                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                }
             }
         } catch (Exception e) {
             logger.error("Cannot set user authentication: {}", e);
@@ -48,6 +54,35 @@ public class AuthTokenFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    private UserDetails resolvePrincipal(String jwt) {
+        PrincipalCache.CachedPrincipal cached = principalCache.get(jwt);
+        if (cached != null) {
+            return isRevoked(cached.claims()) ? null : cached.userDetails();
+        }
+
+        // Single parse: signature and expiry are both verified here
+        Claims claims = jwtUtils.extractAllClaims(jwt);
+        if (jwtUtils.isRefreshToken(claims) || isRevoked(claims)) {
+            return null;
+        }
+
+        UserDetails userDetails = jwtUtils.isStateless() ? UserPrincipal.fromClaims(claims) : null;
+        if (userDetails == null) {
+            // Stateful mode, or a legacy token without embedded claims
+            userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
+        }
+        if (!userDetails.isEnabled()) {
+            return null;
+        }
+        principalCache.put(jwt, claims, userDetails);
+        return userDetails;
+    }
+
+    private boolean isRevoked(Claims claims) {
+        String userId = claims.get(JwtUtil.CLAIM_USER_ID, String.class);
+        return userId != null && revocationList.isRevoked(userId, claims.getIssuedAt());
+    }
+
     private String parseJwt(HttpServletRequest request) {
         String headerAuth = request.getHeader("Authorization");
 
@@ -0,0 +1,93 @@
+package com.sutrini.security;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs another encoder's {@code encode} and {@code matches} on a small dedicated pool,
+ * so a burst of sign-ins or sign-ups (or a credential-stuffing run) can occupy at most
+ * {@code threads} CPUs with BCrypt and the rest stay free for catalog and order
+ * traffic. The calling thread waits for its result. Once {@code queueCapacity} hashes
+ * are waiting, further calls fail fast with {@link PasswordHashingBusyException}
+ * instead of queueing without bound.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor pool;
+    private final long retryAfterSeconds;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, long retryAfterSeconds) {
+        this.delegate = delegate;
+        this.retryAfterSeconds = retryAfterSeconds;
+        AtomicInteger count = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Whether a hash was made with weaker settings than the current ones and should be
+     * replaced after a successful sign-in. Answers no while hashes are queueing, so the
+     * migration never turns a valid sign-in into a 503; the user is rehashed next time.
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return pool.getQueue().isEmpty() && delegate.upgradeEncoding(encodedPassword);
+    }
+
+    public int getQueueDepth() {
+        return pool.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return pool.getActiveCount();
+    }
+
+    // Called by the container on shutdown (inferred destroy method of the @Bean)
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private <T> T run(Callable<T> task) {
+        Future<T> result;
+        try {
+            result = pool.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw new PasswordHashingBusyException(retryAfterSeconds);
+        }
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingBusyException(retryAfterSeconds);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
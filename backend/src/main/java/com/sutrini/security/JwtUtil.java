@@ -2,19 +2,34 @@ package com.sutrini.security;
 
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 @Component
 public class JwtUtil {
 
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_TENANT_ID = "tid";
+    public static final String CLAIM_ROLES = "roles";
+    public static final String CLAIM_TYPE = "typ";
+
+    public static final String TYPE_ACCESS = "access";
+    public static final String TYPE_REFRESH = "refresh";
+
     // In production, this should be in environment variables
     @Value("${jwt.secret:404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970}")
     private String secret;
@@ -22,8 +37,76 @@ public class JwtUtil {
     @Value("${jwt.expiration:86400000}")
     private long jwtExpiration;
 
-    private Key getSignInKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes());
+    // Stateless mode: the filter trusts the signed uid/tid/roles claims and never reads the user
+    @Value("${jwt.stateless:false}")
+    private boolean stateless;
+
+    @Value("${jwt.access-expiration:900000}")
+    private long accessExpiration;
+
+    @Value("${jwt.refresh-expiration:604800000}")
+    private long refreshExpiration;
+
+    // Id of jwt.secret, written to the kid header of every token we sign
+    @Value("${jwt.key-id:primary}")
+    private String keyId;
+
+    // Retired or upcoming keys still accepted for verification, as "kid:secret,kid:secret"
+    @Value("${jwt.verification-keys:}")
+    private String verificationKeysProperty;
+
+    private Key signingKey;
+    private Map<String, Key> verificationKeys;
+    private JwtParser parser;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Registered once; recording on every request allocates nothing
+    private Timer verifiedTimer;
+    private Timer rejectedTimer;
+
+    @PostConstruct
+    void init() {
+        verifiedTimer = verifyTimer("valid");
+        rejectedTimer = verifyTimer("invalid");
+
+        signingKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+
+        Map<String, Key> keys = new HashMap<>();
+        keys.put(keyId, signingKey);
+        for (String entry : verificationKeysProperty.split(",")) {
+            int separator = entry.indexOf(':');
+            if (separator > 0) {
+                keys.put(entry.substring(0, separator).trim(),
+                        Keys.hmacShaKeyFor(entry.substring(separator + 1).trim().getBytes(StandardCharsets.UTF_8)));
+            }
+        }
+        verificationKeys = Map.copyOf(keys);
+
+        // JwtParser is immutable and thread-safe, so one instance serves every request
+        parser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    // jjwt 0.11 declares the raw type; an override has to match it
+                    @Override
+                    @SuppressWarnings("rawtypes")
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        return resolveKey(header.getKeyId());
+                    }
+                })
+                .build();
+    }
+
+    private Key resolveKey(String kid) {
+        if (kid == null) {
+            // Tokens issued before key ids were introduced
+            return signingKey;
+        }
+        Key key = verificationKeys.get(kid);
+        if (key == null) {
+            throw new UnsupportedJwtException("Unknown signing key id: " + kid);
+        }
+        return key;
     }
 
     public String extractUsername(String token) {
@@ -39,31 +122,68 @@ public class JwtUtil {
         return claimsResolver.apply(claims);
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder().setSigningKey(getSignInKey()).build().parseClaimsJws(token).getBody();
+    /**
+     * Verifies the signature and expiry and returns the claims. Callers should
+     * parse once per request and read everything they need from the result.
+     */
+    public Claims extractAllClaims(String token) {
+        long start = System.nanoTime();
+        try {
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            verifiedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return claims;
+        } catch (RuntimeException e) {
+            rejectedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
     }
 
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    private Timer verifyTimer(String outcome) {
+        return Timer.builder("sutrini.jwt.verify")
+                .description("Parsing and signature/expiry verification of JWTs")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
     }
 
-    public String generateToken(UserDetails userDetails) {
+    public boolean isStateless() {
+        return stateless;
+    }
+
+    public boolean isRefreshToken(Claims claims) {
+        return TYPE_REFRESH.equals(claims.get(CLAIM_TYPE, String.class));
+    }
+
+    public String generateToken(UserPrincipal principal) {
         Map<String, Object> claims = new HashMap<>();
-        return createToken(claims, userDetails.getUsername());
+        claims.put(CLAIM_USER_ID, principal.getId());
+        claims.put(CLAIM_TENANT_ID, principal.getTenantId());
+        claims.put(CLAIM_ROLES, principal.getRoleNames());
+        claims.put(CLAIM_TYPE, TYPE_ACCESS);
+        return createToken(claims, principal.getUsername(), stateless ? accessExpiration : jwtExpiration, null);
     }
 
-    private String createToken(Map<String, Object> claims, String subject) {
+    public String generateRefreshToken(UserPrincipal principal) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(CLAIM_USER_ID, principal.getId());
+        claims.put(CLAIM_TYPE, TYPE_REFRESH);
+        return createToken(claims, principal.getUsername(), refreshExpiration, UUID.randomUUID().toString());
+    }
+
+    private String createToken(Map<String, Object> claims, String subject, long expiration, String tokenId) {
+        long now = System.currentTimeMillis();
         return Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, keyId)
                 .setClaims(claims)
                 .setSubject(subject)
-                .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + jwtExpiration))
-                .signWith(getSignInKey(), SignatureAlgorithm.HS256)
+                .setId(tokenId)
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + expiration))
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
     public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        final Claims claims = extractAllClaims(token);
+        return (claims.getSubject().equals(userDetails.getUsername()) && !claims.getExpiration().before(new Date()));
     }
 }
@@ -0,0 +1,166 @@
+package com.sutrini.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sliding-window limits on sign-in and sign-up attempts, checked before any password
+ * is hashed: per client IP on every attempt, and per email on failed sign-ins, so one
+ * address cannot burn the hashing pool and one account cannot be guessed at, while a
+ * user who signs in normally never counts against their email.
+ * <p>
+ * Each key is a single {@code long}: the current window number in the high 32 bits
+ * and the attempts in the previous and current window in 16 bits each. The count over
+ * the sliding window is estimated as the current count plus the previous count
+ * weighted by how much of the previous window still overlaps it.
+ */
+@Component
+public class LoginThrottle {
+
+    private static final long COUNT_MASK = 0xFFFFL;
+
+    @Value("${security.login-throttle.window-seconds:300}")
+    private long windowSeconds;
+
+    @Value("${security.login-throttle.max-failures-per-email:10}")
+    private int maxFailuresPerEmail;
+
+    @Value("${security.login-throttle.max-attempts-per-ip:50}")
+    private int maxAttemptsPerIp;
+
+    // Emails and addresses come from the caller, so the number of tracked keys is capped
+    @Value("${security.login-throttle.max-keys:100000}")
+    private int maxKeys;
+
+    private final Map<String, AtomicLong> emails = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> addresses = new ConcurrentHashMap<>();
+
+    // Keys beyond the cap share one counter per kind
+    private final AtomicLong emailOverflow = new AtomicLong();
+    private final AtomicLong addressOverflow = new AtomicLong();
+
+    /**
+     * Counts a sign-in attempt from {@code ip} unless {@code ip} or {@code email} is
+     * over its limit. Returns 0 when the attempt may go ahead, otherwise the seconds
+     * until it may be retried.
+     */
+    public long signInAttempt(String email, String ip) {
+        long now = System.currentTimeMillis();
+        long wait = Math.max(waitMillis(counter(emails, emailOverflow, normalize(email)), maxFailuresPerEmail, now),
+                waitMillis(counter(addresses, addressOverflow, ip), maxAttemptsPerIp, now));
+        if (wait > 0) {
+            return toSeconds(wait);
+        }
+        increment(counter(addresses, addressOverflow, ip), now);
+        return 0;
+    }
+
+    /**
+     * Counts a sign-up attempt from {@code ip}; same result as {@link #signInAttempt}.
+     */
+    public long signUpAttempt(String ip) {
+        long now = System.currentTimeMillis();
+        AtomicLong counter = counter(addresses, addressOverflow, ip);
+        long wait = waitMillis(counter, maxAttemptsPerIp, now);
+        if (wait > 0) {
+            return toSeconds(wait);
+        }
+        increment(counter, now);
+        return 0;
+    }
+
+    public void signInFailed(String email) {
+        increment(counter(emails, emailOverflow, normalize(email)), System.currentTimeMillis());
+    }
+
+    public void signInSucceeded(String email) {
+        emails.remove(normalize(email));
+    }
+
+    // Keys whose last attempt is more than a full window old estimate to zero anyway
+    @Scheduled(fixedDelayString = "${security.login-throttle.prune-interval:60000}")
+    public void prune() {
+        long window = window(System.currentTimeMillis());
+        emails.values().removeIf(counter -> windowOf(counter.get()) < window - 1);
+        addresses.values().removeIf(counter -> windowOf(counter.get()) < window - 1);
+    }
+
+    private AtomicLong counter(Map<String, AtomicLong> counters, AtomicLong overflow, String key) {
+        AtomicLong counter = counters.get(key);
+        if (counter != null) {
+            return counter;
+        }
+        if (counters.size() >= maxKeys) {
+            return overflow;
+        }
+        return counters.computeIfAbsent(key, k -> new AtomicLong());
+    }
+
+    private void increment(AtomicLong counter, long now) {
+        long window = window(now);
+        counter.updateAndGet(state -> {
+            long[] counts = rolled(state, window);
+            return pack(window, counts[0], Math.min(counts[1] + 1, COUNT_MASK));
+        });
+    }
+
+    /**
+     * How long until the estimated count drops below {@code limit}, or 0 if it is below.
+     */
+    private long waitMillis(AtomicLong counter, int limit, long now) {
+        long windowMillis = windowSeconds * 1000;
+        long window = window(now);
+        long[] counts = rolled(counter.get(), window);
+        long previous = counts[0];
+        long current = counts[1];
+        long elapsed = now - window * windowMillis;
+        double estimate = current + previous * (double) (windowMillis - elapsed) / windowMillis;
+        if (estimate < limit) {
+            return 0;
+        }
+        if (current >= limit) {
+            // Until the next window has moved far enough past this one
+            return windowMillis - elapsed + (long) (windowMillis * (1 - (double) limit / current));
+        }
+        // Until enough of the previous window has slid out
+        return (long) (windowMillis * (1 - (double) (limit - current) / previous)) - elapsed + 1;
+    }
+
+    // [previous, current] counts as seen from window
+    private static long[] rolled(long state, long window) {
+        long stateWindow = windowOf(state);
+        if (stateWindow == window) {
+            return new long[] {(state >>> 16) & COUNT_MASK, state & COUNT_MASK};
+        }
+        if (stateWindow == window - 1) {
+            return new long[] {state & COUNT_MASK, 0};
+        }
+        return new long[] {0, 0};
+    }
+
+    private static long pack(long window, long previous, long current) {
+        return (window << 32) | (previous << 16) | current;
+    }
+
+    private static long windowOf(long state) {
+        return state >>> 32;
+    }
+
+    private long window(long now) {
+        return now / (windowSeconds * 1000);
+    }
+
+    private static long toSeconds(long millis) {
+        return Math.max(1, (millis + 999) / 1000);
+    }
+
+    private static String normalize(String email) {
+        return email != null ? email.trim().toLowerCase(Locale.ROOT) : "";
+    }
+}
@@ -0,0 +1,21 @@
+package com.sutrini.security;
+
+/**
+ * Thrown when the password hashing pool has no room for another hash; answered with
+ * 503 and {@code Retry-After}.
+ */
+public class PasswordHashingBusyException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterSeconds;
+
+    public PasswordHashingBusyException(long retryAfterSeconds) {
+        super("Too many sign-in requests, please retry shortly");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
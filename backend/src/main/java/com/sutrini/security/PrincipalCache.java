@@ -0,0 +1,102 @@
+package com.sutrini.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded, TTL-evicted cache of authenticated principals keyed by the raw JWT.
+ * A hit skips both the JWS parse and the user lookup in {@link AuthTokenFilter}.
+ * Backed by Caffeine: size-bounded by recency and frequency, and each entry expires
+ * at the earlier of the TTL and its token's own expiry. Hit, miss and eviction
+ * statistics are recorded and published as {@code cache.*} meters by MetricsConfig.
+ */
+@Component
+public class PrincipalCache {
+
+    @Value("${jwt.principal-cache.max-size:10000}")
+    private int maxSize;
+
+    @Value("${jwt.principal-cache.ttl:60000}")
+    private long ttlMillis;
+
+    private Cache<String, CachedPrincipal> entries;
+
+    @PostConstruct
+    void init() {
+        entries = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, CachedPrincipal>() {
+                    @Override
+                    public long expireAfterCreate(String token, CachedPrincipal cached, long currentTime) {
+                        return remaining(cached);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String token, CachedPrincipal cached, long currentTime,
+                            long currentDuration) {
+                        return remaining(cached);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String token, CachedPrincipal cached, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    public CachedPrincipal get(String token) {
+        return entries.getIfPresent(token);
+    }
+
+    public CachedPrincipal put(String token, Claims claims, UserDetails userDetails) {
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        if (claims.getExpiration() != null) {
+            // Never serve a principal past the token's own expiry
+            expiresAt = Math.min(expiresAt, claims.getExpiration().getTime());
+        }
+        CachedPrincipal cached = new CachedPrincipal(claims, userDetails, expiresAt);
+        entries.put(token, cached);
+        return cached;
+    }
+
+    /**
+     * Drops every cached principal for the given user, e.g. after the user was
+     * deactivated or their roles changed.
+     */
+    public void invalidateUser(String username) {
+        entries.asMap().values().removeIf(cached -> cached.userDetails().getUsername().equals(username));
+    }
+
+    public void invalidateAll() {
+        entries.invalidateAll();
+    }
+
+    public long size() {
+        return entries.estimatedSize();
+    }
+
+    /**
+     * The underlying cache, for metrics registration.
+     */
+    public Cache<String, CachedPrincipal> getCache() {
+        return entries;
+    }
+
+    private static long remaining(CachedPrincipal cached) {
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, cached.expiresAt() - System.currentTimeMillis()));
+    }
+
+    public record CachedPrincipal(Claims claims, UserDetails userDetails, long expiresAt) {
+    }
+}
@@ -0,0 +1,176 @@
+package com.sutrini.security;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Request-rate limits on the API, so one heavy client (an admin script polling
+ * {@code /api/orders/all}, a scraper on {@code /api/products/search}) cannot degrade
+ * everyone else. Each request takes a token from a {@link RateLimiter} bucket per
+ * client (signed-in user within its tenant, otherwise address) for the route group the
+ * path belongs to ({@code ratelimit.routes}, else {@code ratelimit.client}). Requests
+ * of admins and workers also take one from the bucket shared by their tenant
+ * ({@code ratelimit.tenant}); customers and anonymous requests do not, since they
+ * would all land in the default tenant's bucket, or in whichever tenant their header
+ * names. A request the tenant bucket rejects gets its client token back. Responses
+ * carry {@code RateLimit-Limit}, {@code RateLimit-Remaining}, {@code RateLimit-Reset}
+ * and {@code RateLimit-Policy} for the tighter of the two; a rejected request gets 429
+ * with {@code Retry-After}. Runs after {@link AuthTokenFilter}, so signed-in users are
+ * counted as themselves and against the tenant in their token. Anonymous clients are
+ * told apart by {@code getRemoteAddr()}: behind a proxy or CDN that is the proxy's
+ * address unless {@code server.forward-headers-strategy} is set.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    public static final String LIMIT_HEADER = "RateLimit-Limit";
+    public static final String REMAINING_HEADER = "RateLimit-Remaining";
+    public static final String RESET_HEADER = "RateLimit-Reset";
+    public static final String POLICY_HEADER = "RateLimit-Policy";
+
+    @Value("${ratelimit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ratelimit.client:300/60}")
+    private String clientLimit;
+
+    @Value("${ratelimit.tenant:3000/60}")
+    private String tenantLimit;
+
+    // name=requests/seconds@path;path..., first match wins; a path ending in /** matches its subtree
+    @Value("${ratelimit.routes:}")
+    private List<String> routeConfig;
+
+    @Value("${ratelimit.max-keys:100000}")
+    private int maxKeys;
+
+    private RateLimiter clients;
+
+    private RateLimiter tenants;
+
+    private RateLimiter.Limit defaultLimit;
+
+    private RateLimiter.Limit perTenant;
+
+    private List<Route> routes;
+
+    private record Route(String path, boolean subtree, RateLimiter.Limit limit) {
+
+        boolean matches(String uri) {
+            if (subtree) {
+                return uri.startsWith(path) && (uri.length() == path.length() || uri.charAt(path.length()) == '/');
+            }
+            return uri.equals(path);
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        clients = new RateLimiter(maxKeys);
+        tenants = new RateLimiter(maxKeys);
+        defaultLimit = RateLimiter.Limit.parse("client", clientLimit);
+        perTenant = RateLimiter.Limit.parse("tenant", tenantLimit);
+        List<Route> parsed = new ArrayList<>();
+        for (String entry : routeConfig) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int equals = entry.indexOf('=');
+            int at = entry.indexOf('@');
+            if (equals <= 0 || at < equals) {
+                throw new IllegalStateException("Invalid ratelimit.routes entry: " + entry);
+            }
+            RateLimiter.Limit limit = RateLimiter.Limit.parse(entry.substring(0, equals).trim(),
+                    entry.substring(equals + 1, at));
+            for (String path : entry.substring(at + 1).split(";")) {
+                String trimmed = path.trim();
+                boolean subtree = trimmed.endsWith("/**");
+                parsed.add(new Route(subtree ? trimmed.substring(0, trimmed.length() - 3) : trimmed, subtree, limit));
+            }
+        }
+        routes = List.copyOf(parsed);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long now = RateLimiter.now();
+        RateLimiter.Limit limit = limitFor(request.getRequestURI());
+        String clientKey = clientKey(limit, request);
+        RateLimiter.Decision decision = clients.acquire(limit, clientKey, now);
+        String staffTenant = TenantContext.staffTenant();
+        if (decision.allowed() && staffTenant != null) {
+            RateLimiter.Decision tenantDecision = tenants.acquire(perTenant, staffTenant, now);
+            if (!tenantDecision.allowed()) {
+                clients.release(limit, clientKey);
+            }
+            if (!tenantDecision.allowed() || tenantDecision.remaining() < decision.remaining()) {
+                decision = tenantDecision;
+            }
+        }
+
+        response.setHeader(LIMIT_HEADER, decision.limit().getRequestsHeader());
+        response.setHeader(REMAINING_HEADER, String.valueOf(decision.remaining()));
+        response.setHeader(RESET_HEADER, String.valueOf(decision.resetSeconds()));
+        response.setHeader(POLICY_HEADER, decision.limit().getPolicy());
+        if (!decision.allowed()) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(decision.retryAfterSeconds()));
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"message\":\"Error: Rate limit exceeded\"}");
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    @Scheduled(fixedDelayString = "${ratelimit.prune-interval:60000}")
+    public void prune() {
+        clients.prune();
+        tenants.prune();
+    }
+
+    /**
+     * Client buckets currently tracked, i.e. clients that used part of their allowance recently.
+     */
+    public int getTrackedClients() {
+        return clients.size();
+    }
+
+    private RateLimiter.Limit limitFor(String uri) {
+        for (Route route : routes) {
+            if (route.matches(uri)) {
+                return route.limit();
+            }
+        }
+        return defaultLimit;
+    }
+
+    // Signed-in users by id, everyone else by address alone, so changing the tenant header
+    // does not buy a fresh bucket; one concatenation per request
+    private static String clientKey(RateLimiter.Limit limit, HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserPrincipal principal) {
+            return limit.getName() + '|' + principal.getTenantId() + "|u:" + principal.getId();
+        }
+        return limit.getName() + "|a:" + request.getRemoteAddr();
+    }
+}
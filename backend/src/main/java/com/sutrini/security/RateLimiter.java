@@ -0,0 +1,170 @@
+package com.sutrini.security;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets kept as GCRA (generic cell rate algorithm): per key a single
+ * {@code long}, the theoretical arrival time of the next request, advanced with a
+ * compare-and-set, so a decision takes no lock and no timer. A bucket of {@code
+ * requests} per {@code period} lets a client burst the whole allowance at once and
+ * then refills one request every {@code period / requests}.
+ * <p>
+ * A key whose arrival time has passed is indistinguishable from a full bucket, so
+ * {@link #prune()} drops it. Keys come from the caller (addresses, tenant headers),
+ * so their number is capped; keys beyond the cap share one bucket per limit.
+ */
+public class RateLimiter {
+
+    /**
+     * {@code requests} per {@code periodSeconds}. The header values are built once, since
+     * every response carries them.
+     */
+    public static final class Limit {
+
+        private final String name;
+        private final int requests;
+        private final long periodSeconds;
+        private final long periodNanos;
+        private final long emissionNanos;
+        private final String requestsHeader;
+        private final String policy;
+
+        public Limit(String name, int requests, long periodSeconds) {
+            if (requests <= 0 || periodSeconds <= 0) {
+                throw new IllegalStateException("Invalid rate limit for " + name + ": " + requests + "/" + periodSeconds);
+            }
+            this.name = name;
+            this.requests = requests;
+            this.periodSeconds = periodSeconds;
+            this.periodNanos = TimeUnit.SECONDS.toNanos(periodSeconds);
+            this.emissionNanos = periodNanos / requests;
+            this.requestsHeader = String.valueOf(requests);
+            this.policy = requests + ";w=" + periodSeconds;
+        }
+
+        /**
+         * Parses {@code requests/seconds}, e.g. {@code 300/60}.
+         */
+        public static Limit parse(String name, String value) {
+            int separator = value.indexOf('/');
+            if (separator <= 0) {
+                throw new IllegalStateException("Invalid rate limit for " + name + ": " + value);
+            }
+            return new Limit(name, Integer.parseInt(value.substring(0, separator).trim()),
+                    Long.parseLong(value.substring(separator + 1).trim()));
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getRequests() {
+            return requests;
+        }
+
+        public long getPeriodSeconds() {
+            return periodSeconds;
+        }
+
+        /**
+         * {@link #getRequests()} as a header value.
+         */
+        public String getRequestsHeader() {
+            return requestsHeader;
+        }
+
+        /**
+         * The {@code RateLimit-Policy} header value, e.g. {@code 300;w=60}.
+         */
+        public String getPolicy() {
+            return policy;
+        }
+    }
+
+    /**
+     * Outcome for one request: what is left of the bucket, when it is full again and,
+     * when rejected, when the next request would be accepted (all in seconds).
+     */
+    public record Decision(Limit limit, boolean allowed, long remaining, long resetSeconds, long retryAfterSeconds) {
+    }
+
+    // Arrival times are nanos since class initialisation, so an empty bucket is 0
+    private static final long ORIGIN = System.nanoTime();
+
+    private final int maxKeys;
+
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    private final Map<String, AtomicLong> overflow = new ConcurrentHashMap<>();
+
+    public RateLimiter(int maxKeys) {
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * The clock {@link #acquire} works with; read it once per request and pass it to each acquire.
+     */
+    public static long now() {
+        return System.nanoTime() - ORIGIN;
+    }
+
+    /**
+     * Takes one request from {@code key}'s bucket under {@code limit} at {@code now}, if there is one.
+     */
+    public Decision acquire(Limit limit, String key, long now) {
+        AtomicLong bucket = bucket(limit, key);
+        long period = limit.periodNanos;
+        long emission = limit.emissionNanos;
+        while (true) {
+            long stored = bucket.get();
+            long arrival = Math.max(stored, now);
+            long next = arrival + emission;
+            long allowedAt = next - period;
+            if (now < allowedAt) {
+                return new Decision(limit, false, 0, seconds(arrival - now), seconds(allowedAt - now));
+            }
+            if (bucket.compareAndSet(stored, next)) {
+                return new Decision(limit, true, (period - (next - now)) / emission, seconds(next - now), 0);
+            }
+        }
+    }
+
+    /**
+     * Gives back the request a successful {@link #acquire} took, e.g. when another limit
+     * then rejected the request.
+     */
+    public void release(Limit limit, String key) {
+        bucket(limit, key).addAndGet(-limit.emissionNanos);
+    }
+
+    /**
+     * Drops buckets that have refilled completely; returns how many are left.
+     */
+    public int prune() {
+        long now = now();
+        buckets.values().removeIf(bucket -> bucket.get() <= now);
+        return buckets.size();
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    private AtomicLong bucket(Limit limit, String key) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxKeys) {
+            return overflow.computeIfAbsent(limit.name, name -> new AtomicLong());
+        }
+        return buckets.computeIfAbsent(key, k -> new AtomicLong());
+    }
+
+    private static long seconds(long nanos) {
+        return (nanos + 999_999_999L) / 1_000_000_000L;
+    }
+}
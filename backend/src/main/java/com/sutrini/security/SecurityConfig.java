@@ -1,7 +1,12 @@
 package com.sutrini.security;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
@@ -11,6 +16,7 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 @Configuration
@@ -21,16 +27,25 @@ public class SecurityConfig {
     // private final AuthEntryPointJwt unauthorizedHandler; // Optional for better
     // error handling
 
-    public SecurityConfig(UserDetailsServiceImpl userDetailsService) {
+    private final TenantQuotaFilter tenantQuotaFilter;
+
+    private final RateLimitFilter rateLimitFilter;
+
+    public SecurityConfig(UserDetailsServiceImpl userDetailsService, TenantQuotaFilter tenantQuotaFilter,
+            RateLimitFilter rateLimitFilter) {
         this.userDetailsService = userDetailsService;
+        this.tenantQuotaFilter = tenantQuotaFilter;
+        this.rateLimitFilter = rateLimitFilter;
     }
 
     @Bean
-    public DaoAuthenticationProvider authenticationProvider() {
+    public DaoAuthenticationProvider authenticationProvider(PasswordEncoder passwordEncoder) {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
 
         authProvider.setUserDetailsService(userDetailsService);
-        authProvider.setPasswordEncoder(passwordEncoder());
+        authProvider.setPasswordEncoder(passwordEncoder);
+        // Hashes weaker than security.bcrypt.strength are replaced on the next successful sign-in
+        authProvider.setUserDetailsPasswordService(userDetailsService);
 
         return authProvider;
     }
@@ -41,8 +56,14 @@ public class SecurityConfig {
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BoundedPasswordEncoder passwordEncoder(@Value("${security.bcrypt.strength:10}") int strength,
+            @Value("${security.hashing.threads:0}") int threads,
+            @Value("${security.hashing.queue-capacity:32}") int queueCapacity,
+            @Value("${security.hashing.retry-after-seconds:2}") long retryAfterSeconds) {
+        // By default half the CPUs, so hashing can never take all of them
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(strength), poolSize, queueCapacity,
+                retryAfterSeconds);
     }
 
     @Bean
@@ -50,19 +71,50 @@ public class SecurityConfig {
         return new AuthTokenFilter();
     }
 
+    /**
+     * Actuator requests on the management port (management.server.port), which is not
+     * exposed publicly: health checks and Prometheus scrapes need no token. The matcher
+     * ignores the application port, so requests there go through {@link #filterChain}.
+     */
+    @Bean
+    @Order(1)
+    public SecurityFilterChain managementFilterChain(HttpSecurity http) throws Exception {
+        http.securityMatcher(EndpointRequest.toAnyEndpoint())
+                .csrf(csrf -> csrf.disable())
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .authorizeHttpRequests(auth -> auth
+                        .requestMatchers(EndpointRequest.to("health", "prometheus")).permitAll()
+                        .anyRequest().denyAll());
+        return http.build();
+    }
+
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, DaoAuthenticationProvider authenticationProvider)
+            throws Exception {
         http.csrf(csrf -> csrf.disable())
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                // 401 for a missing or expired token (clients refresh on it), 403 only for a missing role
+                .exceptionHandling(exceptions -> exceptions
+                        .authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED)))
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/api/auth/**").permitAll()
                         .requestMatchers("/api/public/**").permitAll()
+                        // QR images encode nothing but the order id and are embedded via <img>
+                        .requestMatchers(HttpMethod.GET, "/api/orders/*/qr").permitAll()
+                        // Stripe authenticates with the Stripe-Signature header, checked by the controller
+                        .requestMatchers(HttpMethod.POST, "/api/payments/webhook").permitAll()
+                        // Storefront catalog reads; anonymous callers pick their boutique with X-Tenant-ID
+                        // (admin-only GETs below /api/products keep their @PreAuthorize)
+                        .requestMatchers(HttpMethod.GET, "/api/products", "/api/products/**").permitAll()
                         .requestMatchers("/v3/api-docs/**", "/swagger-ui/**", "/swagger-ui.html").permitAll()
                         .anyRequest().authenticated());
 
-        http.authenticationProvider(authenticationProvider());
+        http.authenticationProvider(authenticationProvider);
 
         http.addFilterBefore(authenticationJwtTokenFilter(), UsernamePasswordAuthenticationFilter.class);
+        // Over-limit requests are turned away before they wait for a tenant permit
+        http.addFilterAfter(rateLimitFilter, AuthTokenFilter.class);
+        http.addFilterAfter(tenantQuotaFilter, RateLimitFilter.class);
 
         return http.build();
     }
@@ -0,0 +1,39 @@
+package com.sutrini.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class TenantConfig {
+
+    public TenantConfig(@Value("${tenancy.default-tenant:default}") String defaultTenant) {
+        TenantContext.setDefaultTenant(defaultTenant);
+    }
+
+    @Bean
+    public RateLimitFilter rateLimitFilter() {
+        return new RateLimitFilter();
+    }
+
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilterRegistration(RateLimitFilter filter) {
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
+    @Bean
+    public TenantQuotaFilter tenantQuotaFilter() {
+        return new TenantQuotaFilter();
+    }
+
+    // Only run inside the security filter chain, after authentication
+    @Bean
+    public FilterRegistrationBean<TenantQuotaFilter> tenantQuotaFilterRegistration(TenantQuotaFilter filter) {
+        FilterRegistrationBean<TenantQuotaFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setEnabled(false);
+        return registration;
+    }
+}
@@ -0,0 +1,121 @@
+package com.sutrini.security;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Resolves the tenant (boutique) the current request acts for. Signed-in users are
+ * pinned to the tenant in their token; anonymous storefront requests name theirs in
+ * the {@value #HEADER} header and otherwise get the default tenant. Outside of a
+ * request (scheduled jobs, change stream, startup runners) there is no tenant and
+ * queries are not scoped.
+ */
+public final class TenantContext {
+
+    public static final String HEADER = "X-Tenant-ID";
+
+    public static final String FIELD = "tenantId";
+
+    private static final int MAX_TENANT_LENGTH = 64;
+
+    // Set from tenancy.default-tenant by TenantConfig
+    private static volatile String defaultTenant = "default";
+
+    private TenantContext() {
+    }
+
+    /**
+     * The caller's tenant, or null when not running on behalf of a request.
+     */
+    public static String current() {
+        String authenticated = authenticatedTenant();
+        if (authenticated != null) {
+            return authenticated;
+        }
+
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes servletAttributes)) {
+            return null;
+        }
+        HttpServletRequest request = servletAttributes.getRequest();
+        String header = request.getHeader(HEADER);
+        if (header == null || header.isBlank()) {
+            return defaultTenant;
+        }
+        String tenant = header.trim();
+        if (!isValidTenant(tenant)) {
+            throw new IllegalArgumentException("Invalid " + HEADER + " header");
+        }
+        return tenant;
+    }
+
+    /**
+     * The tenant in the signed-in user's token, or null for anonymous callers, whose
+     * tenant is only a claim made in a header.
+     */
+    public static String authenticatedTenant() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserPrincipal principal) {
+            return principal.getTenantId();
+        }
+        return null;
+    }
+
+    /**
+     * The tenant of a signed-in admin or worker, or null for customers and anonymous
+     * callers. Self-service customers all sign up into the default tenant, so limits
+     * shared by a whole tenant only make sense for its staff.
+     */
+    public static String staffTenant() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserPrincipal principal
+                && principal.isStaff()) {
+            return principal.getTenantId();
+        }
+        return null;
+    }
+
+    // [A-Za-z0-9_-]{1,64}, checked by hand: this runs for every anonymous request and query
+    private static boolean isValidTenant(String tenant) {
+        if (tenant.isEmpty() || tenant.length() > MAX_TENANT_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < tenant.length(); i++) {
+            char c = tenant.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_' || c == '-')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the caller's tenant to {@code criteria}; unchanged outside of a request.
+     */
+    public static Criteria scoped(Criteria criteria) {
+        String tenant = current();
+        return tenant != null ? criteria.and(FIELD).is(tenant) : criteria;
+    }
+
+    /**
+     * Adds the caller's tenant to {@code query}; unchanged outside of a request.
+     */
+    public static Query scoped(Query query) {
+        String tenant = current();
+        return tenant != null ? query.addCriteria(Criteria.where(FIELD).is(tenant)) : query;
+    }
+
+    public static String getDefaultTenant() {
+        return defaultTenant;
+    }
+
+    static void setDefaultTenant(String tenant) {
+        defaultTenant = tenant;
+    }
+}
@@ -0,0 +1,134 @@
+package com.sutrini.security;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Per-tenant cap on concurrent staff API requests, so one boutique's heavy dashboard,
+ * export or label sheets cannot occupy every request thread and database connection.
+ * A request that cannot get a permit within {@code tenancy.quota.wait-ms} is answered
+ * with 429. A streamed response (exports, label sheets) keeps its permit until the
+ * async request completes, not just until the first dispatch returns. Runs after
+ * {@link AuthTokenFilter}: only admins and workers count, against the tenant in their
+ * token. Customers all sign up into the default tenant and anonymous requests pick
+ * their tenant by header, so both are left to the per-client limits of
+ * {@link RateLimitFilter}; the tenant header is still validated here.
+ */
+public class TenantQuotaFilter extends OncePerRequestFilter {
+
+    @Value("${tenancy.quota.max-concurrent:16}")
+    private int maxConcurrent;
+
+    @Value("${tenancy.quota.wait-ms:250}")
+    private long waitMillis;
+
+    private final Map<String, Semaphore> permits = new ConcurrentHashMap<>();
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String tenant = TenantContext.staffTenant();
+        if (tenant == null) {
+            try {
+                TenantContext.current();
+            } catch (IllegalArgumentException e) {
+                reject(response, HttpStatus.BAD_REQUEST, e.getMessage());
+                return;
+            }
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        Semaphore semaphore = permits.computeIfAbsent(tenant, t -> new Semaphore(maxConcurrent));
+        boolean acquired;
+        try {
+            acquired = semaphore.tryAcquire(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            reject(response, HttpStatus.TOO_MANY_REQUESTS, "Too many concurrent requests for this tenant");
+            return;
+        }
+        Release release = new Release(semaphore);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(release);
+            } else {
+                release.run();
+            }
+        }
+    }
+
+    /**
+     * Returns the permit once, whichever of the async callbacks comes first.
+     */
+    private static final class Release implements AsyncListener, Runnable {
+
+        private final Semaphore semaphore;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Release(Semaphore semaphore) {
+            this.semaphore = semaphore;
+        }
+
+        @Override
+        public void run() {
+            if (released.compareAndSet(false, true)) {
+                semaphore.release();
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            run();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            run();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            run();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Started again by a later dispatch: keep holding the permit until that one completes
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"message\":\"Error: " + message + "\"}");
+    }
+}
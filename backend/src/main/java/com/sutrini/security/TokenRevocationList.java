@@ -0,0 +1,92 @@
+package com.sutrini.security;
+
+import com.sutrini.model.RevokedUser;
+import com.sutrini.model.UsedRefreshToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact revocation list for stateless tokens. Instead of listing tokens it
+ * keeps one "not before" timestamp per user, and forgets an entry once every
+ * token it could match has expired.
+ * <p>
+ * Entries live in MongoDB ({@link RevokedUser}), so a user deactivated through one
+ * instance is rejected by all of them. Each instance checks requests against a
+ * local copy that {@link #sync()} refreshes every {@code jwt.revocation.sync-interval}
+ * ms, which bounds how long a revoked token keeps working elsewhere. Exchanged
+ * refresh tokens are recorded as {@link UsedRefreshToken}, claimed with a single
+ * insert so that two concurrent exchanges of the same token cannot both succeed.
+ */
+@Component
+public class TokenRevocationList {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationList.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${jwt.access-expiration:900000}")
+    private long accessExpiration;
+
+    // userId -> tokens issued before this instant (epoch millis) are rejected
+    private final Map<String, Long> revokedUsers = new ConcurrentHashMap<>();
+
+    public void revokeUser(String userId) {
+        // Token iat has second precision, so round down to keep a fresh login valid
+        long notBefore = (System.currentTimeMillis() / 1000) * 1000;
+        revokedUsers.merge(userId, notBefore, Math::max);
+        mongoTemplate.save(new RevokedUser(userId, new Date(notBefore), new Date(notBefore + accessExpiration)));
+    }
+
+    /**
+     * Records the refresh token id as used. Returns false when it had been used
+     * already, by this or any other instance.
+     */
+    public boolean claimRefreshToken(String tokenId, String userId, Date expiresAt) {
+        try {
+            mongoTemplate.insert(new UsedRefreshToken(tokenId, userId, expiresAt));
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    public boolean isRevoked(String userId, Date issuedAt) {
+        Long notBefore = revokedUsers.get(userId);
+        return notBefore != null && (issuedAt == null || issuedAt.getTime() < notBefore);
+    }
+
+    /**
+     * Picks up users revoked through other instances.
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.sync-interval:5000}")
+    public void sync() {
+        Query current = Query.query(Criteria.where("expireAt").gt(new Date()));
+        try {
+            for (RevokedUser revoked : mongoTemplate.find(current, RevokedUser.class)) {
+                revokedUsers.merge(revoked.getId(), revoked.getNotBefore().getTime(), Math::max);
+            }
+        } catch (RuntimeException e) {
+            // Keep checking against the last copy; the next run catches up
+            logger.warn("Could not sync revoked users: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revocation.prune-interval:60000}")
+    public void prune() {
+        long now = System.currentTimeMillis();
+        revokedUsers.values().removeIf(notBefore -> notBefore + accessExpiration < now);
+    }
+}
@@ -0,0 +1,41 @@
+package com.sutrini.security;
+
+import com.sutrini.model.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps {@link PrincipalCache} and {@link TokenRevocationList} honest: any write
+ * to a user (deactivation, role change, password reset) drops the principals
+ * cached for that user and revokes the access tokens issued before it.
+ */
+@Component
+public class UserCacheEvictionListener extends AbstractMongoEventListener<User> {
+
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Autowired
+    private TokenRevocationList revocationList;
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<User> event) {
+        User user = event.getSource();
+        principalCache.invalidateUser(user.getEmail());
+        // Stateless access tokens carry roles, so outstanding ones must stop working too
+        revocationList.revokeUser(user.getId());
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<User> event) {
+        // Only the delete query is known here, not the email
+        principalCache.invalidateAll();
+        Object userId = event.getSource().get("_id");
+        if (userId != null) {
+            revocationList.revokeUser(userId.toString());
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.sutrini.security;
+
+import com.sutrini.model.User;
+import io.jsonwebtoken.Claims;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Authenticated principal carrying the user id and tenant alongside the
+ * authorities, so controllers never have to look the user up again.
+ */
+public class UserPrincipal implements UserDetails {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String id;
+    private final String email;
+    private final String password;
+    private final String tenantId;
+    private final List<GrantedAuthority> authorities;
+    private final boolean enabled;
+
+    public UserPrincipal(String id, String email, String password, String tenantId,
+            List<GrantedAuthority> authorities, boolean enabled) {
+        this.id = id;
+        this.email = email;
+        this.password = password;
+        this.tenantId = tenantId;
+        this.authorities = authorities;
+        this.enabled = enabled;
+    }
+
+    public static UserPrincipal build(User user) {
+        List<GrantedAuthority> authorities = user.getRoles().stream()
+                .map(role -> new SimpleGrantedAuthority("ROLE_" + role.name()))
+                .collect(Collectors.toList());
+        return new UserPrincipal(user.getId(), user.getEmail(), user.getPassword(), user.getTenantId(),
+                authorities, user.isActive());
+    }
+
+    public UserPrincipal withPassword(String password) {
+        return new UserPrincipal(id, email, password, tenantId, authorities, enabled);
+    }
+
+    /**
+     * Rebuilds the principal from the signed claims of an access token without
+     * touching the database. Returns null for tokens that predate the embedded claims.
+     * Tokens are only issued to active users; deactivating a user revokes the tokens
+     * already issued through {@link TokenRevocationList}, which every instance shares.
+     */
+    public static UserPrincipal fromClaims(Claims claims) {
+        String userId = claims.get(JwtUtil.CLAIM_USER_ID, String.class);
+        List<?> roles = claims.get(JwtUtil.CLAIM_ROLES, List.class);
+        if (userId == null || roles == null) {
+            return null;
+        }
+        List<GrantedAuthority> authorities = roles.stream()
+                .map(role -> new SimpleGrantedAuthority(role.toString()))
+                .collect(Collectors.toList());
+        return new UserPrincipal(userId, claims.getSubject(), null,
+                claims.get(JwtUtil.CLAIM_TENANT_ID, String.class), authorities, true);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    public List<String> getRoleNames() {
+        return authorities.stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Whether the user works for the boutique (admin or worker) rather than buys from it.
+     */
+    public boolean isStaff() {
+        for (GrantedAuthority authority : authorities) {
+            String name = authority.getAuthority();
+            if ("ROLE_ADMIN".equals(name) || "ROLE_WORKER".equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+}
@@ -0,0 +1,454 @@
+package com.sutrini.service;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.sutrini.model.DailySales;
+import com.sutrini.model.Order;
+import com.sutrini.model.OrderItem;
+import com.sutrini.model.OrderStatus;
+import com.sutrini.model.ProcessedEvent;
+import com.sutrini.model.ProductSales;
+import com.sutrini.model.StatusCount;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.Decimal128;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Sales and production rollups for the admin dashboard, kept per tenant in three
+ * collections: orders and revenue per day ({@link DailySales}), units and revenue per
+ * product ({@link ProductSales}) and orders per status ({@link StatusCount}). They are
+ * updated with upserting {@code $inc}s as orders are created and change status, so the
+ * dashboard reads a few small documents whatever the order volume, and the assembled
+ * dashboard is cached for {@code analytics.cache.ttl}. The outbox may deliver an event
+ * more than once, so each event's updates are applied at most once (see
+ * {@link EventUpdates}), and a failed update is retried by the outbox. {@link #rebuild}
+ * recomputes a tenant's rollups from the orders collection, e.g. after an event was
+ * dead-lettered or a bulk import.
+ */
+@Service
+public class AnalyticsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnalyticsService.class);
+
+    static final String DAILY = "analytics_daily";
+    static final String PRODUCTS = "analytics_products";
+    static final String STATUS = "analytics_status";
+
+    private static final String SEPARATOR = "|";
+
+    private static final int MAX_CACHED_DASHBOARDS = 1000;
+
+    private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+
+    // Ids of the events being applied to a rollup document; see EventUpdates
+    static final String APPLIED_EVENTS = "appliedEvents";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${analytics.cache.ttl:30000}")
+    private long cacheTtl;
+
+    @Value("${analytics.top-products:10}")
+    private int topProducts;
+
+    // How long a processed event id is remembered; far longer than the outbox retries an event
+    @Value("${analytics.processed-event-ttl:604800000}")
+    private long processedEventTtl;
+
+    private final ExecutorService rebuildPool = Executors.newFixedThreadPool(3, runnable -> {
+        Thread thread = new Thread(runnable, "analytics-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<String, CachedDashboard> cache = new ConcurrentHashMap<>();
+
+    private record CachedDashboard(Dashboard dashboard, long loadedAt) {
+    }
+
+    public record Dashboard(LocalDate from, LocalDate to, long orders, long units, BigDecimal revenue,
+            long cancelledOrders, BigDecimal cancelledRevenue, List<DailySales> days, List<ProductSales> topProducts,
+            Map<OrderStatus, Long> statusCounts, long generatedAt) {
+    }
+
+    public record RebuildStats(long days, long products, long statuses, long tookMillis) {
+    }
+
+    @PreDestroy
+    void shutdown() {
+        rebuildPool.shutdownNow();
+    }
+
+    // Failures propagate so that OrderOutboxDispatcher retries the event; updates an
+    // earlier attempt already made are not repeated (see EventUpdates)
+    @EventListener
+    public void onOrderCreated(OrderCreatedEvent event) {
+        EventUpdates updates = new EventUpdates(event.eventId());
+        if (updates.alreadyProcessed()) {
+            return;
+        }
+        Order order = event.order();
+        String tenant = tenantKey(order.getTenantId());
+        long units = 0;
+        if (order.getItems() != null) {
+            for (OrderItem item : order.getItems()) {
+                units += item.getQuantity();
+            }
+            incrementProducts(updates, tenant, order.getItems(), 1);
+        }
+        updates.apply(DAILY, key(tenant, day(order)), List.of(
+                Updates.setOnInsert("tenantId", tenant),
+                Updates.setOnInsert("day", day(order)),
+                Updates.inc("orders", 1L),
+                Updates.inc("units", units),
+                Updates.inc("revenue", decimal(order.getTotalAmount()))), true);
+        incrementStatus(updates, tenant, order.getStatus(), 1);
+        updates.finish();
+    }
+
+    @EventListener
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        EventUpdates updates = new EventUpdates(event.eventId());
+        if (updates.alreadyProcessed()) {
+            return;
+        }
+        String tenant = tenantKey(event.tenantId());
+        incrementStatus(updates, tenant, event.from(), -1);
+        incrementStatus(updates, tenant, event.to(), 1);
+        if (event.to() == OrderStatus.CANCELLED) {
+            recordCancellation(updates, tenant, event.orderId());
+        }
+        updates.finish();
+    }
+
+    /**
+     * The rollup updates of one order event, each applied at most once although the
+     * outbox delivers events at least once. Every rollup document is updated together
+     * with a push of the event id, on condition that the id is not there yet, so a
+     * redelivery after a partial failure only applies what is missing. Once all are done
+     * the event is recorded in {@link ProcessedEvent} and its id pulled again, keeping
+     * the rollup documents small. Events without an id are applied unguarded.
+     */
+    private final class EventUpdates {
+
+        private final String eventId;
+
+        // Collection and id of every rollup document updated
+        private final List<String[]> applied = new ArrayList<>();
+
+        EventUpdates(String eventId) {
+            this.eventId = eventId;
+        }
+
+        boolean alreadyProcessed() {
+            return eventId != null && mongoTemplate.exists(new Query(Criteria.where("id").is(eventId)),
+                    ProcessedEvent.class);
+        }
+
+        void apply(String collection, String id, List<Bson> changes, boolean upsert) {
+            UpdateOptions options = upsert ? UPSERT : new UpdateOptions();
+            if (eventId == null) {
+                collection(collection).updateOne(Filters.eq("_id", id), Updates.combine(changes), options);
+                return;
+            }
+            List<Bson> guarded = new ArrayList<>(changes);
+            guarded.add(Updates.push(APPLIED_EVENTS, eventId));
+            try {
+                collection(collection).updateOne(Filters.and(Filters.eq("_id", id), Filters.ne(APPLIED_EVENTS, eventId)),
+                        Updates.combine(guarded), options);
+            } catch (MongoWriteException e) {
+                // The upsert found the document, already carrying the id: applied by an earlier delivery
+                if (e.getError().getCategory() != ErrorCategory.DUPLICATE_KEY) {
+                    throw e;
+                }
+            }
+            applied.add(new String[] {collection, id});
+        }
+
+        void finish() {
+            if (eventId == null) {
+                return;
+            }
+            try {
+                mongoTemplate.insert(new ProcessedEvent(eventId,
+                        new Date(System.currentTimeMillis() + processedEventTtl)));
+            } catch (DuplicateKeyException e) {
+                // Finished by a concurrent delivery
+            }
+            for (String[] document : applied) {
+                collection(document[0]).updateOne(Filters.eq("_id", document[1]), Updates.pull(APPLIED_EVENTS, eventId));
+            }
+        }
+    }
+
+    /**
+     * Dashboard for the days {@code from} to {@code to} (inclusive). Status counts and best
+     * sellers are all-time.
+     */
+    public Dashboard dashboard(String tenantId, LocalDate from, LocalDate to) {
+        String tenant = tenantKey(tenantId);
+        String cacheKey = tenant + SEPARATOR + from + SEPARATOR + to;
+        long now = System.currentTimeMillis();
+        CachedDashboard cached = cache.get(cacheKey);
+        if (cached != null && now - cached.loadedAt() < cacheTtl) {
+            return cached.dashboard();
+        }
+
+        Dashboard dashboard = load(tenant, from, to, now);
+        if (cache.size() >= MAX_CACHED_DASHBOARDS) {
+            cache.clear();
+        }
+        cache.put(cacheKey, new CachedDashboard(dashboard, now));
+        return dashboard;
+    }
+
+    private Dashboard load(String tenant, LocalDate from, LocalDate to, long now) {
+        // Ids sort by day within a tenant, so this is a primary key range scan
+        List<DailySales> days = mongoTemplate.find(new Query(Criteria.where("id")
+                .gte(key(tenant, from.toString())).lte(key(tenant, to.toString())))
+                .with(Sort.by("id")), DailySales.class);
+        List<ProductSales> products = mongoTemplate.find(new Query(Criteria.where("tenantId").is(tenant))
+                .with(Sort.by(Sort.Direction.DESC, "revenue")).limit(topProducts), ProductSales.class);
+        Map<OrderStatus, Long> statusCounts = new EnumMap<>(OrderStatus.class);
+        for (OrderStatus status : OrderStatus.values()) {
+            statusCounts.put(status, 0L);
+        }
+        for (StatusCount count : mongoTemplate.find(new Query(Criteria.where("tenantId").is(tenant)),
+                StatusCount.class)) {
+            statusCounts.put(count.getStatus(), count.getCount());
+        }
+
+        long orders = 0;
+        long units = 0;
+        long cancelledOrders = 0;
+        BigDecimal revenue = BigDecimal.ZERO;
+        BigDecimal cancelledRevenue = BigDecimal.ZERO;
+        for (DailySales day : days) {
+            orders += day.getOrders();
+            units += day.getUnits();
+            cancelledOrders += day.getCancelledOrders();
+            revenue = revenue.add(orZero(day.getRevenue()));
+            cancelledRevenue = cancelledRevenue.add(orZero(day.getCancelledRevenue()));
+        }
+        return new Dashboard(from, to, orders, units, revenue, cancelledOrders, cancelledRevenue, days, products,
+                statusCounts, now);
+    }
+
+    /**
+     * Recomputes the tenant's rollups from its orders. The three rollups are aggregated
+     * concurrently, each by one server-side pipeline that {@code $merge}s into its
+     * collection. Orders placed while the rebuild runs may be counted twice or not at
+     * all, so run it when the shop is quiet.
+     */
+    public RebuildStats rebuild(String tenantId) {
+        String tenant = tenantKey(tenantId);
+        long started = System.currentTimeMillis();
+        String zone = ZoneId.systemDefault().getId();
+
+        CompletableFuture<Long> days = CompletableFuture.supplyAsync(
+                () -> rebuild(DAILY, tenant, dailyPipeline(tenant, zone)), rebuildPool);
+        CompletableFuture<Long> products = CompletableFuture.supplyAsync(
+                () -> rebuild(PRODUCTS, tenant, productPipeline(tenant)), rebuildPool);
+        CompletableFuture<Long> statuses = CompletableFuture.supplyAsync(
+                () -> rebuild(STATUS, tenant, statusPipeline(tenant)), rebuildPool);
+        CompletableFuture.allOf(days, products, statuses).join();
+
+        cache.keySet().removeIf(key -> key.startsWith(tenant + SEPARATOR));
+        RebuildStats stats = new RebuildStats(days.join(), products.join(), statuses.join(),
+                System.currentTimeMillis() - started);
+        logger.info("Rebuilt analytics for tenant {}: {}", tenant, stats);
+        return stats;
+    }
+
+    private long rebuild(String collection, String tenant, List<Document> pipeline) {
+        collection(collection).deleteMany(Filters.eq("tenantId", tenant));
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(Order.class))
+                .aggregate(pipeline).allowDiskUse(true).toCollection();
+        return collection(collection).countDocuments(Filters.eq("tenantId", tenant));
+    }
+
+    private static List<Document> dailyPipeline(String tenant, String zone) {
+        Document total = new Document("$toDecimal", "$totalAmount");
+        Document cancelled = new Document("$eq", List.of("$status", OrderStatus.CANCELLED.name()));
+        return List.of(
+                new Document("$match", new Document("tenantId", tenantFilter(tenant))),
+                new Document("$group", new Document("_id", new Document("day", new Document("$dateToString",
+                        new Document("format", "%Y-%m-%d").append("date", "$createdAt").append("timezone", zone))))
+                        .append("orders", new Document("$sum", 1))
+                        .append("units", new Document("$sum", new Document("$sum", "$items.quantity")))
+                        .append("revenue", new Document("$sum", total))
+                        .append("cancelledOrders", new Document("$sum", new Document("$cond", List.of(cancelled, 1, 0))))
+                        .append("cancelledRevenue", new Document("$sum",
+                                new Document("$cond", List.of(cancelled, total, 0))))),
+                new Document("$project", new Document("_id", concatKey(tenant, "$_id.day"))
+                        .append("tenantId", tenant)
+                        .append("day", "$_id.day")
+                        .append("orders", new Document("$toLong", "$orders"))
+                        .append("units", new Document("$toLong", "$units"))
+                        .append("revenue", new Document("$toDecimal", "$revenue"))
+                        .append("cancelledOrders", new Document("$toLong", "$cancelledOrders"))
+                        .append("cancelledRevenue", new Document("$toDecimal", "$cancelledRevenue"))),
+                merge(DAILY));
+    }
+
+    private static List<Document> productPipeline(String tenant) {
+        return List.of(
+                new Document("$match", new Document("tenantId", tenantFilter(tenant))
+                        .append("status", new Document("$ne", OrderStatus.CANCELLED.name()))),
+                new Document("$unwind", "$items"),
+                new Document("$group", new Document("_id", "$items.productId")
+                        .append("productName", new Document("$last", "$items.productName"))
+                        .append("units", new Document("$sum", "$items.quantity"))
+                        .append("revenue", new Document("$sum", new Document("$multiply",
+                                List.of(new Document("$toDecimal", "$items.unitPrice"), "$items.quantity"))))),
+                new Document("$match", new Document("_id", new Document("$ne", null))),
+                new Document("$project", new Document("_id", concatKey(tenant, "$_id"))
+                        .append("tenantId", tenant)
+                        .append("productId", "$_id")
+                        .append("productName", "$productName")
+                        .append("units", new Document("$toLong", "$units"))
+                        .append("revenue", new Document("$toDecimal", "$revenue"))),
+                merge(PRODUCTS));
+    }
+
+    private static List<Document> statusPipeline(String tenant) {
+        return List.of(
+                new Document("$match", new Document("tenantId", tenantFilter(tenant)).append("status", new Document("$ne", null))),
+                new Document("$group", new Document("_id", "$status").append("count", new Document("$sum", 1))),
+                new Document("$project", new Document("_id", concatKey(tenant, "$_id"))
+                        .append("tenantId", tenant)
+                        .append("status", "$_id")
+                        .append("count", new Document("$toLong", "$count"))),
+                merge(STATUS));
+    }
+
+    private static Document concatKey(String tenant, String field) {
+        return new Document("$concat", List.of(tenant + SEPARATOR, field));
+    }
+
+    private static Document merge(String collection) {
+        return new Document("$merge", new Document("into", collection)
+                .append("whenMatched", "replace")
+                .append("whenNotMatched", "insert"));
+    }
+
+    private void recordCancellation(EventUpdates updates, String tenant, String orderId) {
+        Query query = new Query(Criteria.where("id").is(orderId));
+        query.fields().include("createdAt", "totalAmount", "items.productId", "items.quantity", "items.unitPrice");
+        Order order = mongoTemplate.findOne(query, Order.class);
+        if (order == null) {
+            return;
+        }
+        updates.apply(DAILY, key(tenant, day(order)), List.of(
+                Updates.inc("cancelledOrders", 1L),
+                Updates.inc("cancelledRevenue", decimal(order.getTotalAmount()))), false);
+        if (order.getItems() != null) {
+            incrementProducts(updates, tenant, order.getItems(), -1);
+        }
+    }
+
+    // One update per product: an order may have several lines of the same product, and
+    // a second guarded update of the same document would be skipped
+    private void incrementProducts(EventUpdates updates, String tenant, List<OrderItem> items, int sign) {
+        Map<String, ProductLine> products = new LinkedHashMap<>();
+        for (OrderItem item : items) {
+            if (item.getProductId() == null) {
+                continue;
+            }
+            ProductLine line = products.computeIfAbsent(item.getProductId(), id -> new ProductLine());
+            line.units += (long) sign * item.getQuantity();
+            line.revenue = line.revenue.add(orZero(item.getUnitPrice())
+                    .multiply(BigDecimal.valueOf((long) sign * item.getQuantity())));
+            if (item.getProductName() != null) {
+                line.name = item.getProductName();
+            }
+        }
+        products.forEach((productId, line) -> {
+            List<Bson> changes = new ArrayList<>(List.of(
+                    Updates.setOnInsert("tenantId", tenant),
+                    Updates.setOnInsert("productId", productId),
+                    Updates.inc("units", line.units),
+                    Updates.inc("revenue", new Decimal128(line.revenue))));
+            if (line.name != null) {
+                changes.add(Updates.set("productName", line.name));
+            }
+            updates.apply(PRODUCTS, key(tenant, productId), changes, true);
+        });
+    }
+
+    private static final class ProductLine {
+        private long units;
+        private BigDecimal revenue = BigDecimal.ZERO;
+        private String name;
+    }
+
+    private void incrementStatus(EventUpdates updates, String tenant, OrderStatus status, long delta) {
+        if (status == null) {
+            return;
+        }
+        updates.apply(STATUS, key(tenant, status.name()), List.of(
+                Updates.setOnInsert("tenantId", tenant),
+                Updates.setOnInsert("status", status.name()),
+                Updates.inc("count", delta)), true);
+    }
+
+    private MongoCollection<Document> collection(String name) {
+        return mongoTemplate.getCollection(name);
+    }
+
+    private static String key(String tenant, String value) {
+        return tenant + SEPARATOR + value;
+    }
+
+    // Orders from before tenancy have no tenant; their rollups are kept under ""
+    private static String tenantKey(String tenantId) {
+        return tenantId != null ? tenantId : "";
+    }
+
+    private static String tenantFilter(String tenant) {
+        return tenant.isEmpty() ? null : tenant;
+    }
+
+    private static String day(Order order) {
+        return order.getCreatedAt().toLocalDate().toString();
+    }
+
+    private static Decimal128 decimal(BigDecimal value) {
+        return new Decimal128(orZero(value));
+    }
+
+    private static BigDecimal orZero(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+}
@@ -0,0 +1,20 @@
+package com.sutrini.service;
+
+import com.sutrini.model.Product;
+
+/**
+ * Receives every change applied to the in-memory catalog, in the order the snapshots
+ * are swapped, so derived indexes can be maintained incrementally. Callbacks run while
+ * {@link CatalogService} holds its write lock and must not call back into it.
+ */
+public interface CatalogListener {
+
+    /**
+     * The whole catalog was (re)loaded; derived state should be rebuilt from {@code snapshot}.
+     */
+    void catalogLoaded(CatalogSnapshot snapshot);
+
+    void productSaved(Product product);
+
+    void productDeleted(String productId);
+}
@@ -0,0 +1,120 @@
+package com.sutrini.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sutrini.model.Product;
+import com.sutrini.security.TenantContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The unpaged catalog list and per-category lists of each tenant as ready-to-send
+ * JSON, plus a gzip variant, so the storefront's most frequent request costs neither
+ * Jackson nor compression. An entry is built on first use and rebuilt on the first
+ * request after a product of its tenant changed, i.e. when the tenant's version in the
+ * {@link CatalogSnapshot} has moved past the entry's; changes to other tenants' products
+ * leave it alone. Only available while reads are served from the snapshot.
+ */
+@Component
+public class CatalogResponseCache {
+
+    // Below this the gzip framing outweighs the savings
+    static final int MIN_GZIP_SIZE = 1024;
+
+    @Autowired
+    private CatalogService catalogService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Categories come from the query string, so the number of entries is capped
+    @Value("${catalog.response-cache.max-entries:1000}")
+    private int maxEntries;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Serialised product list; {@code gzip} (and its ETag) is null when the list is too
+     * small to be worth compressing. ETags are digests of the bytes, distinct per encoding.
+     */
+    public record Entry(long tenantVersion, byte[] json, String etag, byte[] gzip, String gzipETag) {
+    }
+
+    /**
+     * The caller's active products, or all of their products in {@code category}, as
+     * {@link CatalogService#findActive()} and {@link CatalogService#findByCategory(String)}
+     * would return them; null while the catalog snapshot is not loaded.
+     */
+    public Entry get(String category) {
+        CatalogSnapshot snapshot = catalogService.current();
+        if (snapshot == null) {
+            return null;
+        }
+        String tenant = TenantContext.current();
+        String key = tenant + "\u0000" + (category != null ? category : "");
+        long version = snapshot.getVersion(tenant);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.tenantVersion() >= version) {
+            return entry;
+        }
+        if (entry == null && entries.size() >= maxEntries) {
+            entries.clear();
+        }
+        // One thread builds per key; the others wait for its result
+        return entries.compute(key, (k, current) -> current != null && current.tenantVersion() >= version
+                ? current : build(snapshot, tenant, category));
+    }
+
+    private Entry build(CatalogSnapshot snapshot, String tenant, String category) {
+        List<Product> products = category != null ? snapshot.byCategory(tenant, category) : snapshot.active(tenant);
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(products);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialise the catalog", e);
+        }
+        String digest = digest(json);
+        if (json.length < MIN_GZIP_SIZE) {
+            return new Entry(snapshot.getVersion(tenant), json, "\"" + digest + "\"", null, null);
+        }
+        return new Entry(snapshot.getVersion(tenant), json, "\"" + digest + "\"", gzip(json), "\"" + digest + "-gz\"");
+    }
+
+    // Compressed once per catalog change, so the best ratio is worth the extra CPU
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static String digest(byte[] bytes) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(bytes);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(hash, 16));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
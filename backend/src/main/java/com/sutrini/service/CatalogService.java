@@ -0,0 +1,437 @@
+package com.sutrini.service;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import com.sutrini.model.Product;
+import com.sutrini.repository.ProductRepository;
+import com.sutrini.security.TenantContext;
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serves catalog reads from an in-process {@link CatalogSnapshot} instead of MongoDB.
+ * The snapshot is loaded once at startup and then kept current from a change stream
+ * on the products collection; on a standalone server, which has no change streams,
+ * it is reloaded on a fixed interval instead. Admin writes are applied immediately.
+ * With {@code catalog.snapshot.enabled=false}, or until the first load completes,
+ * every read goes straight to the repository. {@link CatalogListener}s such as the
+ * search index are told about every change in the order it was applied. Reads are
+ * limited to the caller's tenant (see {@link TenantContext}).
+ * <p>
+ * Checkouts move stock with an {@code $inc} on the product, several times per order.
+ * Rebuilding the snapshot for each would copy and re-sort the whole catalog per
+ * checkout, so change-stream updates touching only stock are collected and applied
+ * together every {@code catalog.snapshot.stock-flush-interval}; catalog stock may lag
+ * by that much. Reservations always check stock in MongoDB, and admin stock edits are
+ * applied right away.
+ */
+@Service
+public class CatalogService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogService.class);
+
+    // "$changeStream stage is only supported on replica sets"
+    private static final int CHANGE_STREAMS_UNSUPPORTED = 40573;
+
+    private static final long MAX_RETRY_DELAY = 60000;
+
+    // What StockService and the stock endpoint write (MongoTemplate adds the version)
+    private static final Set<String> STOCK_FIELDS = Set.of("stockQuantity", "updatedAt", "version");
+
+    public enum Mode { DISABLED, LOADING, CHANGE_STREAM, POLLING }
+
+    public record CatalogStats(Mode mode, long version, int size, long snapshotAgeMillis,
+            long lastFullLoadAt, long lastChangeAt, long lastChangeLagMillis, long fullLoads, long changesApplied,
+            int pendingStockChanges) {
+    }
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ProductSearchIndex searchIndex;
+
+    @Autowired
+    private ProductFacetIndex facetIndex;
+
+    @Autowired
+    private List<CatalogListener> listeners;
+
+    @Value("${catalog.snapshot.enabled:true}")
+    private boolean enabled;
+
+    private final AtomicReference<CatalogSnapshot> snapshot = new AtomicReference<>();
+    private final Object writeLock = new Object();
+
+    // Latest stock-only change per product, guarded by writeLock
+    private final Map<String, Product> pendingStock = new HashMap<>();
+
+    private volatile Mode mode = Mode.DISABLED;
+    private volatile boolean running;
+    private volatile Thread watcher;
+    private volatile MongoChangeStreamCursor<ChangeStreamDocument<Document>> changeStream;
+
+    private volatile long lastFullLoadAt;
+    private volatile long lastChangeAt;
+    private volatile long lastChangeLagMillis;
+    private final LongAdder fullLoads = new LongAdder();
+    private final LongAdder changesApplied = new LongAdder();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            logger.info("Catalog snapshot disabled, products are read from MongoDB");
+            return;
+        }
+        mode = Mode.LOADING;
+        running = true;
+        Thread thread = new Thread(this::watchChanges, "catalog-change-stream");
+        thread.setDaemon(true);
+        watcher = thread;
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        MongoChangeStreamCursor<?> cursor = changeStream;
+        if (cursor != null) {
+            try {
+                cursor.close();
+            } catch (RuntimeException e) {
+                // The watcher thread may be closing it at the same time
+            }
+        }
+        Thread thread = watcher;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    public Optional<Product> findById(String id) {
+        CatalogSnapshot current = current();
+        return current != null ? Optional.ofNullable(current.get(TenantContext.current(), id))
+                : productRepository.findById(id);
+    }
+
+    public List<Product> findActive() {
+        CatalogSnapshot current = current();
+        String tenant = TenantContext.current();
+        return current != null ? current.active(tenant) : productRepository.findByTenantIdAndActiveTrue(tenant);
+    }
+
+    public Page<Product> findActive(Pageable pageable) {
+        CatalogSnapshot current = current();
+        String tenant = TenantContext.current();
+        return current != null ? CatalogSnapshot.page(current.active(tenant), pageable)
+                : productRepository.findByTenantIdAndActiveTrue(tenant, pageable);
+    }
+
+    public List<Product> findByCategory(String category) {
+        CatalogSnapshot current = current();
+        String tenant = TenantContext.current();
+        return current != null ? current.byCategory(tenant, category)
+                : productRepository.findByTenantIdAndCategory(tenant, category);
+    }
+
+    public Page<Product> findByCategory(String category, Pageable pageable) {
+        CatalogSnapshot current = current();
+        String tenant = TenantContext.current();
+        return current != null ? CatalogSnapshot.page(current.byCategory(tenant, category), pageable)
+                : productRepository.findByTenantIdAndCategory(tenant, category, pageable);
+    }
+
+    /**
+     * Ranked full-text search over name, category, colors, sizes and description; see
+     * {@link ProductSearchIndex}. Without a sort in {@code pageable} results keep their
+     * relevance order.
+     */
+    public Page<Product> search(String query, BigDecimal minPrice, BigDecimal maxPrice, Boolean active,
+            Pageable pageable) {
+        String tenant = TenantContext.current();
+        if (current() != null && searchIndex.isReady()) {
+            if (pageable.isPaged() && pageable.getSort().isUnsorted()) {
+                // Relevance order: only the hits up to the end of the requested page are ranked
+                ProductSearchIndex.Result result = searchIndex.search(tenant, query, minPrice, maxPrice, active,
+                        (int) pageable.getOffset() + pageable.getPageSize());
+                List<Product> hits = result.products();
+                int from = (int) Math.min(pageable.getOffset(), hits.size());
+                return new PageImpl<>(hits.subList(from, hits.size()), pageable, result.total());
+            }
+            return CatalogSnapshot.page(searchIndex.search(tenant, query, minPrice, maxPrice, active, 0).products(),
+                    pageable);
+        }
+
+        // Fallback without the index: substring match on the name only
+        Criteria criteria = TenantContext.scoped(Criteria.where("name").regex(Pattern.quote(query), "i"));
+        if (minPrice != null || maxPrice != null) {
+            // Range operators skip the field's Decimal128 mapping, so pass decimals or they compare as strings
+            criteria = criteria.and("basePrice");
+            if (minPrice != null) {
+                criteria = criteria.gte(new Decimal128(minPrice));
+            }
+            if (maxPrice != null) {
+                criteria = criteria.lte(new Decimal128(maxPrice));
+            }
+        }
+        if (active != null) {
+            criteria = criteria.and("active").is(active);
+        }
+        Sort sort = pageable.getSort().isSorted() ? pageable.getSort() : Sort.by("name", "id");
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(mongoTemplate.find(new Query(criteria).with(sort), Product.class));
+        }
+        Pageable sorted = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort);
+        long total = mongoTemplate.count(new Query(criteria), Product.class);
+        return new PageImpl<>(mongoTemplate.find(new Query(criteria).with(sorted), Product.class), sorted, total);
+    }
+
+    /**
+     * Active products matching the facet selection, with counts per facet value; see
+     * {@link ProductFacetIndex}.
+     */
+    public ProductFacetIndex.Result browse(ProductFacetIndex.Selection selection) {
+        String tenant = TenantContext.current();
+        if (current() != null && facetIndex.isReady()) {
+            return facetIndex.browse(tenant, selection);
+        }
+        return facetIndex.browse(productRepository.findByTenantIdAndActiveTrue(tenant), selection);
+    }
+
+    /**
+     * Applies an admin write right away instead of waiting for the change stream or the next poll.
+     */
+    public void productSaved(Product product) {
+        synchronized (writeLock) {
+            pendingStock.remove(product.getId());
+            CatalogSnapshot current = snapshot.get();
+            if (current != null) {
+                snapshot.set(current.with(product));
+                listeners.forEach(listener -> listener.productSaved(product));
+            }
+        }
+    }
+
+    public void productDeleted(String productId) {
+        synchronized (writeLock) {
+            pendingStock.remove(productId);
+            CatalogSnapshot current = snapshot.get();
+            if (current != null) {
+                snapshot.set(current.without(productId));
+                listeners.forEach(listener -> listener.productDeleted(productId));
+            }
+        }
+    }
+
+    /**
+     * Applies the stock-only changes collected since the last flush in one snapshot rebuild.
+     */
+    @Scheduled(fixedDelayString = "${catalog.snapshot.stock-flush-interval:10000}")
+    public void flushStockChanges() {
+        synchronized (writeLock) {
+            CatalogSnapshot current = snapshot.get();
+            if (current == null || pendingStock.isEmpty()) {
+                return;
+            }
+            // Skip what the snapshot already has, e.g. admin stock edits applied directly
+            List<Product> changed = new ArrayList<>(pendingStock.size());
+            for (Product product : pendingStock.values()) {
+                Product known = current.get(product.getId());
+                if (known == null || known.getVersion() == null || product.getVersion() == null
+                        || product.getVersion() > known.getVersion()) {
+                    changed.add(product);
+                }
+            }
+            pendingStock.clear();
+            snapshot.set(current.withAll(changed));
+            changed.forEach(product -> listeners.forEach(listener -> listener.productSaved(product)));
+        }
+    }
+
+    public CatalogStats getStats() {
+        CatalogSnapshot current = snapshot.get();
+        long now = System.currentTimeMillis();
+        return new CatalogStats(mode,
+                current != null ? current.getVersion() : 0,
+                current != null ? current.size() : 0,
+                current != null ? now - current.getBuiltAt() : -1,
+                lastFullLoadAt, lastChangeAt, lastChangeLagMillis,
+                fullLoads.sum(), changesApplied.sum(), pendingStockCount());
+    }
+
+    private int pendingStockCount() {
+        synchronized (writeLock) {
+            return pendingStock.size();
+        }
+    }
+
+    /**
+     * Re-reads the whole catalog. Drives the polling fallback and resynchronises after
+     * the change stream was interrupted.
+     */
+    public void reload() {
+        List<Product> products = productRepository.findAll();
+        synchronized (writeLock) {
+            CatalogSnapshot current = snapshot.get();
+            CatalogSnapshot loaded = CatalogSnapshot.of(current != null ? current.getVersion() + 1 : 1, products,
+                    current);
+            // Collected before the reload read them
+            pendingStock.clear();
+            snapshot.set(loaded);
+            listeners.forEach(listener -> listener.catalogLoaded(loaded));
+        }
+        lastFullLoadAt = System.currentTimeMillis();
+        fullLoads.increment();
+    }
+
+    @Scheduled(fixedDelayString = "${catalog.snapshot.poll-interval:30000}")
+    public void poll() {
+        if (mode == Mode.POLLING) {
+            try {
+                reload();
+            } catch (RuntimeException e) {
+                logger.warn("Catalog reload failed, serving the previous snapshot: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * The snapshot reads are served from, or null while reads go to MongoDB.
+     */
+    CatalogSnapshot current() {
+        return enabled ? snapshot.get() : null;
+    }
+
+    private void watchChanges() {
+        long retryDelay = 1000;
+        while (running) {
+            MongoCollection<Document> products = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Product.class));
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = products.watch()
+                    .fullDocument(FullDocument.UPDATE_LOOKUP).cursor()) {
+                changeStream = cursor;
+                // The stream is open before the reload, so no change in between is lost
+                reload();
+                mode = Mode.CHANGE_STREAM;
+                retryDelay = 1000;
+                logger.info("Catalog snapshot loaded ({} products), following changes", snapshot.get().size());
+                while (running && apply(cursor.next())) {
+                    // apply() returns false when the stream was invalidated and must be reopened
+                }
+            } catch (MongoCommandException e) {
+                if (e.getErrorCode() == CHANGE_STREAMS_UNSUPPORTED) {
+                    logger.info("Change streams unavailable (standalone MongoDB), polling the catalog instead");
+                    mode = Mode.POLLING;
+                    poll();
+                    return;
+                }
+                retryDelay = retryLater(e, retryDelay);
+            } catch (RuntimeException e) {
+                retryDelay = retryLater(e, retryDelay);
+            } finally {
+                changeStream = null;
+            }
+        }
+    }
+
+    private long retryLater(RuntimeException e, long retryDelay) {
+        if (!running) {
+            return retryDelay;
+        }
+        // Keep the snapshot fresh by polling while the stream is down
+        mode = Mode.POLLING;
+        logger.warn("Catalog change stream failed, retrying in {} ms: {}", retryDelay, e.getMessage());
+        try {
+            Thread.sleep(retryDelay);
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+        return Math.min(retryDelay * 2, MAX_RETRY_DELAY);
+    }
+
+    private boolean apply(ChangeStreamDocument<Document> change) {
+        switch (change.getOperationType()) {
+            case INSERT, UPDATE, REPLACE -> {
+                Document document = change.getFullDocument();
+                if (document != null && stockOnly(change)) {
+                    Product product = mongoTemplate.getConverter().read(Product.class, document);
+                    synchronized (writeLock) {
+                        pendingStock.put(product.getId(), product);
+                    }
+                } else if (document != null) {
+                    productSaved(mongoTemplate.getConverter().read(Product.class, document));
+                } else {
+                    // Deleted again before the lookup ran
+                    productDeleted(idOf(change));
+                }
+            }
+            case DELETE -> productDeleted(idOf(change));
+            case DROP, DROP_DATABASE, RENAME, INVALIDATE -> {
+                return false;
+            }
+            default -> {
+                return true;
+            }
+        }
+
+        changesApplied.increment();
+        lastChangeAt = System.currentTimeMillis();
+        if (change.getClusterTime() != null) {
+            lastChangeLagMillis = Math.max(0, lastChangeAt - change.getClusterTime().getTime() * 1000L);
+        }
+        return true;
+    }
+
+    private static boolean stockOnly(ChangeStreamDocument<Document> change) {
+        if (change.getOperationType() != OperationType.UPDATE || change.getUpdateDescription() == null) {
+            return false;
+        }
+        UpdateDescription description = change.getUpdateDescription();
+        return description.getUpdatedFields() != null && !description.getUpdatedFields().isEmpty()
+                && STOCK_FIELDS.containsAll(description.getUpdatedFields().keySet())
+                && (description.getRemovedFields() == null || description.getRemovedFields().isEmpty())
+                && (description.getTruncatedArrays() == null || description.getTruncatedArrays().isEmpty());
+    }
+
+    private static String idOf(ChangeStreamDocument<Document> change) {
+        BsonValue id = change.getDocumentKey().get("_id");
+        return id.isObjectId() ? id.asObjectId().getValue().toHexString() : id.asString().getValue();
+    }
+}
@@ -0,0 +1,309 @@
+package com.sutrini.service;
+
+import com.sutrini.model.Product;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Immutable view of the whole product catalog, indexed by id, tenant and category. A new
+ * snapshot is built for every change and swapped in atomically by {@link CatalogService},
+ * so readers never lock and never see a half-applied change. The {@link Product}
+ * instances are shared between readers and must be treated as read-only.
+ * <p>
+ * Besides the catalog-wide version every tenant has its own, the version of the last
+ * snapshot that changed that tenant's lists, so caches of one boutique's lists survive
+ * changes to another's.
+ */
+public final class CatalogSnapshot {
+
+    static final Comparator<Product> DEFAULT_ORDER = Comparator
+            .comparing(Product::getName, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+            .thenComparing(Product::getId);
+
+    private final long version;
+    private final long builtAt;
+    private final Map<String, Product> byId;
+    private final List<Product> all;
+    private final List<Product> active;
+    private final Map<String, List<Product>> byCategory;
+    private final Map<String, TenantView> tenants;
+    private final Map<String, Long> tenantVersions;
+
+    // One boutique's share of the catalog
+    private record TenantView(List<Product> active, Map<String, List<Product>> byCategory) {
+    }
+
+    private CatalogSnapshot(long version, Map<String, Product> byId, CatalogSnapshot previous) {
+        this.version = version;
+        this.builtAt = System.currentTimeMillis();
+        this.byId = Collections.unmodifiableMap(byId);
+
+        List<Product> sorted = new ArrayList<>(byId.values());
+        sorted.sort(DEFAULT_ORDER);
+        List<Product> activeProducts = new ArrayList<>();
+        Map<String, List<Product>> categories = new HashMap<>();
+        Map<String, List<Product>> tenantActive = new HashMap<>();
+        Map<String, Map<String, List<Product>>> tenantCategories = new HashMap<>();
+        for (Product product : sorted) {
+            String tenant = product.getTenantId();
+            if (product.isActive()) {
+                activeProducts.add(product);
+                if (tenant != null) {
+                    tenantActive.computeIfAbsent(tenant, t -> new ArrayList<>()).add(product);
+                }
+            }
+            if (product.getCategory() != null) {
+                categories.computeIfAbsent(product.getCategory(), c -> new ArrayList<>()).add(product);
+                if (tenant != null) {
+                    tenantCategories.computeIfAbsent(tenant, t -> new HashMap<>())
+                            .computeIfAbsent(product.getCategory(), c -> new ArrayList<>()).add(product);
+                }
+            }
+        }
+
+        Map<String, TenantView> views = new HashMap<>();
+        for (String tenant : union(tenantActive.keySet(), tenantCategories.keySet())) {
+            views.put(tenant, new TenantView(List.copyOf(tenantActive.getOrDefault(tenant, List.of())),
+                    copyOf(tenantCategories.getOrDefault(tenant, Map.of()))));
+        }
+
+        this.all = List.copyOf(sorted);
+        this.active = List.copyOf(activeProducts);
+        this.byCategory = copyOf(categories);
+        this.tenants = Map.copyOf(views);
+
+        // Tenants whose lists are unchanged keep their version; emptied tenants stay, with a new one
+        Map<String, Long> versions = new HashMap<>();
+        if (previous == null) {
+            views.keySet().forEach(tenant -> versions.put(tenant, version));
+        } else {
+            versions.putAll(previous.tenantVersions);
+            for (String tenant : union(views.keySet(), previous.tenants.keySet())) {
+                if (!sameContent(previous.tenants.get(tenant), views.get(tenant))) {
+                    versions.put(tenant, version);
+                }
+            }
+        }
+        this.tenantVersions = Map.copyOf(versions);
+    }
+
+    private static boolean sameContent(TenantView before, TenantView after) {
+        if (before == null || after == null) {
+            return before == after;
+        }
+        if (!sameProducts(before.active(), after.active())
+                || !before.byCategory().keySet().equals(after.byCategory().keySet())) {
+            return false;
+        }
+        for (Map.Entry<String, List<Product>> category : after.byCategory().entrySet()) {
+            if (!sameProducts(before.byCategory().get(category.getKey()), category.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Every write bumps a product's version; products without one count as changed
+    private static boolean sameProducts(List<Product> before, List<Product> after) {
+        if (before.size() != after.size()) {
+            return false;
+        }
+        for (int i = 0; i < before.size(); i++) {
+            Product a = before.get(i);
+            Product b = after.get(i);
+            if (a != b && (a.getVersion() == null || !a.getId().equals(b.getId())
+                    || !a.getVersion().equals(b.getVersion()) || !Objects.equals(a.getUpdatedAt(), b.getUpdatedAt()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<String, List<Product>> copyOf(Map<String, List<Product>> lists) {
+        Map<String, List<Product>> copy = new HashMap<>(lists.size() * 2);
+        lists.forEach((key, products) -> copy.put(key, List.copyOf(products)));
+        return Map.copyOf(copy);
+    }
+
+    private static Set<String> union(Set<String> first, Set<String> second) {
+        Set<String> union = new HashSet<>(first);
+        union.addAll(second);
+        return union;
+    }
+
+    static CatalogSnapshot empty() {
+        return new CatalogSnapshot(0, new HashMap<>(), null);
+    }
+
+    static CatalogSnapshot of(long version, Collection<Product> products) {
+        return of(version, products, null);
+    }
+
+    /**
+     * Snapshot of a full load; tenants whose lists match {@code previous} keep their version.
+     */
+    static CatalogSnapshot of(long version, Collection<Product> products, CatalogSnapshot previous) {
+        Map<String, Product> byId = new HashMap<>(products.size() * 2);
+        for (Product product : products) {
+            byId.put(product.getId(), product);
+        }
+        return new CatalogSnapshot(version, byId, previous);
+    }
+
+    /**
+     * Copy of this snapshot with {@code product} added or replaced.
+     */
+    CatalogSnapshot with(Product product) {
+        Map<String, Product> copy = new HashMap<>(byId);
+        copy.put(product.getId(), product);
+        return new CatalogSnapshot(version + 1, copy, this);
+    }
+
+    /**
+     * Copy of this snapshot with all of {@code products} added or replaced, built once;
+     * this snapshot if there are none.
+     */
+    CatalogSnapshot withAll(Collection<Product> products) {
+        if (products.isEmpty()) {
+            return this;
+        }
+        Map<String, Product> copy = new HashMap<>(byId);
+        for (Product product : products) {
+            copy.put(product.getId(), product);
+        }
+        return new CatalogSnapshot(version + 1, copy, this);
+    }
+
+    /**
+     * Copy of this snapshot without the product, or this snapshot if it is not present.
+     */
+    CatalogSnapshot without(String productId) {
+        if (!byId.containsKey(productId)) {
+            return this;
+        }
+        Map<String, Product> copy = new HashMap<>(byId);
+        copy.remove(productId);
+        return new CatalogSnapshot(version + 1, copy, this);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Version of the last snapshot that changed {@code tenantId}'s lists ({@link #active(String)},
+     * {@link #byCategory(String, String)}); 0 for a tenant that never had products, and the
+     * catalog-wide version for a null tenant.
+     */
+    public long getVersion(String tenantId) {
+        return tenantId == null ? version : tenantVersions.getOrDefault(tenantId, 0L);
+    }
+
+    public long getBuiltAt() {
+        return builtAt;
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    public Product get(String id) {
+        return byId.get(id);
+    }
+
+    /**
+     * The product, if it belongs to {@code tenantId}; a null tenant matches any product.
+     */
+    public Product get(String tenantId, String id) {
+        Product product = byId.get(id);
+        return product != null && (tenantId == null || tenantId.equals(product.getTenantId())) ? product : null;
+    }
+
+    /**
+     * All products ordered by name; the same set as {@code ProductRepository.findAll()}.
+     */
+    public List<Product> all() {
+        return all;
+    }
+
+    public List<Product> active() {
+        return active;
+    }
+
+    /**
+     * Active products of one tenant ordered by name; a null tenant means all tenants.
+     */
+    public List<Product> active(String tenantId) {
+        if (tenantId == null) {
+            return active;
+        }
+        TenantView view = tenants.get(tenantId);
+        return view != null ? view.active() : List.of();
+    }
+
+    /**
+     * Products of one tenant and category, active or not, like
+     * {@code ProductRepository.findByTenantIdAndCategory}; a null tenant means all tenants.
+     */
+    public List<Product> byCategory(String tenantId, String category) {
+        if (tenantId == null) {
+            return byCategory.getOrDefault(category, List.of());
+        }
+        TenantView view = tenants.get(tenantId);
+        return view != null ? view.byCategory().getOrDefault(category, List.of()) : List.of();
+    }
+
+    /**
+     * Sorts and slices an in-memory result the way the equivalent paged repository query would.
+     */
+    public static Page<Product> page(List<Product> products, Pageable pageable) {
+        List<Product> sorted = products;
+        if (pageable.getSort().isSorted()) {
+            sorted = new ArrayList<>(products);
+            sorted.sort(comparator(pageable.getSort()));
+        }
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(sorted);
+        }
+        int from = (int) Math.min(pageable.getOffset(), sorted.size());
+        int to = Math.min(from + pageable.getPageSize(), sorted.size());
+        return new PageImpl<>(sorted.subList(from, to), pageable, sorted.size());
+    }
+
+    private static Comparator<Product> comparator(Sort sort) {
+        Comparator<Product> comparator = null;
+        for (Sort.Order order : sort) {
+            Comparator<Product> next = switch (order.getProperty()) {
+                case "name" -> nullsFirst(Product::getName);
+                case "basePrice" -> nullsFirst(Product::getBasePrice);
+                case "category" -> nullsFirst(Product::getCategory);
+                case "id" -> nullsFirst(Product::getId);
+                default -> throw new IllegalArgumentException("Unsupported sort property: " + order.getProperty());
+            };
+            if (order.isDescending()) {
+                next = next.reversed();
+            }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        return comparator;
+    }
+
+    // Ascending order with nulls first, as MongoDB sorts missing fields
+    private static <T extends Comparable<? super T>> Comparator<Product> nullsFirst(Function<Product, T> field) {
+        return Comparator.comparing(field, Comparator.nullsFirst(Comparator.naturalOrder()));
+    }
+}
@@ -0,0 +1,20 @@
+package com.sutrini.service;
+
+/**
+ * Thrown when a reservation cannot be satisfied from the current stock.
+ */
+public class InsufficientStockException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String productId;
+
+    public InsufficientStockException(String productId) {
+        super("Insufficient stock for product " + productId);
+        this.productId = productId;
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+}
@@ -0,0 +1,99 @@
+package com.sutrini.service;
+
+import com.google.zxing.WriterException;
+import com.sutrini.model.Order;
+import com.sutrini.model.OrderItem;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Streams printable QR label sheets for workshop orders. Pages are rendered in
+ * parallel across cores, one page ahead of the writer, so at most two pages of
+ * labels are held in memory whatever the number of orders.
+ */
+@Service
+public class LabelSheetService {
+
+    @Autowired
+    private QRCodeService qrCodeService;
+
+    private final ExecutorService renderPool = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = new Thread(runnable, "label-render");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /**
+     * Writes a PDF with one label per order. {@code orders} is consumed lazily,
+     * typically straight from a Mongo cursor.
+     */
+    public void writePdf(Iterator<Order> orders, OutputStream out) throws IOException {
+        PdfLabelWriter writer = new PdfLabelWriter(out);
+        writer.begin();
+
+        CompletableFuture<List<PdfLabelWriter.Label>> next = renderPage(orders);
+        while (next != null) {
+            List<PdfLabelWriter.Label> page = next.join();
+            // Start on the following page while this one is being written out
+            next = orders.hasNext() ? renderPage(orders) : null;
+            writer.writePage(page);
+        }
+        writer.finish();
+    }
+
+    private CompletableFuture<List<PdfLabelWriter.Label>> renderPage(Iterator<Order> orders) {
+        List<CompletableFuture<PdfLabelWriter.Label>> labels = new ArrayList<>(PdfLabelWriter.LABELS_PER_PAGE);
+        while (orders.hasNext() && labels.size() < PdfLabelWriter.LABELS_PER_PAGE) {
+            Order order = orders.next();
+            labels.add(CompletableFuture.supplyAsync(() -> renderLabel(order), renderPool));
+        }
+        return CompletableFuture.allOf(labels.toArray(new CompletableFuture<?>[0]))
+                .thenApply(done -> labels.stream().map(CompletableFuture::join).toList());
+    }
+
+    private PdfLabelWriter.Label renderLabel(Order order) {
+        try {
+            QRCodeService.LabelCode code = qrCodeService.getLabelCode("ORDER:" + order.getId());
+            String id = order.getId();
+            String title = "#" + id.substring(Math.max(0, id.length() - 6)).toUpperCase();
+            return new PdfLabelWriter.Label(id, title, caption(order), code.modules(), code.deflatedBitmap());
+        } catch (WriterException e) {
+            throw new IllegalStateException("Cannot encode QR code for order " + order.getId(), e);
+        }
+    }
+
+    private static String caption(Order order) {
+        List<OrderItem> items = order.getItems();
+        if (items == null || items.isEmpty()) {
+            return "";
+        }
+        OrderItem first = items.get(0);
+        StringBuilder caption = new StringBuilder();
+        if (first.getProductName() != null) {
+            caption.append(first.getProductName());
+        }
+        if (first.getSize() != null) {
+            caption.append(' ').append(first.getSize());
+        }
+        if (items.size() > 1) {
+            caption.append(" +").append(items.size() - 1);
+        }
+        return caption.toString();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renderPool.shutdown();
+    }
+}
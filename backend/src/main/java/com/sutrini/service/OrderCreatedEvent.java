@@ -0,0 +1,10 @@
+package com.sutrini.service;
+
+import com.sutrini.model.Order;
+
+/**
+ * Published after a new order has been stored. {@code eventId} identifies the outbox
+ * event, which may be delivered more than once; null when not published from the outbox.
+ */
+public record OrderCreatedEvent(String eventId, Order order) {
+}
@@ -0,0 +1,256 @@
+package com.sutrini.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.sutrini.model.Order;
+import com.sutrini.model.OrderItem;
+import com.sutrini.model.OrderStatus;
+import com.sutrini.security.TenantContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams orders for accounting as CSV or NDJSON, one row per order or one per order
+ * item. Orders are read from a MongoDB cursor in batches of
+ * {@code orders.export.batch-size} and written straight to the response; the cursor
+ * only fetches the next batch once the client has taken the previous rows, so memory
+ * use is constant and a slow client slows the export down rather than filling the heap.
+ */
+@Service
+public class OrderExportService {
+
+    public enum Format { CSV, NDJSON }
+
+    private static final List<String> ORDER_COLUMNS = List.of(
+            "orderId", "createdAt", "tenantId", "customerId", "customerEmail", "status", "itemCount", "totalAmount");
+
+    private static final List<String> ITEM_COLUMNS = List.of(
+            "orderId", "createdAt", "tenantId", "customerId", "customerEmail", "status",
+            "productId", "productName", "size", "color", "quantity", "unitPrice", "lineTotal");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final JsonFactory jsonFactory = JsonFactory.builder()
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .build();
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${orders.export.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Orders created between {@code from} and {@code to} (inclusive days, both optional)
+     * in any of {@code statuses} (all when empty), oldest first, for the caller's tenant.
+     */
+    public Query query(LocalDate from, LocalDate to, Collection<OrderStatus> statuses) {
+        Criteria criteria = TenantContext.scoped(new Criteria());
+        if (from != null || to != null) {
+            criteria = criteria.and("createdAt");
+            if (from != null) {
+                criteria = criteria.gte(from.atStartOfDay());
+            }
+            if (to != null) {
+                criteria = criteria.lt(to.plusDays(1).atStartOfDay());
+            }
+        }
+        if (statuses != null && !statuses.isEmpty()) {
+            criteria = criteria.and("status").in(statuses);
+        }
+        Query query = new Query(criteria).with(Sort.by("createdAt", "id")).cursorBatchSize(batchSize);
+        query.fields().include("id", "createdAt", "tenantId", "customerId", "customerEmail", "status",
+                "totalAmount", "items");
+        return query;
+    }
+
+    public void write(Query query, Format format, boolean itemRows, boolean gzip, OutputStream out) throws IOException {
+        GZIPOutputStream compressed = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(compressed != null ? compressed : out,
+                StandardCharsets.UTF_8), BUFFER_SIZE);
+        RowWriter rows = format == Format.CSV ? new CsvRowWriter(writer) : new JsonRowWriter(writer);
+        List<String> columns = itemRows ? ITEM_COLUMNS : ORDER_COLUMNS;
+
+        rows.begin(columns);
+        // A failed write (usually the client went away) closes the cursor on the way out
+        try (Stream<Order> orders = mongoTemplate.stream(query, Order.class)) {
+            Iterator<Order> iterator = orders.iterator();
+            while (iterator.hasNext()) {
+                Order order = iterator.next();
+                if (itemRows) {
+                    writeItems(order, rows);
+                } else {
+                    int itemCount = order.getItems() != null ? order.getItems().size() : 0;
+                    rows.row(order.getId(), order.getCreatedAt(), order.getTenantId(), order.getCustomerId(),
+                            order.getCustomerEmail(), order.getStatus(), itemCount, order.getTotalAmount());
+                }
+            }
+        }
+        rows.end();
+        writer.flush();
+        if (compressed != null) {
+            compressed.finish();
+        }
+    }
+
+    private static void writeItems(Order order, RowWriter rows) throws IOException {
+        if (order.getItems() == null) {
+            return;
+        }
+        for (OrderItem item : order.getItems()) {
+            BigDecimal lineTotal = item.getUnitPrice() != null
+                    ? item.getUnitPrice().multiply(BigDecimal.valueOf(item.getQuantity()))
+                    : null;
+            rows.row(order.getId(), order.getCreatedAt(), order.getTenantId(), order.getCustomerId(),
+                    order.getCustomerEmail(), order.getStatus(), item.getProductId(), item.getProductName(),
+                    item.getSize(), item.getColor(), item.getQuantity(), item.getUnitPrice(), lineTotal);
+        }
+    }
+
+    private interface RowWriter {
+        void begin(List<String> columns) throws IOException;
+
+        void row(Object... values) throws IOException;
+
+        void end() throws IOException;
+    }
+
+    /**
+     * RFC 4180 CSV with a header line; values containing separators, quotes or line
+     * breaks are quoted. Text that a spreadsheet would read as a formula (customer
+     * emails, product names) is prefixed with {@code '} so it opens as text.
+     */
+    private static final class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+
+        CsvRowWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void begin(List<String> columns) throws IOException {
+            row(columns.toArray());
+        }
+
+        @Override
+        public void row(Object... values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                Object value = values[i];
+                if (value == null) {
+                    continue;
+                }
+                String text;
+                if (value instanceof BigDecimal decimal) {
+                    text = decimal.toPlainString();
+                } else if (value instanceof String string && isFormula(string)) {
+                    text = "'" + string;
+                } else {
+                    text = value.toString();
+                }
+                if (needsQuoting(text)) {
+                    writer.write('"');
+                    writer.write(text.replace("\"", "\"\""));
+                    writer.write('"');
+                } else {
+                    writer.write(text);
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void end() {
+        }
+
+        // Numbers are not Strings here, so a negative amount keeps its sign
+        private static boolean isFormula(String text) {
+            if (text.isEmpty()) {
+                return false;
+            }
+            char first = text.charAt(0);
+            return first == '=' || first == '+' || first == '-' || first == '@' || first == '\t' || first == '\r';
+        }
+
+        private static boolean needsQuoting(String text) {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * One JSON object per line, keyed by column name; nulls are omitted.
+     */
+    private final class JsonRowWriter implements RowWriter {
+        private final JsonGenerator generator;
+        private List<String> columns;
+        private boolean empty = true;
+
+        JsonRowWriter(Writer writer) throws IOException {
+            generator = jsonFactory.createGenerator(writer);
+            generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+        }
+
+        @Override
+        public void begin(List<String> columns) {
+            this.columns = columns;
+        }
+
+        @Override
+        public void row(Object... values) throws IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < values.length; i++) {
+                Object value = values[i];
+                if (value == null) {
+                    continue;
+                }
+                generator.writeFieldName(columns.get(i));
+                if (value instanceof BigDecimal decimal) {
+                    generator.writeNumber(decimal);
+                } else if (value instanceof Integer number) {
+                    generator.writeNumber(number);
+                } else {
+                    generator.writeString(value.toString());
+                }
+            }
+            generator.writeEndObject();
+            empty = false;
+        }
+
+        @Override
+        public void end() throws IOException {
+            if (!empty) {
+                generator.writeRaw('\n');
+            }
+            generator.flush();
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.sutrini.service;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Updates;
+import com.sutrini.model.Order;
+import com.sutrini.model.OrderEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Publishes the events queued in each order's outbox (see {@link Order#getOutbox()})
+ * as {@link OrderCreatedEvent} and {@link OrderStatusChangedEvent}, off the request
+ * thread. Orders with due events are claimed one at a time with a findAndModify that
+ * pushes {@code outboxDueAt} out by a lease, so only one worker handles an order at a
+ * time and its events are published in the order they were written. Delivery is at
+ * least once: a worker that dies mid-order leaves the lease to run out and the events
+ * are published again. A failing listener is retried with exponential backoff; after
+ * {@code outbox.max-attempts} the event is moved to {@value #DEAD_LETTERS}.
+ */
+@Service
+public class OrderOutboxDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderOutboxDispatcher.class);
+
+    public static final String DEAD_LETTERS = "outbox_dead_letters";
+
+    // Caps the backoff at retry-backoff-ms * 2^16
+    private static final int MAX_BACKOFF_SHIFT = 16;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${outbox.workers:4}")
+    private int workers;
+
+    @Value("${outbox.lease-ms:30000}")
+    private long leaseMs;
+
+    @Value("${outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${outbox.retry-backoff-ms:1000}")
+    private long retryBackoffMs;
+
+    @Value("${outbox.virtual-threads:false}")
+    private boolean virtualThreads;
+
+    private ExecutorService workerPool;
+
+    // One permit per worker, so no more orders are leased than can be worked on
+    private Semaphore permits;
+
+    @PostConstruct
+    void init() {
+        permits = new Semaphore(workers);
+        if (virtualThreads) {
+            workerPool = newVirtualThreadPerTaskExecutor();
+        }
+        if (workerPool == null) {
+            workerPool = Executors.newFixedThreadPool(workers, runnable -> {
+                Thread thread = new Thread(runnable, "order-outbox");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Orders still being worked on are picked up again once their lease runs out
+        workerPool.shutdownNow();
+    }
+
+    /**
+     * Orders currently leased and being published by a worker.
+     */
+    public int getInFlight() {
+        return workers - permits.availablePermits();
+    }
+
+    /**
+     * Claims orders with due events until every worker is busy or nothing is due.
+     */
+    @Scheduled(fixedDelayString = "${outbox.poll-interval:500}")
+    public void dispatchDue() {
+        while (permits.tryAcquire()) {
+            Order order;
+            try {
+                order = claim();
+            } catch (RuntimeException e) {
+                permits.release();
+                logger.warn("Could not claim orders from the outbox: {}", e.getMessage());
+                return;
+            }
+            if (order == null) {
+                permits.release();
+                return;
+            }
+            try {
+                workerPool.execute(() -> {
+                    try {
+                        dispatch(order);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Shutting down; the lease runs out and another instance takes over
+                permits.release();
+                return;
+            }
+        }
+    }
+
+    // Outbox writes go to the collection directly: through MongoTemplate they would
+    // increment the order version, which clients use to detect concurrent changes
+    private MongoCollection<Document> orders() {
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Order.class));
+    }
+
+    private Order claim() {
+        long now = System.currentTimeMillis();
+        Document claimed = orders().findOneAndUpdate(Filters.lte("outboxDueAt", new Date(now)),
+                Updates.set("outboxDueAt", new Date(now + leaseMs)),
+                new FindOneAndUpdateOptions().sort(Sorts.ascending("outboxDueAt"))
+                        .projection(Projections.exclude("statusHistory")));
+        return claimed != null ? mongoTemplate.getConverter().read(Order.class, claimed) : null;
+    }
+
+    private void dispatch(Order order) {
+        List<OrderEvent> events = order.getOutbox() != null ? order.getOutbox() : List.of();
+        List<ObjectId> published = new ArrayList<>(events.size());
+        for (OrderEvent event : events) {
+            try {
+                eventPublisher.publishEvent(toApplicationEvent(order, event));
+            } catch (RuntimeException e) {
+                failed(order, event, published, e);
+                return;
+            }
+            published.add(new ObjectId(event.getId()));
+        }
+        // Events queued while these were published are left in place and due right away
+        settle(order.getId(), published, new Date(), 0);
+    }
+
+    private void failed(Order order, OrderEvent event, List<ObjectId> published, RuntimeException error) {
+        // Attempts count failures of the event at the head of the outbox
+        int attempts = published.isEmpty() ? order.getOutboxAttempts() + 1 : 1;
+        if (attempts < maxAttempts) {
+            long backoff = retryBackoffMs << Math.min(attempts - 1, MAX_BACKOFF_SHIFT);
+            logger.warn("Event {} of order {} failed (attempt {} of {}), retrying in {} ms: {}", event.getType(),
+                    order.getId(), attempts, maxAttempts, backoff, error.toString());
+            settle(order.getId(), published, new Date(System.currentTimeMillis() + backoff), attempts);
+            return;
+        }
+
+        logger.error("Event {} of order {} failed {} times, moving it to {}", event.getType(), order.getId(),
+                attempts, DEAD_LETTERS, error);
+        mongoTemplate.getCollection(DEAD_LETTERS).insertOne(new Document("orderId", order.getId())
+                .append("tenantId", order.getTenantId())
+                .append("event", new Document("_id", new ObjectId(event.getId()))
+                        .append("type", event.getType().name())
+                        .append("from", event.getFrom() != null ? event.getFrom().name() : null)
+                        .append("to", event.getTo() != null ? event.getTo().name() : null)
+                        .append("createdAt", toDate(event.getCreatedAt())))
+                .append("error", error.toString())
+                .append("attempts", attempts)
+                .append("failedAt", new Date()));
+        published.add(new ObjectId(event.getId()));
+        settle(order.getId(), published, new Date(), 0);
+    }
+
+    /**
+     * Drops {@code done} from the outbox. If events remain they are due at {@code due}
+     * with {@code attempts} recorded; otherwise the outbox fields are removed, which
+     * also takes the order out of the partial {@code outbox_due} index.
+     */
+    private void settle(String orderId, List<ObjectId> done, Date due, int attempts) {
+        Document remaining = new Document("$filter", new Document("input", new Document("$ifNull", List.of("$outbox", List.of())))
+                .append("as", "event")
+                .append("cond", new Document("$not", List.of(new Document("$in", List.of("$$event._id", done))))));
+        Document hasRemaining = new Document("$gt", List.of(new Document("$size", "$outbox"), 0));
+        Document schedule = new Document("$set", new Document()
+                .append("outboxDueAt", new Document("$cond", List.of(hasRemaining, due, "$$REMOVE")))
+                .append("outboxAttempts", attempts > 0 ? attempts : "$$REMOVE")
+                .append("outbox", new Document("$cond", List.of(hasRemaining, "$outbox", "$$REMOVE"))));
+        orders().updateOne(Filters.eq("_id", mongoTemplate.getConverter().convertId(orderId, ObjectId.class)),
+                List.of(new Document("$set", new Document("outbox", remaining)), schedule));
+    }
+
+    private static Object toApplicationEvent(Order order, OrderEvent event) {
+        if (event.getType() == OrderEvent.Type.CREATED) {
+            // The order may have moved on by now; listeners see it as it was created
+            order.setStatus(event.getTo());
+            return new OrderCreatedEvent(event.getId(), order);
+        }
+        return new OrderStatusChangedEvent(event.getId(), order.getId(), order.getTenantId(), event.getFrom(),
+                event.getTo());
+    }
+
+    private static Date toDate(LocalDateTime dateTime) {
+        return dateTime != null ? Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant()) : null;
+    }
+
+    // Virtual threads need Java 21; the build targets 17, so look the factory up at runtime
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.warn("outbox.virtual-threads is set but this JVM has no virtual threads; using a fixed pool");
+            return null;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.sutrini.service;
+
+import com.sutrini.model.OrderStatus;
+
+/**
+ * Published after an order has moved from one status to another. {@code eventId}
+ * identifies the outbox event, which may be delivered more than once; null when not
+ * published from the outbox.
+ */
+public record OrderStatusChangedEvent(String eventId, String orderId, String tenantId, OrderStatus from,
+        OrderStatus to) {
+}
@@ -0,0 +1,209 @@
+package com.sutrini.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.sutrini.model.Order;
+import com.sutrini.model.OrderEvent;
+import com.sutrini.model.OrderStatus;
+import com.sutrini.model.OrderStatusChange;
+import com.sutrini.security.TenantContext;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.SetOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Moves orders through the {@link OrderStatus} state machine. Every move is one
+ * conditional findAndModify that only matches while the order is in a status the
+ * target may be reached from (and, if given, at the expected version), so two
+ * workers scanning the same label cannot move an order backwards or apply a stale
+ * change. Only {@code status}, {@code statusHistory} and {@code version} are written,
+ * together with an outbox entry that {@link OrderOutboxDispatcher} later publishes as
+ * an {@link OrderStatusChangedEvent}.
+ */
+@Service
+public class OrderStatusService {
+
+    public static final String SYSTEM = "system";
+
+    static final int HISTORY_LIMIT = 50;
+
+    public enum Outcome { UPDATED, UNCHANGED, NOT_FOUND, INVALID_TRANSITION, VERSION_CONFLICT }
+
+    /**
+     * Outcome of one status change; {@code order} is only filled in by {@link #transition}.
+     */
+    public record Result(String id, Outcome outcome, OrderStatus status, Long version, String message,
+            @JsonIgnore Order order) {
+        public boolean isSuccess() {
+            return outcome == Outcome.UPDATED || outcome == Outcome.UNCHANGED;
+        }
+    }
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private StockService stockService;
+
+    /**
+     * Moves one order to {@code target}. With {@code expectedVersion} the change only
+     * applies if the order is still at that version. Moving an order to the status it
+     * already has is reported as {@link Outcome#UNCHANGED}, so a repeated scan is harmless.
+     */
+    public Result transition(String id, OrderStatus target, Long expectedVersion, String actor) {
+        return apply(id, target, expectedVersion, actor, true, true);
+    }
+
+    /**
+     * Like {@link #transition} without a version check, but only reads back status and
+     * version, for callers that do not need the order itself.
+     */
+    public Result transitionStatusOnly(String id, OrderStatus target, String actor) {
+        return apply(id, target, null, actor, false, true);
+    }
+
+    /**
+     * Like {@link #transition} for a caller that is trusted but has no tenant, such as
+     * a verified payment webhook: the order is found by id alone, whatever the request's
+     * tenant.
+     */
+    public Result transitionAnyTenant(String id, OrderStatus target, String actor) {
+        return apply(id, target, null, actor, true, false);
+    }
+
+    /**
+     * Moves every order to {@code target} independently; a conflict on one order does
+     * not affect the others. Results are in the order of the (de-duplicated) ids.
+     */
+    public List<Result> transitionAll(Collection<String> ids, OrderStatus target, String actor) {
+        List<Result> results = new ArrayList<>(ids.size());
+        for (String id : new LinkedHashSet<>(ids)) {
+            results.add(transitionStatusOnly(id, target, actor));
+        }
+        return results;
+    }
+
+    /**
+     * The write half of a status change, for callers that move orders with their own
+     * conditional query (e.g. the reservation expiry job). {@code alsoSet} is merged
+     * into the same {@code $set} stage; {@code "$$REMOVE"} unsets a field.
+     */
+    static AggregationUpdate statusUpdate(OrderStatus target, String actor, Document alsoSet) {
+        return statusUpdate(new OrderStatusChange(target, LocalDateTime.now(), actor), alsoSet);
+    }
+
+    // A pipeline update, so the outbox event can record the status being left ("$status")
+    // in the same write that changes it
+    private static AggregationUpdate statusUpdate(OrderStatusChange change, Document alsoSet) {
+        Date at = Date.from(change.getChangedAt().atZone(ZoneId.systemDefault()).toInstant());
+        Document historyEntry = new Document("status", change.getStatus().name())
+                .append("changedAt", at)
+                .append("changedBy", new Document("$literal", change.getChangedBy()));
+        Document event = new Document("_id", new ObjectId())
+                .append("type", OrderEvent.Type.STATUS_CHANGED.name())
+                .append("from", "$status")
+                .append("to", change.getStatus().name())
+                .append("createdAt", at);
+
+        Document set = new Document("status", change.getStatus().name())
+                .append("updatedAt", at)
+                .append("statusHistory", new Document("$slice", List.of(
+                        new Document("$concatArrays", List.of(ifNull("$statusHistory", List.of()), List.of(historyEntry))),
+                        -HISTORY_LIMIT)))
+                .append("outbox", new Document("$concatArrays", List.of(ifNull("$outbox", List.of()), List.of(event))))
+                .append("outboxDueAt", ifNull("$outboxDueAt", at));
+        set.putAll(alsoSet);
+        AggregationOperation stage = context -> new Document("$set", set);
+        // Set through the builder so MongoTemplate sees the version as written and does not
+        // add its own increment; orders from before versioning start counting at 1
+        AggregationExpression nextVersion = context -> new Document("$add", List.of(ifNull("$version", 0), 1));
+        return AggregationUpdate.from(List.of(stage)).set(SetOperation.set("version").toValue(nextVersion));
+    }
+
+    private static Document ifNull(String field, Object fallback) {
+        return new Document("$ifNull", List.of(field, fallback));
+    }
+
+    private Result apply(String id, OrderStatus target, Long expectedVersion, String actor, boolean fullOrder,
+            boolean tenantScoped) {
+        Criteria criteria = byId(id, tenantScoped).and("status").in(target.previous());
+        if (expectedVersion != null) {
+            criteria = criteria.and("version").is(expectedVersion);
+        }
+        Query query = new Query(criteria);
+        if (!fullOrder) {
+            query.fields().include("status", "version", "tenantId");
+        }
+
+        // Returns the previous version, brought up to date below
+        OrderStatusChange change = new OrderStatusChange(target, LocalDateTime.now(), actor);
+        Order order = mongoTemplate.findAndModify(query, statusUpdate(change, new Document()), Order.class);
+        if (order != null) {
+            applyLocally(order, change);
+            if (target == OrderStatus.CANCELLED && stockService.releaseForOrder(id)) {
+                // Releasing the stock was a second write to the order
+                order.setStockReserved(false);
+                order.setReservationExpiresAt(null);
+                order.setVersion(order.getVersion() + 1);
+            }
+            return result(id, Outcome.UPDATED, order, null, fullOrder);
+        }
+
+        // Nothing matched: read the order once to tell the caller why
+        Query current = new Query(byId(id, tenantScoped));
+        if (!fullOrder) {
+            current.fields().include("status", "version");
+        }
+        Order existing = mongoTemplate.findOne(current, Order.class);
+        if (existing == null) {
+            return new Result(id, Outcome.NOT_FOUND, null, null, "Order not found", null);
+        }
+        if (expectedVersion != null && !expectedVersion.equals(existing.getVersion())) {
+            return result(id, Outcome.VERSION_CONFLICT, existing,
+                    "Order was changed concurrently (now at version " + existing.getVersion() + ")", fullOrder);
+        }
+        if (existing.getStatus() == target) {
+            return result(id, Outcome.UNCHANGED, existing, null, fullOrder);
+        }
+        return result(id, Outcome.INVALID_TRANSITION, existing,
+                "Cannot move order from " + existing.getStatus() + " to " + target, fullOrder);
+    }
+
+    private static Criteria byId(String id, boolean tenantScoped) {
+        Criteria criteria = Criteria.where("id").is(id);
+        return tenantScoped ? TenantContext.scoped(criteria) : criteria;
+    }
+
+    // Brings the pre-update document in line with what the update wrote
+    private static void applyLocally(Order order, OrderStatusChange change) {
+        order.setStatus(change.getStatus());
+        order.setVersion(order.getVersion() != null ? order.getVersion() + 1 : 1);
+        order.setUpdatedAt(change.getChangedAt());
+        List<OrderStatusChange> history = order.getStatusHistory() != null
+                ? new ArrayList<>(order.getStatusHistory()) : new ArrayList<>();
+        history.add(change);
+        if (history.size() > HISTORY_LIMIT) {
+            history = new ArrayList<>(history.subList(history.size() - HISTORY_LIMIT, history.size()));
+        }
+        order.setStatusHistory(history);
+    }
+
+    private static Result result(String id, Outcome outcome, Order order, String message, boolean fullOrder) {
+        return new Result(id, outcome, order.getStatus(), order.getVersion(), message, fullOrder ? order : null);
+    }
+}
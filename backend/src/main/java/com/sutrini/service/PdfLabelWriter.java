@@ -0,0 +1,175 @@
+package com.sutrini.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Minimal streaming PDF writer for QR label sheets (A4, 3 x 8 labels per page).
+ * Every page is written as soon as it is complete; only the object offsets and
+ * page object numbers are retained until the cross-reference table at the end.
+ */
+final class PdfLabelWriter {
+
+    static final int COLUMNS = 3;
+    static final int ROWS = 8;
+    static final int LABELS_PER_PAGE = COLUMNS * ROWS;
+
+    private static final float PAGE_WIDTH = 595.28f;
+    private static final float PAGE_HEIGHT = 841.89f;
+    private static final float MARGIN = 18f;
+    private static final float QR_SIZE = 84f;
+
+    private static final int CATALOG = 1;
+    private static final int PAGES = 2;
+    private static final int FONT_REGULAR = 3;
+    private static final int FONT_BOLD = 4;
+
+    private final OutputStream out;
+    private long position;
+    private long[] offsets = new long[64];
+    private int nextObject = FONT_BOLD + 1;
+    private int[] pageObjects = new int[16];
+    private int pageCount;
+
+    PdfLabelWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    record Label(String orderId, String title, String caption, int modules, byte[] deflatedBitmap) {
+    }
+
+    void begin() throws IOException {
+        // Binary marker comment so transfer tools treat the file as binary
+        write("%PDF-1.4\n%\u00e2\u00e3\u00cf\u00d3\n");
+    }
+
+    void writePage(List<Label> labels) throws IOException {
+        float cellWidth = (PAGE_WIDTH - 2 * MARGIN) / COLUMNS;
+        float cellHeight = (PAGE_HEIGHT - 2 * MARGIN) / ROWS;
+
+        int[] images = new int[labels.size()];
+        for (int i = 0; i < labels.size(); i++) {
+            Label label = labels.get(i);
+            images[i] = startObject();
+            write("<< /Type /XObject /Subtype /Image /Width " + label.modules() + " /Height " + label.modules()
+                    + " /ColorSpace /DeviceGray /BitsPerComponent 1 /Filter /FlateDecode /Length "
+                    + label.deflatedBitmap().length + " >>\nstream\n");
+            writeBytes(label.deflatedBitmap());
+            write("\nendstream\nendobj\n");
+        }
+
+        StringBuilder content = new StringBuilder(labels.size() * 256);
+        for (int i = 0; i < labels.size(); i++) {
+            Label label = labels.get(i);
+            float x = MARGIN + (i % COLUMNS) * cellWidth;
+            float y = PAGE_HEIGHT - MARGIN - (i / COLUMNS + 1) * cellHeight;
+            float qrY = y + (cellHeight - QR_SIZE) / 2;
+            float textX = x + QR_SIZE + 6;
+            content.append("q ").append(QR_SIZE).append(" 0 0 ").append(QR_SIZE).append(' ')
+                    .append(x + 4).append(' ').append(qrY).append(" cm /Im").append(i).append(" Do Q\n");
+            content.append("BT /F2 13 Tf ").append(textX).append(' ').append(qrY + QR_SIZE - 22)
+                    .append(" Td (").append(escape(label.title(), 18)).append(") Tj ET\n");
+            content.append("BT /F1 6 Tf ").append(textX).append(' ').append(qrY + QR_SIZE - 34)
+                    .append(" Td (").append(escape(label.orderId(), 32)).append(") Tj ET\n");
+            content.append("BT /F1 8 Tf ").append(textX).append(' ').append(qrY + QR_SIZE - 48)
+                    .append(" Td (").append(escape(label.caption(), 24)).append(") Tj ET\n");
+        }
+        byte[] stream = content.toString().getBytes(StandardCharsets.ISO_8859_1);
+        int contents = startObject();
+        write("<< /Length " + stream.length + " >>\nstream\n");
+        writeBytes(stream);
+        write("\nendstream\nendobj\n");
+
+        StringBuilder xObjects = new StringBuilder();
+        for (int i = 0; i < images.length; i++) {
+            xObjects.append("/Im").append(i).append(' ').append(images[i]).append(" 0 R ");
+        }
+        int page = startObject();
+        write("<< /Type /Page /Parent " + PAGES + " 0 R /MediaBox [0 0 " + PAGE_WIDTH + " " + PAGE_HEIGHT
+                + "] /Resources << /Font << /F1 " + FONT_REGULAR + " 0 R /F2 " + FONT_BOLD + " 0 R >> /XObject << "
+                + xObjects + ">> >> /Contents " + contents + " 0 R >>\nendobj\n");
+
+        if (pageCount == pageObjects.length) {
+            pageObjects = Arrays.copyOf(pageObjects, pageCount * 2);
+        }
+        pageObjects[pageCount++] = page;
+        out.flush();
+    }
+
+    void finish() throws IOException {
+        if (pageCount == 0) {
+            // A PDF needs at least one page
+            writePage(List.of());
+        }
+
+        startObject(FONT_REGULAR);
+        write("<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica /Encoding /WinAnsiEncoding >>\nendobj\n");
+        startObject(FONT_BOLD);
+        write("<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica-Bold /Encoding /WinAnsiEncoding >>\nendobj\n");
+
+        StringBuilder kids = new StringBuilder();
+        for (int i = 0; i < pageCount; i++) {
+            kids.append(pageObjects[i]).append(" 0 R ");
+        }
+        startObject(PAGES);
+        write("<< /Type /Pages /Kids [" + kids + "] /Count " + pageCount + " >>\nendobj\n");
+        startObject(CATALOG);
+        write("<< /Type /Catalog /Pages " + PAGES + " 0 R >>\nendobj\n");
+
+        long xref = position;
+        StringBuilder table = new StringBuilder(20 * nextObject + 32);
+        table.append("xref\n0 ").append(nextObject).append("\n0000000000 65535 f \n");
+        for (int i = 1; i < nextObject; i++) {
+            table.append(String.format("%010d 00000 n \n", offsets[i]));
+        }
+        table.append("trailer\n<< /Size ").append(nextObject).append(" /Root ").append(CATALOG)
+                .append(" 0 R >>\nstartxref\n").append(xref).append("\n%%EOF\n");
+        write(table.toString());
+        out.flush();
+    }
+
+    private int startObject() throws IOException {
+        int number = nextObject++;
+        startObject(number);
+        return number;
+    }
+
+    private void startObject(int number) throws IOException {
+        if (number >= offsets.length) {
+            offsets = Arrays.copyOf(offsets, Math.max(offsets.length * 2, number + 1));
+        }
+        offsets[number] = position;
+        write(number + " 0 obj\n");
+    }
+
+    private void write(String text) throws IOException {
+        writeBytes(text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        out.write(bytes);
+        position += bytes.length;
+    }
+
+    private static String escape(String text, int maxLength) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder escaped = new StringBuilder(Math.min(text.length(), maxLength) + 8);
+        for (int i = 0; i < text.length() && i < maxLength; i++) {
+            char c = text.charAt(i);
+            if (c == '(' || c == ')' || c == '\\') {
+                escaped.append('\\').append(c);
+            } else if (c < 32 || c > 126) {
+                // Standard fonts only cover WinAnsi; keep the stream ASCII
+                escaped.append('?');
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+}
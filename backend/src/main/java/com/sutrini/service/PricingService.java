@@ -0,0 +1,67 @@
+package com.sutrini.service;
+
+import com.sutrini.model.Order;
+import com.sutrini.model.OrderItem;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Computes order totals from catalog prices. Client-supplied unit prices, product
+ * names and totals are never trusted.
+ */
+@Service
+public class PricingService {
+
+    @Autowired
+    private ProductPriceCache priceCache;
+
+    /**
+     * Fills in unit price and product name of every item from the catalog and sets
+     * the order total. Throws {@link IllegalArgumentException} for empty orders,
+     * non-positive quantities and unknown or inactive products, including products
+     * of another tenant.
+     */
+    public BigDecimal priceOrder(Order order) {
+        List<OrderItem> items = order.getItems();
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException("Order has no items");
+        }
+
+        Map<String, ProductPriceCache.PriceSnapshot> prices = priceCache.getAll(items.stream()
+                .map(OrderItem::getProductId)
+                .collect(Collectors.toSet()));
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (OrderItem item : items) {
+            if (item.getQuantity() <= 0) {
+                throw new IllegalArgumentException("Invalid quantity for product " + item.getProductId());
+            }
+            ProductPriceCache.PriceSnapshot price = prices.get(item.getProductId());
+            // The cache is shared by all tenants, so a product of another boutique is simply unknown here
+            if (price == null || !price.active() || price.basePrice() == null
+                    || !Objects.equals(price.tenantId(), order.getTenantId())) {
+                throw new IllegalArgumentException("Product not available: " + item.getProductId());
+            }
+            item.setUnitPrice(price.basePrice());
+            item.setProductName(price.name());
+            total = total.add(price.basePrice().multiply(BigDecimal.valueOf(item.getQuantity())));
+        }
+
+        order.setTotalAmount(total);
+        return total;
+    }
+
+    /**
+     * Order total in the smallest currency unit (paise), as Stripe expects it.
+     */
+    public long amountInMinorUnits(Order order) {
+        return order.getTotalAmount().movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+}
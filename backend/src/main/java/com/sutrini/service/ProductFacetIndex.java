@@ -0,0 +1,316 @@
+package com.sutrini.service;
+
+import com.sutrini.model.Product;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Facet posting lists for storefront browsing. Every active product gets a dense
+ * ordinal, and each facet value (category, size, color, price bucket) keeps a
+ * {@link BitSet} of the products that have it. Filtering is OR within a facet and
+ * AND across facets, i.e. bitset unions and intersections; counts are the
+ * cardinalities of those intersections. Counts for a facet ignore the selection
+ * in that same facet, so picking "Red" still shows how many products are Blue.
+ * Each tenant's products have their own bitset, which scopes every browse.
+ * Maintained incrementally from {@link CatalogService} events.
+ */
+@Component
+public class ProductFacetIndex implements CatalogListener {
+
+    public static final String CATEGORY = "category";
+    public static final String SIZE = "size";
+    public static final String COLOR = "color";
+    public static final String PRICE = "price";
+
+    private static final List<String> FACETS = List.of(CATEGORY, SIZE, COLOR, PRICE);
+
+    @Value("${catalog.facets.price-buckets:1000,2500,5000,10000,25000}")
+    private List<BigDecimal> priceBoundaries;
+
+    private List<String> priceBuckets;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Segment segment;
+    private volatile boolean ready;
+
+    /**
+     * Selected values per facet; an empty or null set leaves that facet unfiltered.
+     */
+    public record Selection(Set<String> categories, Set<String> sizes, Set<String> colors, Set<String> prices) {
+        Set<String> of(String facet) {
+            return switch (facet) {
+                case CATEGORY -> categories;
+                case SIZE -> sizes;
+                case COLOR -> colors;
+                default -> prices;
+            };
+        }
+    }
+
+    /**
+     * Matching products in catalog order, and per facet the value counts in display order.
+     */
+    public record Result(List<Product> products, Map<String, Map<String, Integer>> facets) {
+    }
+
+    @PostConstruct
+    void init() {
+        List<String> buckets = new ArrayList<>();
+        BigDecimal lower = BigDecimal.ZERO;
+        for (BigDecimal upper : priceBoundaries) {
+            buckets.add(lower.toPlainString() + "-" + upper.toPlainString());
+            lower = upper;
+        }
+        buckets.add(lower.toPlainString() + "+");
+        priceBuckets = List.copyOf(buckets);
+        segment = new Segment(16);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public void catalogLoaded(CatalogSnapshot snapshot) {
+        Segment loaded = build(snapshot.active());
+        lock.writeLock().lock();
+        try {
+            segment = loaded;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        ready = true;
+    }
+
+    @Override
+    public void productSaved(Product product) {
+        lock.writeLock().lock();
+        try {
+            segment.remove(product.getId());
+            if (product.isActive()) {
+                segment.add(product);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void productDeleted(String productId) {
+        lock.writeLock().lock();
+        try {
+            segment.remove(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Browse within one tenant's products; a null tenant browses all of them.
+     */
+    public Result browse(String tenantId, Selection selection) {
+        lock.readLock().lock();
+        try {
+            return segment.browse(tenantId, selection);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * One-off browse over an explicit product list, for when the index is not loaded.
+     */
+    public Result browse(Collection<Product> activeProducts, Selection selection) {
+        return build(activeProducts).browse(null, selection);
+    }
+
+    private Segment build(Collection<Product> products) {
+        Segment built = new Segment(products.size() + 16);
+        for (Product product : products) {
+            built.add(product);
+        }
+        return built;
+    }
+
+    private String priceBucket(BigDecimal price) {
+        if (price == null) {
+            return null;
+        }
+        for (int i = 0; i < priceBoundaries.size(); i++) {
+            if (price.compareTo(priceBoundaries.get(i)) < 0) {
+                return priceBuckets.get(i);
+            }
+        }
+        return priceBuckets.get(priceBuckets.size() - 1);
+    }
+
+    private final class Segment {
+        final Map<String, Integer> ordinals;
+        Product[] products;
+        final BitSet live = new BitSet();
+        final Map<String, BitSet> tenants = new HashMap<>();
+        // facet -> value -> products with that value
+        final Map<String, Map<String, BitSet>> postings = new HashMap<>();
+        int[] free = new int[16];
+        int freeCount;
+        int next;
+
+        Segment(int capacity) {
+            ordinals = new HashMap<>(capacity * 2);
+            products = new Product[capacity];
+            for (String facet : FACETS) {
+                postings.put(facet, new HashMap<>());
+            }
+        }
+
+        void add(Product product) {
+            int ordinal = freeCount > 0 ? free[--freeCount] : next++;
+            if (ordinal == products.length) {
+                products = Arrays.copyOf(products, ordinal * 2);
+            }
+            products[ordinal] = product;
+            ordinals.put(product.getId(), ordinal);
+            live.set(ordinal);
+            if (product.getTenantId() != null) {
+                tenants.computeIfAbsent(product.getTenantId(), t -> new BitSet()).set(ordinal);
+            }
+            forEachValue(product, (facet, value) ->
+                    postings.get(facet).computeIfAbsent(value, v -> new BitSet()).set(ordinal));
+        }
+
+        void remove(String productId) {
+            Integer ordinal = ordinals.remove(productId);
+            if (ordinal == null) {
+                return;
+            }
+            forEachValue(products[ordinal], (facet, value) -> {
+                Map<String, BitSet> values = postings.get(facet);
+                BitSet bits = values.get(value);
+                if (bits != null) {
+                    bits.clear(ordinal);
+                    if (bits.isEmpty()) {
+                        values.remove(value);
+                    }
+                }
+            });
+            live.clear(ordinal);
+            String tenant = products[ordinal].getTenantId();
+            BitSet tenantBits = tenant != null ? tenants.get(tenant) : null;
+            if (tenantBits != null) {
+                tenantBits.clear(ordinal);
+                if (tenantBits.isEmpty()) {
+                    tenants.remove(tenant);
+                }
+            }
+            products[ordinal] = null;
+            if (freeCount == free.length) {
+                free = Arrays.copyOf(free, freeCount * 2);
+            }
+            free[freeCount++] = ordinal;
+        }
+
+        Result browse(String tenantId, Selection selection) {
+            BitSet base = tenantId == null ? live : tenants.getOrDefault(tenantId, new BitSet());
+            // Union of the selected values per filtered facet
+            Map<String, BitSet> filters = new HashMap<>();
+            for (String facet : FACETS) {
+                Set<String> selected = selection.of(facet);
+                if (selected != null && !selected.isEmpty()) {
+                    BitSet union = new BitSet();
+                    for (String value : selected) {
+                        BitSet bits = postings.get(facet).get(value);
+                        if (bits != null) {
+                            union.or(bits);
+                        }
+                    }
+                    filters.put(facet, union);
+                }
+            }
+
+            Map<String, Map<String, Integer>> facets = new LinkedHashMap<>();
+            for (String facet : FACETS) {
+                BitSet scope = intersect(base, filters, facet);
+                Map<String, Integer> counts = facet.equals(PRICE) ? new LinkedHashMap<>() : new TreeMap<>();
+                if (facet.equals(PRICE)) {
+                    for (String bucket : priceBuckets) {
+                        counts.put(bucket, count(scope, postings.get(PRICE).get(bucket)));
+                    }
+                } else {
+                    for (Map.Entry<String, BitSet> value : postings.get(facet).entrySet()) {
+                        int count = count(scope, value.getValue());
+                        // Selected values stay visible even when nothing else matches them
+                        if (count > 0 || filters.containsKey(facet) && selection.of(facet).contains(value.getKey())) {
+                            counts.put(value.getKey(), count);
+                        }
+                    }
+                }
+                facets.put(facet, counts);
+            }
+
+            BitSet matches = intersect(base, filters, null);
+            List<Product> result = new ArrayList<>(matches.cardinality());
+            for (int ordinal = matches.nextSetBit(0); ordinal >= 0; ordinal = matches.nextSetBit(ordinal + 1)) {
+                result.add(products[ordinal]);
+            }
+            result.sort(CatalogSnapshot.DEFAULT_ORDER);
+            return new Result(result, facets);
+        }
+
+        // Products in `base` passing every filter except the one on `excluded`
+        private BitSet intersect(BitSet base, Map<String, BitSet> filters, String excluded) {
+            BitSet scope = (BitSet) base.clone();
+            for (Map.Entry<String, BitSet> filter : filters.entrySet()) {
+                if (!filter.getKey().equals(excluded)) {
+                    scope.and(filter.getValue());
+                }
+            }
+            return scope;
+        }
+
+        private int count(BitSet scope, BitSet values) {
+            if (values == null) {
+                return 0;
+            }
+            BitSet both = (BitSet) values.clone();
+            both.and(scope);
+            return both.cardinality();
+        }
+
+        private void forEachValue(Product product, BiConsumer<String, String> action) {
+            if (product.getCategory() != null) {
+                action.accept(CATEGORY, product.getCategory());
+            }
+            forEach(product.getAvailableSizes(), SIZE, action);
+            forEach(product.getAvailableColors(), COLOR, action);
+            String bucket = priceBucket(product.getBasePrice());
+            if (bucket != null) {
+                action.accept(PRICE, bucket);
+            }
+        }
+
+        private void forEach(Collection<String> values, String facet, BiConsumer<String, String> action) {
+            if (values != null) {
+                for (String value : values) {
+                    if (value != null) {
+                        action.accept(facet, value);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.sutrini.service;
+
+import com.sutrini.model.Product;
+import com.sutrini.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read-through cache of the price-relevant part of each product. Misses for a
+ * whole order are loaded with a single {@code findAllById}. Entries are dropped
+ * as {@link CatalogService} sees products change, which covers writes made by other
+ * instances and directly in the database; entries older than {@code pricing.cache.ttl}
+ * are reloaded regardless, e.g. while the catalog snapshot is disabled.
+ */
+@Component
+public class ProductPriceCache implements CatalogListener {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Value("${pricing.cache.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${pricing.cache.ttl:60000}")
+    private long ttl;
+
+    private final Map<String, Entry> snapshots = new ConcurrentHashMap<>();
+
+    private record Entry(PriceSnapshot snapshot, long loadedAt) {
+    }
+
+    public record PriceSnapshot(String id, String tenantId, String name, BigDecimal basePrice, boolean active) {
+        static PriceSnapshot of(Product product) {
+            return new PriceSnapshot(product.getId(), product.getTenantId(), product.getName(),
+                    product.getBasePrice(), product.isActive());
+        }
+    }
+
+    /**
+     * Snapshots for the given ids; ids of products that do not exist are absent from the result.
+     */
+    public Map<String, PriceSnapshot> getAll(Collection<String> productIds) {
+        Map<String, PriceSnapshot> result = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (String id : productIds) {
+            Entry entry = snapshots.get(id);
+            if (entry != null && now - entry.loadedAt() < ttl) {
+                result.put(id, entry.snapshot());
+            } else if (!result.containsKey(id)) {
+                missing.add(id);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            if (snapshots.size() + missing.size() > maxEntries) {
+                snapshots.clear();
+            }
+            for (Product product : productRepository.findAllById(missing)) {
+                PriceSnapshot snapshot = PriceSnapshot.of(product);
+                snapshots.put(product.getId(), new Entry(snapshot, now));
+                result.put(product.getId(), snapshot);
+            }
+        }
+        return result;
+    }
+
+    public void invalidate(String productId) {
+        snapshots.remove(productId);
+    }
+
+    public void invalidateAll() {
+        snapshots.clear();
+    }
+
+    @Override
+    public void catalogLoaded(CatalogSnapshot snapshot) {
+        invalidateAll();
+    }
+
+    @Override
+    public void productSaved(Product product) {
+        invalidate(product.getId());
+    }
+
+    @Override
+    public void productDeleted(String productId) {
+        invalidate(productId);
+    }
+}
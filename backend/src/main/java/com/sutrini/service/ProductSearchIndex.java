@@ -0,0 +1,370 @@
+package com.sutrini.service;
+
+import com.sutrini.model.Product;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process inverted index over the catalog for the storefront search box. Name,
+ * category, colors, sizes and description are tokenised (lower-cased, accents
+ * stripped) into weighted postings; the last query word also matches as a prefix,
+ * so results appear while the customer is still typing. Hits are ranked by the
+ * field weight of each matched term times its inverse document frequency.
+ * Maintained incrementally from {@link CatalogService} events.
+ */
+@Component
+public class ProductSearchIndex implements CatalogListener {
+
+    static final float NAME_WEIGHT = 3f;
+    static final float CATEGORY_WEIGHT = 2f;
+    static final float COLOR_WEIGHT = 1.5f;
+    static final float SIZE_WEIGHT = 1f;
+    static final float DESCRIPTION_WEIGHT = 1f;
+
+    // A prefix hit ranks below the complete word
+    private static final float PREFIX_FACTOR = 0.6f;
+
+    // Also keeps the per-document word counter within a byte
+    private static final int MAX_QUERY_WORDS = 16;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Segment segment = new Segment(16);
+    private volatile boolean ready;
+
+    public record Result(List<Product> products, int total) {
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public void catalogLoaded(CatalogSnapshot snapshot) {
+        // Build on the side so queries keep using the old index until the swap
+        Segment loaded = new Segment(snapshot.size() + 16);
+        for (Product product : snapshot.all()) {
+            loaded.add(product);
+        }
+
+        lock.writeLock().lock();
+        try {
+            segment = loaded;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        ready = true;
+    }
+
+    @Override
+    public void productSaved(Product product) {
+        lock.writeLock().lock();
+        try {
+            segment.remove(product.getId());
+            segment.add(product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void productDeleted(String productId) {
+        lock.writeLock().lock();
+        try {
+            segment.remove(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Products matching every word of {@code query} (the last one as a prefix), best
+     * match first, together with the total number of matches. Price bounds are
+     * inclusive; null filters are not applied. An empty query matches everything,
+     * ordered by name. With {@code limit > 0} only the best {@code limit} hits are
+     * ranked and returned. Only products of {@code tenantId} match, unless it is null.
+     */
+    public Result search(String tenantId, String query, BigDecimal minPrice, BigDecimal maxPrice, Boolean active, int limit) {
+        List<String> words = new ArrayList<>(tokenize(query));
+        if (words.size() > MAX_QUERY_WORDS) {
+            words = words.subList(0, MAX_QUERY_WORDS);
+        }
+
+        lock.readLock().lock();
+        try {
+            return segment.search(tenantId, words, minPrice, maxPrice, active, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text == null || text.isBlank()) {
+            return tokens;
+        }
+        String folded = isAscii(text) ? text : Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder token = new StringBuilder(16);
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                token.append(Character.toLowerCase(c));
+            } else if (!isMark(c) && token.length() > 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        if (token.length() > 0) {
+            tokens.add(token.toString());
+        }
+        return tokens;
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 127) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Combining accents left by NFD are dropped without splitting the word
+    private static boolean isMark(char c) {
+        int type = Character.getType(c);
+        return type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK
+                || type == Character.ENCLOSING_MARK;
+    }
+
+    /**
+     * Postings of one term: parallel arrays of document ordinals and weights.
+     */
+    private static final class Posting {
+        int[] documents = new int[4];
+        float[] weights = new float[4];
+        int size;
+
+        void add(int document, float weight) {
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            documents[size] = document;
+            weights[size] = weight;
+            size++;
+        }
+
+        void remove(int document) {
+            for (int i = 0; i < size; i++) {
+                if (documents[i] == document) {
+                    size--;
+                    documents[i] = documents[size];
+                    weights[i] = weights[size];
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * The index proper. Products are numbered with dense ordinals (reused after
+     * deletes) so per-query scores live in plain arrays instead of boxed maps.
+     */
+    private static final class Segment {
+        // Sorted so a prefix is a contiguous range of terms
+        final TreeMap<String, Posting> postings = new TreeMap<>();
+        final Map<String, Integer> ordinals;
+        Product[] products;
+        String[][] terms;
+        int[] free = new int[16];
+        int freeCount;
+        int next;
+
+        Segment(int capacity) {
+            ordinals = new HashMap<>(capacity * 2);
+            products = new Product[capacity];
+            terms = new String[capacity][];
+        }
+
+        void add(Product product) {
+            Map<String, Float> weights = new LinkedHashMap<>();
+            addField(weights, product.getName(), NAME_WEIGHT);
+            addField(weights, product.getCategory(), CATEGORY_WEIGHT);
+            addFields(weights, product.getAvailableColors(), COLOR_WEIGHT);
+            addFields(weights, product.getAvailableSizes(), SIZE_WEIGHT);
+            addField(weights, product.getDescription(), DESCRIPTION_WEIGHT);
+
+            int ordinal = freeCount > 0 ? free[--freeCount] : next++;
+            if (ordinal == products.length) {
+                products = Arrays.copyOf(products, ordinal * 2);
+                terms = Arrays.copyOf(terms, ordinal * 2);
+            }
+            products[ordinal] = product;
+            terms[ordinal] = weights.keySet().toArray(new String[0]);
+            ordinals.put(product.getId(), ordinal);
+            for (Map.Entry<String, Float> weight : weights.entrySet()) {
+                postings.computeIfAbsent(weight.getKey(), t -> new Posting()).add(ordinal, weight.getValue());
+            }
+        }
+
+        void remove(String productId) {
+            Integer ordinal = ordinals.remove(productId);
+            if (ordinal == null) {
+                return;
+            }
+            for (String term : terms[ordinal]) {
+                Posting posting = postings.get(term);
+                posting.remove(ordinal);
+                if (posting.size == 0) {
+                    postings.remove(term);
+                }
+            }
+            products[ordinal] = null;
+            terms[ordinal] = null;
+            if (freeCount == free.length) {
+                free = Arrays.copyOf(free, freeCount * 2);
+            }
+            free[freeCount++] = ordinal;
+        }
+
+        Result search(String tenantId, List<String> words, BigDecimal minPrice, BigDecimal maxPrice, Boolean active, int limit) {
+            float[] scores = new float[next];
+            int[] hits = new int[next];
+            int hitCount = 0;
+
+            if (words.isEmpty()) {
+                for (int ordinal = 0; ordinal < next; ordinal++) {
+                    if (products[ordinal] != null) {
+                        hits[hitCount++] = ordinal;
+                    }
+                }
+                return collect(hits, hitCount, scores, tenantId, minPrice, maxPrice, active, limit);
+            }
+
+            // matched[d] = number of leading query words document d has matched so far
+            byte[] matched = new byte[next];
+            float[] best = new float[next];
+            for (int w = 0; w < words.size(); w++) {
+                String word = words.get(w);
+                NavigableMap<String, Posting> range = w == words.size() - 1
+                        ? postings.subMap(word, true, word + Character.MAX_VALUE, false)
+                        : postings.subMap(word, true, word, true);
+                hitCount = 0;
+                for (Map.Entry<String, Posting> entry : range.entrySet()) {
+                    Posting posting = entry.getValue();
+                    float idf = (float) Math.log(1 + (double) ordinals.size() / posting.size);
+                    float factor = entry.getKey().length() == word.length() ? idf : idf * PREFIX_FACTOR;
+                    for (int i = 0; i < posting.size; i++) {
+                        int document = posting.documents[i];
+                        if (matched[document] != w) {
+                            continue;
+                        }
+                        // A word expanding to several terms scores its best term
+                        float score = posting.weights[i] * factor;
+                        if (best[document] == 0f) {
+                            hits[hitCount++] = document;
+                            best[document] = score;
+                        } else if (score > best[document]) {
+                            best[document] = score;
+                        }
+                    }
+                }
+                if (hitCount == 0) {
+                    return new Result(List.of(), 0);
+                }
+                for (int i = 0; i < hitCount; i++) {
+                    int document = hits[i];
+                    scores[document] += best[document];
+                    best[document] = 0f;
+                    matched[document]++;
+                }
+            }
+            // After the last word, hits holds exactly the documents that matched every word
+            return collect(hits, hitCount, scores, tenantId, minPrice, maxPrice, active, limit);
+        }
+
+        private Result collect(int[] hits, int hitCount, float[] scores, String tenantId, BigDecimal minPrice,
+                BigDecimal maxPrice, Boolean active, int limit) {
+            Comparator<Integer> ranking = Comparator.<Integer>comparingDouble(ordinal -> -scores[ordinal])
+                    .thenComparing(ordinal -> products[ordinal], CatalogSnapshot.DEFAULT_ORDER);
+
+            int total = 0;
+            List<Integer> ranked;
+            if (limit > 0) {
+                // Keep only the best `limit` hits; the heap's head is the worst of them
+                PriorityQueue<Integer> top = new PriorityQueue<>(limit, ranking.reversed());
+                for (int i = 0; i < hitCount; i++) {
+                    int ordinal = hits[i];
+                    if (matches(products[ordinal], tenantId, minPrice, maxPrice, active)) {
+                        total++;
+                        if (top.size() < limit) {
+                            top.offer(ordinal);
+                        } else if (ranking.compare(ordinal, top.peek()) < 0) {
+                            top.poll();
+                            top.offer(ordinal);
+                        }
+                    }
+                }
+                ranked = new ArrayList<>(top);
+            } else {
+                ranked = new ArrayList<>(hitCount);
+                for (int i = 0; i < hitCount; i++) {
+                    if (matches(products[hits[i]], tenantId, minPrice, maxPrice, active)) {
+                        ranked.add(hits[i]);
+                    }
+                }
+                total = ranked.size();
+            }
+            ranked.sort(ranking);
+
+            List<Product> results = new ArrayList<>(ranked.size());
+            for (int ordinal : ranked) {
+                results.add(products[ordinal]);
+            }
+            return new Result(results, total);
+        }
+
+        private static boolean matches(Product product, String tenantId, BigDecimal minPrice, BigDecimal maxPrice,
+                Boolean active) {
+            if (tenantId != null && !tenantId.equals(product.getTenantId())) {
+                return false;
+            }
+            if (active != null && product.isActive() != active) {
+                return false;
+            }
+            BigDecimal price = product.getBasePrice();
+            if (minPrice != null && (price == null || price.compareTo(minPrice) < 0)) {
+                return false;
+            }
+            return maxPrice == null || (price != null && price.compareTo(maxPrice) <= 0);
+        }
+
+        private static void addFields(Map<String, Float> weights, Collection<String> values, float weight) {
+            if (values != null) {
+                addField(weights, String.join(" ", values), weight);
+            }
+        }
+
+        // A term found in several fields scores the sum of their weights, but each field counts once
+        private static void addField(Map<String, Float> weights, String text, float weight) {
+            for (String token : tokenize(text)) {
+                weights.merge(token, weight, Float::sum);
+            }
+        }
+    }
+}
@@ -1,25 +1,114 @@
 package com.sutrini.service;
 
-import com.google.zxing.BarcodeFormat;
-import com.google.zxing.client.j2se.MatrixToImageWriter;
+import com.google.zxing.WriterException;
 import com.google.zxing.common.BitMatrix;
-import com.google.zxing.qrcode.QRCodeWriter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayOutputStream;
-import java.util.Base64;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class QRCodeService {
 
-    public String generateQRCodeImage(String text, int width, int height) throws Exception {
-        QRCodeWriter qrCodeWriter = new QRCodeWriter();
-        BitMatrix bitMatrix = qrCodeWriter.encode(text, BarcodeFormat.QR_CODE, width, height);
+    /**
+     * A QR code as {@code modules} x {@code modules} bits, deflated, for {@link PdfLabelWriter}.
+     */
+    record LabelCode(int modules, byte[] deflatedBitmap) {
+    }
+
+    @Value("${qr.cache.max-entries:1000}")
+    private int maxCachedImages;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Encoding plus rendering of one image, by output format
+    private Timer pngRender;
+    private Timer svgRender;
+    private Timer labelRender;
+    private Counter cacheHits;
+    private Counter cacheMisses;
+
+    // LRU of rendered PNGs keyed by content and size; access-ordered, so guarded by its own monitor
+    private final Map<String, byte[]> pngCache = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+            return size() > maxCachedImages;
+        }
+    };
+
+    @PostConstruct
+    void init() {
+        pngRender = renderTimer("png");
+        svgRender = renderTimer("svg");
+        labelRender = renderTimer("label");
+        cacheHits = cacheCounter("hit");
+        cacheMisses = cacheCounter("miss");
+    }
+
+    /**
+     * Square PNG for the given content, served from the LRU when it was rendered before.
+     * Callers must not modify the returned array.
+     */
+    public byte[] getPng(String text, int size) throws WriterException, IOException {
+        String key = size + ":" + text;
+        byte[] png;
+        synchronized (pngCache) {
+            png = pngCache.get(key);
+        }
+        if (png != null) {
+            cacheHits.increment();
+            return png;
+        }
+        cacheMisses.increment();
 
-        ByteArrayOutputStream pngOutputStream = new ByteArrayOutputStream();
-        MatrixToImageWriter.writeToStream(bitMatrix, "PNG", pngOutputStream);
-        byte[] pngData = pngOutputStream.toByteArray();
+        // Render outside the lock; a concurrent miss for the same key just renders twice
+        long start = System.nanoTime();
+        png = QrImageEncoder.toPng(QrImageEncoder.encode(text), size);
+        pngRender.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        synchronized (pngCache) {
+            pngCache.put(key, png);
+        }
+        return png;
+    }
+
+    public void writeSvg(String text, int size, OutputStream out) throws WriterException, IOException {
+        long start = System.nanoTime();
+        QrImageEncoder.writeSvg(QrImageEncoder.encode(text), size, out);
+        svgRender.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * The module matrix of {@code text} as the deflated 1-bit bitmap a PDF label embeds.
+     */
+    LabelCode getLabelCode(String text) throws WriterException {
+        long start = System.nanoTime();
+        BitMatrix modules = QrImageEncoder.encode(text);
+        LabelCode code = new LabelCode(modules.getWidth(), QrImageEncoder.toDeflatedBitmap(modules));
+        labelRender.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return code;
+    }
+
+    private Timer renderTimer(String format) {
+        return Timer.builder("sutrini.qr.render")
+                .description("Encoding and rendering of one QR image")
+                .tag("format", format)
+                .register(meterRegistry);
+    }
 
-        return Base64.getEncoder().encodeToString(pngData);
+    private Counter cacheCounter(String result) {
+        return Counter.builder("sutrini.qr.cache")
+                .description("Lookups in the rendered PNG cache")
+                .tag("result", result)
+                .register(meterRegistry);
     }
 }
@@ -0,0 +1,277 @@
+package com.sutrini.service;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Renders QR codes straight from the module matrix into a 1-bit grayscale PNG or an
+ * SVG path, bypassing BufferedImage and ImageIO. Scratch buffers, the Deflater and
+ * the CRC live in pooled {@link Scratch} instances, so steady-state rendering only
+ * allocates the module matrix itself.
+ */
+final class QrImageEncoder {
+
+    private static final byte[] PNG_SIGNATURE = { (byte) 137, 80, 78, 71, 13, 10, 26, 10 };
+    private static final byte[] IHDR = "IHDR".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IDAT = "IDAT".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IEND = "IEND".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int MAX_POOLED = Runtime.getRuntime().availableProcessors() * 2;
+
+    // QRCodeWriter keeps no state between calls
+    private static final QRCodeWriter WRITER = new QRCodeWriter();
+
+    private static final Queue<Scratch> POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger POOLED = new AtomicInteger();
+
+    private QrImageEncoder() {
+    }
+
+    /**
+     * Encodes the content at one pixel per module, quiet zone included.
+     */
+    static BitMatrix encode(String content) throws WriterException {
+        return WRITER.encode(content, BarcodeFormat.QR_CODE, 0, 0);
+    }
+
+    /**
+     * Renders a {@code size}x{@code size} PNG (or the matrix size, if that is larger),
+     * scaling modules by an integer factor and centring them like ZXing does.
+     */
+    static byte[] toPng(BitMatrix modules, int size) throws IOException {
+        Scratch scratch = acquire();
+        try {
+            int length = deflatePng(modules, size, scratch);
+            SizedOutput out = new SizedOutput(PNG_SIGNATURE.length + 3 * 12 + 13 + length);
+            writePng(out, scratch, imageSize(modules, size), length);
+            return out.bytes;
+        } finally {
+            release(scratch);
+        }
+    }
+
+    /**
+     * Writes the matrix as an SVG path of horizontal runs, one user unit per module.
+     */
+    static void writeSvg(BitMatrix modules, int size, OutputStream out) throws IOException {
+        int width = modules.getWidth();
+        int height = modules.getHeight();
+        StringBuilder svg = new StringBuilder(64 + width * height / 2);
+        svg.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(size)
+                .append("\" height=\"").append(size)
+                .append("\" viewBox=\"0 0 ").append(width).append(' ').append(height)
+                .append("\" shape-rendering=\"crispEdges\"><rect width=\"100%\" height=\"100%\" fill=\"#fff\"/><path d=\"");
+        for (int y = 0; y < height; y++) {
+            int x = 0;
+            while (x < width) {
+                if (!modules.get(x, y)) {
+                    x++;
+                    continue;
+                }
+                int start = x;
+                while (x < width && modules.get(x, y)) {
+                    x++;
+                }
+                svg.append('M').append(start).append(' ').append(y)
+                        .append('h').append(x - start).append("v1h-").append(x - start).append('z');
+            }
+        }
+        svg.append("\"/></svg>");
+        out.write(svg.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Deflated 1-bit bitmap of the matrix at one pixel per module, rows padded to whole
+     * bytes and 1 = white. This is the sample layout of a PDF DeviceGray image XObject.
+     */
+    static byte[] toDeflatedBitmap(BitMatrix modules) {
+        Scratch scratch = acquire();
+        try {
+            int width = modules.getWidth();
+            int height = modules.getHeight();
+            int rowBytes = (width + 7) / 8;
+            byte[] raw = scratch.raw(rowBytes * height);
+            Arrays.fill(raw, 0, rowBytes * height, (byte) 0xFF);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    if (modules.get(x, y)) {
+                        raw[y * rowBytes + (x >> 3)] &= (byte) ~(0x80 >>> (x & 7));
+                    }
+                }
+            }
+            int length = deflate(scratch, raw, rowBytes * height);
+            return Arrays.copyOf(scratch.compressed, length);
+        } finally {
+            release(scratch);
+        }
+    }
+
+    static int imageSize(BitMatrix modules, int size) {
+        return Math.max(size, Math.max(modules.getWidth(), modules.getHeight()));
+    }
+
+    private static int deflatePng(BitMatrix modules, int size, Scratch scratch) {
+        int imageSize = imageSize(modules, size);
+        int moduleCount = modules.getWidth();
+        int scale = Math.max(1, imageSize / moduleCount);
+        int offset = (imageSize - moduleCount * scale) / 2;
+        int rowBytes = 1 + (imageSize + 7) / 8;
+        byte[] raw = scratch.raw(rowBytes * imageSize);
+
+        // Rows start all white (1 bits in 1-bit grayscale); filter type byte 0 = None
+        Arrays.fill(raw, 0, rowBytes * imageSize, (byte) 0xFF);
+        for (int row = 0; row < imageSize; row++) {
+            raw[row * rowBytes] = 0;
+        }
+
+        for (int moduleY = 0; moduleY < modules.getHeight(); moduleY++) {
+            int firstRow = offset + moduleY * scale;
+            int base = firstRow * rowBytes + 1;
+            for (int moduleX = 0; moduleX < moduleCount; moduleX++) {
+                if (!modules.get(moduleX, moduleY)) {
+                    continue;
+                }
+                int x = offset + moduleX * scale;
+                for (int end = x + scale; x < end; x++) {
+                    raw[base + (x >> 3)] &= (byte) ~(0x80 >>> (x & 7));
+                }
+            }
+            // Every module is `scale` pixel rows tall
+            for (int copy = 1; copy < scale; copy++) {
+                System.arraycopy(raw, firstRow * rowBytes, raw, (firstRow + copy) * rowBytes, rowBytes);
+            }
+        }
+
+        return deflate(scratch, raw, rowBytes * imageSize);
+    }
+
+    private static int deflate(Scratch scratch, byte[] raw, int rawLength) {
+        Deflater deflater = scratch.deflater;
+        deflater.reset();
+        deflater.setInput(raw, 0, rawLength);
+        deflater.finish();
+        int length = 0;
+        byte[] compressed = scratch.compressed;
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                compressed = scratch.growCompressed();
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+        return length;
+    }
+
+    private static void writePng(OutputStream out, Scratch scratch, int imageSize, int idatLength)
+            throws IOException {
+        out.write(PNG_SIGNATURE);
+
+        byte[] header = scratch.header;
+        putInt(header, 0, imageSize);
+        putInt(header, 4, imageSize);
+        header[8] = 1; // bit depth
+        header[9] = 0; // grayscale
+        header[10] = 0; // deflate
+        header[11] = 0; // adaptive filtering
+        header[12] = 0; // no interlace
+        writeChunk(out, scratch, IHDR, header, 13);
+        writeChunk(out, scratch, IDAT, scratch.compressed, idatLength);
+        writeChunk(out, scratch, IEND, header, 0);
+    }
+
+    private static void writeChunk(OutputStream out, Scratch scratch, byte[] type, byte[] data, int length)
+            throws IOException {
+        byte[] word = scratch.word;
+        putInt(word, 0, length);
+        out.write(word, 0, 4);
+        out.write(type);
+        out.write(data, 0, length);
+
+        CRC32 crc = scratch.crc;
+        crc.reset();
+        crc.update(type);
+        crc.update(data, 0, length);
+        putInt(word, 0, (int) crc.getValue());
+        out.write(word, 0, 4);
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    private static Scratch acquire() {
+        Scratch scratch = POOL.poll();
+        if (scratch == null) {
+            return new Scratch();
+        }
+        POOLED.decrementAndGet();
+        return scratch;
+    }
+
+    private static void release(Scratch scratch) {
+        if (POOLED.incrementAndGet() <= MAX_POOLED) {
+            POOL.offer(scratch);
+        } else {
+            POOLED.decrementAndGet();
+            scratch.deflater.end();
+        }
+    }
+
+    private static final class Scratch {
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        final CRC32 crc = new CRC32();
+        final byte[] header = new byte[13];
+        final byte[] word = new byte[4];
+        byte[] raw = new byte[8 * 1024];
+        byte[] compressed = new byte[4 * 1024];
+
+        byte[] raw(int length) {
+            if (raw.length < length) {
+                raw = new byte[length];
+            }
+            return raw;
+        }
+
+        byte[] growCompressed() {
+            compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            return compressed;
+        }
+    }
+
+    /**
+     * Exact-size byte sink, so a cached PNG is not copied out of a growable buffer.
+     */
+    private static final class SizedOutput extends OutputStream {
+        final byte[] bytes;
+        int position;
+
+        SizedOutput(int size) {
+            this.bytes = new byte[size];
+        }
+
+        @Override
+        public void write(int b) {
+            bytes[position++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            System.arraycopy(b, off, bytes, position, len);
+            position += len;
+        }
+    }
+}
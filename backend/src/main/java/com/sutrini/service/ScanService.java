@@ -0,0 +1,139 @@
+package com.sutrini.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.sutrini.dto.ScanRequest;
+import com.sutrini.model.OrderStatus;
+import com.sutrini.security.TenantContext;
+import jakarta.annotation.PostConstruct;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Production floor scans. Each station is bound to the status its scans move an order
+ * to ({@code scan.stations}, e.g. {@code quality=QUALITY_CHECK}), so a scan is a
+ * single conditional update through {@link OrderStatusService} that reads back only
+ * status and version. Scans carry a client-generated key: results are remembered in
+ * a bounded LRU, so a scanner retrying after a timeout or uploading its offline
+ * buffer twice gets the first answer back without touching the database.
+ */
+@Service
+public class ScanService {
+
+    public static final String PAYLOAD_PREFIX = "ORDER:";
+
+    @Value("${scan.stations:production=IN_PRODUCTION,quality=QUALITY_CHECK,dispatch=SHIPPED,delivery=DELIVERED}")
+    private List<String> stationConfig;
+
+    @Value("${scan.idempotency.max-entries:50000}")
+    private int maxRememberedScans;
+
+    @Autowired
+    private OrderStatusService orderStatusService;
+
+    private Map<String, OrderStatus> stations;
+
+    private final Map<String, ScanResult> remembered = Collections.synchronizedMap(
+            new LinkedHashMap<>(1024, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ScanResult> eldest) {
+                    return size() > maxRememberedScans;
+                }
+            });
+
+    /**
+     * What a handheld scanner needs to show: the order, its status now, and whether the scan took.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record ScanResult(String key, String id, OrderStatusService.Outcome outcome, OrderStatus status,
+            String message) {
+    }
+
+    @PostConstruct
+    void init() {
+        Map<String, OrderStatus> parsed = new HashMap<>();
+        for (String entry : stationConfig) {
+            int separator = entry.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalStateException("Invalid scan.stations entry: " + entry);
+            }
+            parsed.put(entry.substring(0, separator).trim(), OrderStatus.valueOf(entry.substring(separator + 1).trim()));
+        }
+        stations = Map.copyOf(parsed);
+    }
+
+    public Map<String, OrderStatus> getStations() {
+        return stations;
+    }
+
+    /**
+     * Applies one scan. Throws {@link IllegalArgumentException} for an unknown station
+     * or a payload that is not an order QR code.
+     */
+    public ScanResult scan(ScanRequest request, String actor) {
+        OrderStatus target = stations.get(request.getStation());
+        if (target == null) {
+            throw new IllegalArgumentException("Unknown station: " + request.getStation());
+        }
+        String orderId = orderId(request.getPayload());
+
+        String key = request.getKey() != null ? TenantContext.current() + ":" + request.getKey() : null;
+        if (key != null) {
+            ScanResult previous = remembered.get(key);
+            if (previous != null) {
+                return previous;
+            }
+        }
+
+        OrderStatusService.Result result = orderStatusService.transitionStatusOnly(orderId, target, actor);
+        ScanResult scanResult = new ScanResult(request.getKey(), orderId, result.outcome(), result.status(),
+                result.message());
+        if (key != null) {
+            remembered.put(key, scanResult);
+        }
+        return scanResult;
+    }
+
+    /**
+     * Applies a buffered batch in the order the scans happened on the device; results
+     * are returned in request order. A bad scan is reported in its result and does not
+     * stop the rest of the batch.
+     */
+    public List<ScanResult> scanAll(List<ScanRequest> requests, String actor) {
+        List<Integer> order = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparing(i -> requests.get(i).getScannedAt(),
+                Comparator.nullsLast(Comparator.<Long>naturalOrder())));
+
+        ScanResult[] results = new ScanResult[requests.size()];
+        for (int i : order) {
+            ScanRequest request = requests.get(i);
+            try {
+                results[i] = scan(request, actor);
+            } catch (IllegalArgumentException e) {
+                results[i] = new ScanResult(request.getKey(), null, null, null, e.getMessage());
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    static String orderId(String payload) {
+        if (payload == null || !payload.startsWith(PAYLOAD_PREFIX)
+                || !ObjectId.isValid(payload.substring(PAYLOAD_PREFIX.length()))) {
+            throw new IllegalArgumentException("Not an order QR code");
+        }
+        return payload.substring(PAYLOAD_PREFIX.length());
+    }
+}
@@ -0,0 +1,172 @@
+package com.sutrini.service;
+
+import com.sutrini.model.Order;
+import com.sutrini.model.OrderItem;
+import com.sutrini.model.OrderStatus;
+import com.sutrini.model.Product;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Stock reservations against {@code Product.stockQuantity}. Every change is a single
+ * conditional {@code $inc} on the product document, so concurrent checkouts and admin
+ * adjustments never lose updates and stock never goes negative. Products without a
+ * stock quantity are not stock-tracked and are never reserved.
+ */
+@Service
+public class StockService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockService.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${stock.reservation.ttl-minutes:30}")
+    private long reservationTtlMinutes;
+
+    @Value("${stock.reservation.expiry-batch:500}")
+    private int expiryBatch;
+
+    // Off until payments are confirmed (Stripe webhook), or every unpaid order would be cancelled
+    @Value("${stock.reservation.expiry-enabled:false}")
+    private boolean expiryEnabled;
+
+    /**
+     * Atomically takes {@code quantity} units off the product if at least that many
+     * are in stock. Returns false when there is not enough stock (or no such product).
+     */
+    public boolean tryReserve(String productId, int quantity) {
+        Query query = new Query(Criteria.where("id").is(productId).and("stockQuantity").gte(quantity));
+        return mongoTemplate.updateFirst(query, stockUpdate(-quantity), Product.class).getModifiedCount() == 1;
+    }
+
+    public void release(String productId, int quantity) {
+        Query query = new Query(Criteria.where("id").is(productId).and("stockQuantity").ne(null));
+        mongoTemplate.updateFirst(query, stockUpdate(quantity), Product.class);
+    }
+
+    /**
+     * A relative stock change. MongoTemplate increments the product version on the same write.
+     */
+    public static Update stockUpdate(int delta) {
+        return new Update().inc("stockQuantity", delta).set("updatedAt", LocalDateTime.now());
+    }
+
+    /**
+     * Reserves stock for every item of the order and marks it as holding a reservation
+     * that expires if the order is still unpaid after the configured TTL. If any item
+     * cannot be reserved the units already taken are put back and
+     * {@link InsufficientStockException} is thrown; the order is left untouched.
+     */
+    public void reserve(Order order) {
+        List<Map.Entry<String, Integer>> reserved = new ArrayList<>();
+        try {
+            for (Map.Entry<String, Integer> line : quantitiesByProduct(order).entrySet()) {
+                if (tryReserve(line.getKey(), line.getValue())) {
+                    reserved.add(line);
+                } else if (!isUntracked(line.getKey())) {
+                    throw new InsufficientStockException(line.getKey());
+                }
+            }
+        } catch (RuntimeException e) {
+            // Compensate: give back what this order already took
+            reserved.forEach(line -> release(line.getKey(), line.getValue()));
+            throw e;
+        }
+
+        order.setStockReserved(true);
+        order.setReservationExpiresAt(LocalDateTime.now().plusMinutes(reservationTtlMinutes));
+    }
+
+    /**
+     * Returns the stock held by an order that was never persisted (e.g. its insert failed).
+     */
+    public void release(Order order) {
+        if (order.isStockReserved()) {
+            quantitiesByProduct(order).forEach(this::release);
+            order.setStockReserved(false);
+        }
+    }
+
+    /**
+     * Releases the reservation of a stored order exactly once, however many callers race
+     * on it: the flag is flipped atomically and only the caller that flipped it puts
+     * the stock back. Returns true if stock was released.
+     */
+    public boolean releaseForOrder(String orderId) {
+        Query query = new Query(Criteria.where("id").is(orderId).and("stockReserved").is(true));
+        query.fields().include("items.productId", "items.quantity");
+        Order order = mongoTemplate.findAndModify(query,
+                new Update().set("stockReserved", false).unset("reservationExpiresAt")
+                        .set("updatedAt", LocalDateTime.now()), Order.class);
+        if (order == null) {
+            return false;
+        }
+        quantitiesByProduct(order).forEach(this::release);
+        return true;
+    }
+
+    /**
+     * Cancels PENDING orders whose reservation has expired and returns their stock.
+     * Each order is claimed with one findAndModify, so several instances can run this
+     * concurrently without double-releasing. Only runs with
+     * {@code stock.reservation.expiry-enabled=true}: orders leave PENDING when the Stripe
+     * webhook confirms their payment, so without the webhook every order would expire.
+     */
+    @Scheduled(fixedDelayString = "${stock.reservation.expiry-interval:60000}")
+    public void releaseExpiredReservations() {
+        if (!expiryEnabled) {
+            return;
+        }
+        Query query = new Query(Criteria.where("status").is(OrderStatus.PENDING)
+                .and("stockReserved").is(true)
+                .and("reservationExpiresAt").lt(LocalDateTime.now()));
+        query.fields().include("items.productId", "items.quantity");
+        AggregationUpdate update = OrderStatusService.statusUpdate(OrderStatus.CANCELLED, OrderStatusService.SYSTEM,
+                new Document("stockReserved", false).append("reservationExpiresAt", "$$REMOVE"));
+
+        int released = 0;
+        Order order;
+        while (released < expiryBatch
+                && (order = mongoTemplate.findAndModify(query, update, FindAndModifyOptions.none(), Order.class)) != null) {
+            quantitiesByProduct(order).forEach(this::release);
+            released++;
+        }
+        if (released > 0) {
+            logger.info("Cancelled {} unpaid orders and released their stock", released);
+        }
+    }
+
+    private boolean isUntracked(String productId) {
+        return mongoTemplate.exists(new Query(Criteria.where("id").is(productId).and("stockQuantity").is(null)),
+                Product.class);
+    }
+
+    // Sorted so that concurrent multi-item orders touch products in the same order
+    private static Map<String, Integer> quantitiesByProduct(Order order) {
+        Map<String, Integer> quantities = new TreeMap<>();
+        if (order.getItems() != null) {
+            for (OrderItem item : order.getItems()) {
+                quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+            }
+        }
+        return quantities;
+    }
+}
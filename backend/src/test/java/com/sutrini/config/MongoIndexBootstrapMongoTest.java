@@ -0,0 +1,43 @@
+package com.sutrini.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Against a real MongoDB with the declared indexes created, every repository finder
+ * must be answered from an index rather than a collection scan. Skipped when Docker
+ * is not available.
+ */
+@DataMongoTest
+@Import(MongoIndexBootstrap.class)
+@Testcontainers(disabledWithoutDocker = true)
+class MongoIndexBootstrapMongoTest {
+
+    @Container
+    @ServiceConnection
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:7.0");
+
+    @Autowired
+    private MongoIndexBootstrap bootstrap;
+
+    @Test
+    void noFinderScansTheCollection() {
+        bootstrap.run(null);
+
+        Map<String, Set<String>> plans = bootstrap.queryPlans();
+
+        assertThat(plans).isNotEmpty();
+        plans.forEach((finder, stages) -> assertThat(stages).as(finder).isNotEmpty().doesNotContain("COLLSCAN"));
+    }
+}
@@ -0,0 +1,70 @@
+package com.sutrini.config;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.Tag;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.data.repository.core.RepositoryInformation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Mongo command timers are tagged with the repository method that sent the command,
+ * and only for the duration of that call.
+ */
+class RepositoryCommandTagsProviderTest {
+
+    private final RepositoryCommandTagsProvider provider = new RepositoryCommandTagsProvider();
+
+    interface UserRepository {
+        List<Tag> findByEmail(String email);
+    }
+
+    private List<Tag> tags() {
+        CommandSucceededEvent event = new CommandSucceededEvent(null, 1, 1,
+                new ConnectionDescription(new ServerId(new ClusterId(), new ServerAddress())), "sutrini", "find",
+                new BsonDocument(), 1000);
+        List<Tag> tags = new ArrayList<>();
+        provider.commandTags(event).forEach(tags::add);
+        return tags;
+    }
+
+    private static String origin(List<Tag> tags) {
+        return tags.stream().filter(tag -> tag.getKey().equals("origin")).map(Tag::getValue).findFirst().orElse(null);
+    }
+
+    private UserRepository repository(Supplier<List<Tag>> body) {
+        ProxyFactory factory = new ProxyFactory((UserRepository) email -> body.get());
+        factory.addInterface(UserRepository.class);
+        RepositoryInformation information = mock(RepositoryInformation.class);
+        when(information.getRepositoryInterface()).thenAnswer(invocation -> UserRepository.class);
+        RepositoryCommandTagsProvider.originTracker().postProcess(factory, information);
+        return (UserRepository) factory.getProxy();
+    }
+
+    @Test
+    void commandsAreTaggedWithTheRepositoryMethod() {
+        UserRepository repository = repository(this::tags);
+
+        assertThat(origin(repository.findByEmail("priya@example.com"))).isEqualTo("UserRepository.findByEmail");
+    }
+
+    @Test
+    void commandsOutsideARepositoryCallHaveNoOrigin() {
+        repository(this::tags).findByEmail("priya@example.com");
+
+        assertThat(origin(tags())).isEqualTo(RepositoryCommandTagsProvider.NO_REPOSITORY);
+        assertThat(tags()).extracting(Tag::getKey).contains("command");
+    }
+}
@@ -0,0 +1,196 @@
+package com.sutrini.controller;
+
+import com.sutrini.dto.JwtResponse;
+import com.sutrini.dto.RefreshTokenRequest;
+import com.sutrini.model.RevokedUser;
+import com.sutrini.model.Role;
+import com.sutrini.model.UsedRefreshToken;
+import com.sutrini.model.User;
+import com.sutrini.repository.UserRepository;
+import com.sutrini.security.JwtUtil;
+import com.sutrini.security.TokenRevocationList;
+import com.sutrini.security.UserPrincipal;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Refresh token rotation against an in-memory stand-in for the two MongoDB
+ * collections, with the same insert-if-absent semantics as their unique {@code _id}.
+ */
+class AuthControllerRefreshTest {
+
+    private final Map<String, UsedRefreshToken> usedTokens = new ConcurrentHashMap<>();
+    private final Map<String, RevokedUser> revokedUsers = new ConcurrentHashMap<>();
+
+    private JwtUtil jwtUtil;
+    private AuthController controller;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", "0123456789abcdef0123456789abcdef0123456789abcdef");
+        ReflectionTestUtils.setField(jwtUtil, "keyId", "test");
+        ReflectionTestUtils.setField(jwtUtil, "verificationKeysProperty", "");
+        ReflectionTestUtils.setField(jwtUtil, "stateless", true);
+        ReflectionTestUtils.setField(jwtUtil, "accessExpiration", 900_000L);
+        ReflectionTestUtils.setField(jwtUtil, "refreshExpiration", 604_800_000L);
+        ReflectionTestUtils.setField(jwtUtil, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.invokeMethod(jwtUtil, "init");
+
+        user = new User();
+        user.setId("user-1");
+        user.setEmail("ana@example.com");
+        user.setTenantId("boutique");
+        user.setRoles(Set.of(Role.CUSTOMER));
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findById("user-1")).thenAnswer(invocation -> Optional.of(user));
+
+        controller = new AuthController();
+        controller.jwtUtils = jwtUtil;
+        controller.userRepository = userRepository;
+        controller.revocationList = revocationList();
+    }
+
+    // Each call is one application instance sharing the same collections
+    private TokenRevocationList revocationList() {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.insert(any(UsedRefreshToken.class))).thenAnswer(invocation -> {
+            UsedRefreshToken token = invocation.getArgument(0);
+            if (usedTokens.putIfAbsent(token.getId(), token) != null) {
+                throw new DuplicateKeyException("E11000 duplicate key error");
+            }
+            return token;
+        });
+        when(mongoTemplate.save(any(RevokedUser.class))).thenAnswer(invocation -> {
+            RevokedUser revoked = invocation.getArgument(0);
+            revokedUsers.put(revoked.getId(), revoked);
+            return revoked;
+        });
+        when(mongoTemplate.find(any(Query.class), eq(RevokedUser.class)))
+                .thenAnswer(invocation -> new ArrayList<>(revokedUsers.values()));
+
+        TokenRevocationList revocationList = new TokenRevocationList();
+        ReflectionTestUtils.setField(revocationList, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(revocationList, "accessExpiration", 900_000L);
+        return revocationList;
+    }
+
+    private ResponseEntity<?> refresh(String refreshToken) {
+        RefreshTokenRequest request = new RefreshTokenRequest();
+        request.setRefreshToken(refreshToken);
+        return controller.refreshToken(request);
+    }
+
+    private String refreshTokenFor(User user) {
+        return jwtUtil.generateRefreshToken(UserPrincipal.build(user));
+    }
+
+    @Test
+    void refreshRotatesTheToken() {
+        String refreshToken = refreshTokenFor(user);
+
+        ResponseEntity<?> first = refresh(refreshToken);
+        assertThat(first.getStatusCode()).isEqualTo(HttpStatus.OK);
+        JwtResponse tokens = (JwtResponse) first.getBody();
+        assertThat(tokens.getRefreshToken()).isNotEqualTo(refreshToken);
+
+        assertThat(refresh(refreshToken).getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(refresh(tokens.getRefreshToken()).getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    void concurrentExchangesOfOneTokenSucceedOnce() throws Exception {
+        String refreshToken = refreshTokenFor(user);
+        int callers = 16;
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<ResponseEntity<?>>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return refresh(refreshToken);
+                }));
+            }
+            start.countDown();
+
+            int accepted = 0;
+            for (Future<ResponseEntity<?>> result : results) {
+                if (result.get().getStatusCode() == HttpStatus.OK) {
+                    accepted++;
+                }
+            }
+            assertThat(accepted).isEqualTo(1);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void tokenUsedOnAnotherInstanceIsRejected() {
+        String refreshToken = refreshTokenFor(user);
+        TokenRevocationList thisInstance = controller.revocationList;
+
+        controller.revocationList = revocationList();
+        assertThat(refresh(refreshToken).getStatusCode()).isEqualTo(HttpStatus.OK);
+
+        controller.revocationList = thisInstance;
+        assertThat(refresh(refreshToken).getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    void accessTokenIsNotAcceptedAsRefreshToken() {
+        String accessToken = jwtUtil.generateToken(UserPrincipal.build(user));
+
+        assertThat(refresh(accessToken).getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(usedTokens).isEmpty();
+    }
+
+    @Test
+    void deactivatedUserCannotRefresh() {
+        String refreshToken = refreshTokenFor(user);
+        user.setActive(false);
+
+        assertThat(refresh(refreshToken).getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    void revocationOnAnotherInstanceAppliesAfterSync() throws InterruptedException {
+        // Token issue times have second precision: issue these in an earlier second than the revocation
+        String first = refreshTokenFor(user);
+        String second = refreshTokenFor(user);
+        Thread.sleep(1100);
+
+        revocationList().revokeUser(user.getId());
+        // Not synced yet: this instance still has its old copy
+        assertThat(refresh(first).getStatusCode()).isEqualTo(HttpStatus.OK);
+
+        controller.revocationList.sync();
+        assertThat(refresh(second).getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+}
@@ -0,0 +1,78 @@
+package com.sutrini.controller;
+
+import com.sutrini.dto.StaffRequest;
+import com.sutrini.model.Role;
+import com.sutrini.model.User;
+import com.sutrini.repository.UserRepository;
+import com.sutrini.security.UserPrincipal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Staff accounts are created by an administrator, always in the administrator's own
+ * boutique and never as customers.
+ */
+class AuthControllerStaffTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+
+    private AuthController controller;
+
+    @BeforeEach
+    void setUp() {
+        controller = new AuthController();
+        controller.userRepository = userRepository;
+        controller.encoder = mock(PasswordEncoder.class);
+
+        UserPrincipal admin = new UserPrincipal("admin-1", "owner@example.com", null, "boutique",
+                List.of(new SimpleGrantedAuthority("ROLE_ADMIN")), true);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(admin, null, admin.getAuthorities()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private static StaffRequest request(Role role) {
+        StaffRequest request = new StaffRequest();
+        request.setFirstName("Meera");
+        request.setLastName("Iyer");
+        request.setEmail("meera@example.com");
+        request.setPassword("securePassword123");
+        request.setRole(role);
+        return request;
+    }
+
+    @Test
+    void workerIsCreatedInTheAdministratorsTenant() {
+        assertThat(controller.createStaff(request(Role.WORKER)).getStatusCode()).isEqualTo(HttpStatus.OK);
+
+        ArgumentCaptor<User> saved = ArgumentCaptor.forClass(User.class);
+        verify(userRepository).save(saved.capture());
+        assertThat(saved.getValue().getTenantId()).isEqualTo("boutique");
+        assertThat(saved.getValue().getRoles()).containsExactly(Role.WORKER);
+    }
+
+    @Test
+    void customerRoleIsRejected() {
+        assertThat(controller.createStaff(request(Role.CUSTOMER)).getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        verify(userRepository, never()).save(any(User.class));
+    }
+}
@@ -0,0 +1,114 @@
+package com.sutrini.controller;
+
+import com.stripe.Stripe;
+import com.stripe.net.Webhook;
+import com.sutrini.model.Order;
+import com.sutrini.model.OrderStatus;
+import com.sutrini.service.OrderStatusService;
+import com.sutrini.service.PricingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PaymentControllerWebhookTest {
+
+    private static final String SECRET = "whsec_test_secret";
+
+    private PaymentController controller;
+    private OrderStatusService orderStatusService;
+
+    @BeforeEach
+    void setUp() {
+        Order order = new Order();
+        order.setId("order-1");
+        order.setTenantId("boutique");
+        order.setStatus(OrderStatus.PENDING);
+        order.setTotalAmount(new BigDecimal("1499.00"));
+
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.findById("order-1", Order.class)).thenReturn(order);
+        orderStatusService = mock(OrderStatusService.class);
+        when(orderStatusService.transitionAnyTenant(anyString(), any(), anyString())).thenReturn(
+                new OrderStatusService.Result("order-1", OrderStatusService.Outcome.UPDATED, OrderStatus.PAID, 2L,
+                        null, null));
+
+        controller = new PaymentController();
+        ReflectionTestUtils.setField(controller, "webhookSecret", SECRET);
+        controller.mongoTemplate = mongoTemplate;
+        controller.orderStatusService = orderStatusService;
+        controller.pricingService = new PricingService();
+    }
+
+    private static String event(String type, long amountReceived, String currency) {
+        return """
+                {"id": "evt_1", "object": "event", "api_version": "%s", "type": "%s",
+                 "data": {"object": {"id": "pi_1", "object": "payment_intent", "amount": %d,
+                   "amount_received": %d, "currency": "%s", "status": "succeeded",
+                   "metadata": {"orderId": "order-1"}}}}
+                """.formatted(Stripe.API_VERSION, type, amountReceived, amountReceived, currency);
+    }
+
+    private static String sign(String payload, String secret) throws Exception {
+        long timestamp = Webhook.Util.getTimeNow();
+        return "t=" + timestamp + ",v1=" + Webhook.Util.computeHmacSha256(secret, timestamp + "." + payload);
+    }
+
+    @Test
+    void succeededPaymentMarksTheOrderPaid() throws Exception {
+        String payload = event(PaymentController.PAYMENT_SUCCEEDED, 149900, "inr");
+
+        assertThat(controller.handleWebhook(payload, sign(payload, SECRET)).getStatusCode()).isEqualTo(HttpStatus.OK);
+        verify(orderStatusService).transitionAnyTenant("order-1", OrderStatus.PAID, PaymentController.STRIPE_ACTOR);
+    }
+
+    @Test
+    void wrongSignatureIsRejected() throws Exception {
+        String payload = event(PaymentController.PAYMENT_SUCCEEDED, 149900, "inr");
+
+        assertThat(controller.handleWebhook(payload, sign(payload, "whsec_other")).getStatusCode())
+                .isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(controller.handleWebhook(payload, null).getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        verify(orderStatusService, never()).transitionAnyTenant(anyString(), any(), anyString());
+    }
+
+    @Test
+    void amountOtherThanTheOrderTotalLeavesTheOrderUnpaid() throws Exception {
+        String underpaid = event(PaymentController.PAYMENT_SUCCEEDED, 100, "inr");
+        String otherCurrency = event(PaymentController.PAYMENT_SUCCEEDED, 149900, "usd");
+
+        assertThat(controller.handleWebhook(underpaid, sign(underpaid, SECRET)).getStatusCode())
+                .isEqualTo(HttpStatus.OK);
+        assertThat(controller.handleWebhook(otherCurrency, sign(otherCurrency, SECRET)).getStatusCode())
+                .isEqualTo(HttpStatus.OK);
+        verify(orderStatusService, never()).transitionAnyTenant(anyString(), any(), anyString());
+    }
+
+    @Test
+    void otherEventsAreAcknowledgedAndIgnored() throws Exception {
+        String payload = event("payment_intent.created", 0, "inr");
+
+        assertThat(controller.handleWebhook(payload, sign(payload, SECRET)).getStatusCode()).isEqualTo(HttpStatus.OK);
+        verify(orderStatusService, never()).transitionAnyTenant(anyString(), any(), anyString());
+    }
+
+    @Test
+    void webhookIsRefusedWithoutASecret() throws Exception {
+        ReflectionTestUtils.setField(controller, "webhookSecret", "");
+        String payload = event(PaymentController.PAYMENT_SUCCEEDED, 149900, "inr");
+
+        assertThat(controller.handleWebhook(payload, sign(payload, SECRET)).getStatusCode())
+                .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+}
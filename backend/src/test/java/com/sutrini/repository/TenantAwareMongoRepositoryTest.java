@@ -0,0 +1,143 @@
+package com.sutrini.repository;
+
+import com.sutrini.model.Product;
+import com.sutrini.security.TenantContext;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Example;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.repository.support.MappingMongoEntityInformation;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The inherited CRUD and query-by-example methods must not reach another tenant's
+ * documents; the tenant here comes from the anonymous X-Tenant-ID header.
+ */
+class TenantAwareMongoRepositoryTest {
+
+    private final MongoOperations mongoOperations = mock(MongoOperations.class);
+
+    private TenantAwareMongoRepository<Product, String> repository;
+
+    @BeforeEach
+    void setUp() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(new MongoCustomConversions(List.of()).getSimpleTypeHolder());
+        @SuppressWarnings("unchecked")
+        MongoPersistentEntity<Product> entity =
+                (MongoPersistentEntity<Product>) mappingContext.getRequiredPersistentEntity(Product.class);
+        repository = new TenantAwareMongoRepository<>(new MappingMongoEntityInformation<>(entity), mongoOperations);
+        when(mongoOperations.insert(any(Product.class), eq("products"))).thenAnswer(i -> i.getArgument(0));
+        when(mongoOperations.save(any(Product.class), eq("products"))).thenAnswer(i -> i.getArgument(0));
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(TenantContext.HEADER, "boutique");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    private static Product product(String id, String tenant) {
+        Product product = new Product();
+        product.setId(id);
+        // Versioned: a document without a version is new
+        product.setVersion(id == null ? null : 1L);
+        product.setTenantId(tenant);
+        product.setName("Silk Saree");
+        return product;
+    }
+
+    private void stored(String id, String tenant) {
+        when(mongoOperations.findOne(any(Query.class), eq(Document.class), eq("products")))
+                .thenReturn(new Document("_id", id).append(TenantContext.FIELD, tenant));
+    }
+
+    @Test
+    void newDocumentsTakeTheCallersTenant() {
+        Product saved = repository.save(product(null, null));
+
+        assertThat(saved.getTenantId()).isEqualTo("boutique");
+    }
+
+    @Test
+    void documentNamingAnotherTenantIsRejected() {
+        assertThatThrownBy(() -> repository.insert(product(null, "other")))
+                .isInstanceOf(IllegalArgumentException.class);
+        verify(mongoOperations, never()).insert(any(Product.class), eq("products"));
+    }
+
+    @Test
+    void saveCannotOverwriteAnotherTenantsDocument() {
+        stored("p1", "other");
+
+        assertThatThrownBy(() -> repository.save(product("p1", "boutique")))
+                .isInstanceOf(IllegalArgumentException.class);
+        verify(mongoOperations, never()).save(any(Product.class), eq("products"));
+    }
+
+    @Test
+    void saveUpdatesTheCallersOwnDocument() {
+        stored("p1", "boutique");
+
+        repository.save(product("p1", null));
+
+        verify(mongoOperations).save(any(Product.class), eq("products"));
+    }
+
+    @Test
+    void deleteLeavesAnotherTenantsDocument() {
+        stored("p1", "other");
+
+        repository.delete(product("p1", "boutique"));
+
+        verify(mongoOperations, never()).remove(any(Object.class), eq("products"));
+    }
+
+    @Test
+    void deleteAllOnlyRemovesTheCallersDocuments() {
+        repository.deleteAll();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoOperations).remove(query.capture(), eq(Product.class), eq("products"));
+        assertThat(query.getValue().getQueryObject()).containsEntry(TenantContext.FIELD, "boutique");
+    }
+
+    @Test
+    void exampleQueriesAreScoped() {
+        Product probe = new Product();
+        probe.setName("Silk Saree");
+
+        repository.findAll(Example.of(probe));
+        repository.count(Example.of(probe));
+
+        ArgumentCaptor<Query> find = ArgumentCaptor.forClass(Query.class);
+        verify(mongoOperations).find(find.capture(), eq(Product.class), eq("products"));
+        assertThat(find.getValue().getQueryObject()).containsEntry(TenantContext.FIELD, "boutique");
+        ArgumentCaptor<Query> count = ArgumentCaptor.forClass(Query.class);
+        verify(mongoOperations).count(count.capture(), eq(Product.class), eq("products"));
+        assertThat(count.getValue().getQueryObject()).containsEntry(TenantContext.FIELD, "boutique");
+    }
+}
@@ -0,0 +1,73 @@
+package com.sutrini.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verifying an access token with the parser and key built once in {@link JwtUtil}
+ * against rebuilding both on every call, as JwtUtil did before.
+ * <p>
+ * {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=JwtParseBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtParseBenchmark {
+
+    private static final String SECRET = "sutrinisecretkeywhichisverylongandsecureenoughforHS256algorithmchecksumverification";
+
+    private JwtUtil jwtUtil;
+
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "keyId", "primary");
+        ReflectionTestUtils.setField(jwtUtil, "verificationKeysProperty", "");
+        ReflectionTestUtils.setField(jwtUtil, "stateless", true);
+        ReflectionTestUtils.setField(jwtUtil, "accessExpiration", 3_600_000L);
+        ReflectionTestUtils.setField(jwtUtil, "meterRegistry", new SimpleMeterRegistry());
+        jwtUtil.init();
+
+        UserPrincipal principal = new UserPrincipal("64f1c0ffee", "ana@example.com", null, "boutique",
+                List.of(new SimpleGrantedAuthority("ROLE_CUSTOMER")), true);
+        token = jwtUtil.generateToken(principal);
+    }
+
+    @Benchmark
+    public Claims rebuiltPerCall() {
+        return Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+
+    @Benchmark
+    public Claims sharedParser() {
+        return jwtUtil.extractAllClaims(token);
+    }
+}
@@ -0,0 +1,155 @@
+package com.sutrini.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time {@link RateLimitFilter} adds to a request that passes it, against an empty
+ * filter over the same requests: 10k client addresses and 1k signed-in users across 20
+ * tenants (every tenth an admin, so the tenant bucket is taken too), on a mix of grouped
+ * and default routes. The difference is the filter's own cost: principal lookup, route
+ * match, bucket acquisitions and the four RateLimit headers.
+ * <p>
+ * {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark="RateLimitFilterBenchmark -t 4"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RateLimitFilterBenchmark {
+
+    private static final String[] PATHS = {"/api/products", "/api/products/search", "/api/orders/all",
+            "/api/orders/abc123", "/api/products/browse", "/api/orders/my-orders"};
+    private static final int CLIENTS = 10_000;
+    private static final int USERS = 1_000;
+    private static final int TENANTS = 20;
+
+    private static final FilterChain CHAIN = (request, response) -> {
+    };
+
+    private RateLimitFilter filter;
+
+    private OncePerRequestFilter baseline;
+
+    private MockHttpServletRequest[] requests;
+
+    private UsernamePasswordAuthenticationToken[] users;
+
+    /**
+     * Each thread walks the clients from its own offset and reuses one response.
+     */
+    @State(Scope.Thread)
+    public static class Client {
+
+        private int next = (int) (Thread.currentThread().getId() * 7919 % CLIENTS);
+
+        // Headers kept in a map, like the container's own header list, rather than the
+        // mock's, which costs several times what the filter does
+        private final Map<String, String> headers = new HashMap<>();
+
+        private final MockHttpServletResponse response = new MockHttpServletResponse() {
+            @Override
+            public void setHeader(String name, String value) {
+                headers.put(name, value);
+            }
+        };
+
+        int next() {
+            int client = next;
+            next = client + 1 == CLIENTS ? 0 : client + 1;
+            return client;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        filter = new RateLimitFilter();
+        // Limits high enough that every request passes: the cost of the common case
+        ReflectionTestUtils.setField(filter, "enabled", true);
+        ReflectionTestUtils.setField(filter, "clientLimit", "1000000000/60");
+        ReflectionTestUtils.setField(filter, "tenantLimit", "1000000000/60");
+        ReflectionTestUtils.setField(filter, "routeConfig", List.of(
+                "search=1000000000/60@/api/products/search;/api/products/browse",
+                "orders-all=1000000000/60@/api/orders/all;/api/orders/export"));
+        ReflectionTestUtils.setField(filter, "maxKeys", 100_000);
+        filter.init();
+
+        baseline = new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                    FilterChain chain) throws IOException, ServletException {
+                chain.doFilter(request, response);
+            }
+        };
+
+        requests = new MockHttpServletRequest[CLIENTS];
+        users = new UsernamePasswordAuthenticationToken[CLIENTS];
+        for (int i = 0; i < CLIENTS; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", PATHS[i % PATHS.length]);
+            request.setRemoteAddr("10." + (i >> 16 & 255) + "." + (i >> 8 & 255) + "." + (i & 255));
+            request.addHeader(TenantContext.HEADER, "tenant" + (i % TENANTS));
+            requests[i] = request;
+            if (i < USERS) {
+                String role = i % 10 == 0 ? "ROLE_ADMIN" : "ROLE_CUSTOMER";
+                UserPrincipal principal = new UserPrincipal("user" + i, "user" + i + "@example.com", null,
+                        "tenant" + (i % TENANTS), List.of(new SimpleGrantedAuthority(role)), true);
+                users[i] = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+            }
+        }
+    }
+
+    @Benchmark
+    public void emptyFilter(Client client) throws Exception {
+        run(baseline, client);
+    }
+
+    @Benchmark
+    public void rateLimitFilter(Client client) throws Exception {
+        run(filter, client);
+    }
+
+    private void run(OncePerRequestFilter target, Client client) throws Exception {
+        int index = client.next();
+        MockHttpServletRequest request = requests[index];
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        if (users[index] != null) {
+            SecurityContextHolder.getContext().setAuthentication(users[index]);
+        }
+        try {
+            target.doFilter(request, client.response, CHAIN);
+        } finally {
+            SecurityContextHolder.clearContext();
+            // OncePerRequestFilter marks the request as filtered; clear it for the next round
+            request.clearAttributes();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.sutrini.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitFilterTest {
+
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        filter = new RateLimitFilter();
+        ReflectionTestUtils.setField(filter, "enabled", true);
+        ReflectionTestUtils.setField(filter, "clientLimit", "2/60");
+        ReflectionTestUtils.setField(filter, "tenantLimit", "3/60");
+        ReflectionTestUtils.setField(filter, "routeConfig", List.of());
+        ReflectionTestUtils.setField(filter, "maxKeys", 1000);
+        filter.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private int call(String address, String tenantHeader) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/products");
+        request.setRemoteAddr(address);
+        if (tenantHeader != null) {
+            request.addHeader(TenantContext.HEADER, tenantHeader);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        try {
+            filter.doFilter(request, response, new MockFilterChain());
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+        return response.getStatus();
+    }
+
+    private void signIn(String userId, String tenant, String role) {
+        UserPrincipal principal = new UserPrincipal(userId, userId + "@example.com", null, tenant,
+                List.of(new SimpleGrantedAuthority("ROLE_" + role)), true);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+
+    @Test
+    void anonymousRequestsDoNotShareTheDefaultTenantsBucket() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            assertThat(call("10.0.0." + i, null)).isEqualTo(HttpStatus.OK.value());
+        }
+    }
+
+    @Test
+    void anonymousClientIsLimitedByAddressWhateverTenantItNames() throws Exception {
+        assertThat(call("10.0.0.1", "boutique-a")).isEqualTo(HttpStatus.OK.value());
+        assertThat(call("10.0.0.1", "boutique-b")).isEqualTo(HttpStatus.OK.value());
+        assertThat(call("10.0.0.1", "boutique-c")).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+    }
+
+    @Test
+    void staffShareTheirTenantsBucket() throws Exception {
+        signIn("user1", "boutique", "ADMIN");
+        assertThat(call("10.0.0.1", null)).isEqualTo(HttpStatus.OK.value());
+        assertThat(call("10.0.0.1", null)).isEqualTo(HttpStatus.OK.value());
+        signIn("user2", "boutique", "WORKER");
+        assertThat(call("10.0.0.2", null)).isEqualTo(HttpStatus.OK.value());
+        assertThat(call("10.0.0.2", null)).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+
+        signIn("user3", "other", "ADMIN");
+        assertThat(call("10.0.0.3", null)).isEqualTo(HttpStatus.OK.value());
+    }
+
+    @Test
+    void customersOfTheDefaultTenantDoNotShareABucket() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            signIn("customer" + i, "default", "CUSTOMER");
+            assertThat(call("10.0.0." + i, null)).isEqualTo(HttpStatus.OK.value());
+            assertThat(call("10.0.0." + i, null)).isEqualTo(HttpStatus.OK.value());
+        }
+    }
+
+    @Test
+    void requestRejectedByTheTenantKeepsItsClientToken() throws Exception {
+        signIn("user1", "boutique", "ADMIN");
+        call("10.0.0.1", null);
+        signIn("user2", "boutique", "ADMIN");
+        call("10.0.0.2", null);
+        call("10.0.0.2", null);
+        signIn("user1", "boutique", "ADMIN");
+        assertThat(call("10.0.0.1", null)).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+
+        // user1 spent one of its two requests; the rejected one was given back
+        ReflectionTestUtils.setField(filter, "tenants", new RateLimiter(1000));
+        assertThat(call("10.0.0.1", null)).isEqualTo(HttpStatus.OK.value());
+    }
+}
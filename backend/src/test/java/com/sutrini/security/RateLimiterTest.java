@@ -0,0 +1,90 @@
+package com.sutrini.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * GCRA bucket arithmetic at fixed instants: a full bucket bursts its allowance, then
+ * refills one request per {@code period / requests}.
+ */
+class RateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    // 3 requests per 3 seconds: one more every second
+    private final RateLimiter.Limit limit = new RateLimiter.Limit("client", 3, 3);
+
+    @Test
+    void fullBucketBurstsItsAllowanceThenRejects() {
+        RateLimiter limiter = new RateLimiter(100);
+        long now = 10 * SECOND;
+
+        assertThat(limiter.acquire(limit, "a", now).remaining()).isEqualTo(2);
+        assertThat(limiter.acquire(limit, "a", now).remaining()).isEqualTo(1);
+        assertThat(limiter.acquire(limit, "a", now).remaining()).isZero();
+
+        RateLimiter.Decision rejected = limiter.acquire(limit, "a", now);
+        assertThat(rejected.allowed()).isFalse();
+        assertThat(rejected.retryAfterSeconds()).isEqualTo(1);
+        assertThat(rejected.resetSeconds()).isEqualTo(3);
+    }
+
+    @Test
+    void bucketRefillsOneRequestPerEmissionInterval() {
+        RateLimiter limiter = new RateLimiter(100);
+        long now = 10 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire(limit, "a", now);
+        }
+
+        assertThat(limiter.acquire(limit, "a", now + SECOND - 1).allowed()).isFalse();
+        assertThat(limiter.acquire(limit, "a", now + SECOND).allowed()).isTrue();
+        assertThat(limiter.acquire(limit, "a", now + SECOND).allowed()).isFalse();
+        // Idle for a whole period: the bucket is full again, not fuller
+        assertThat(limiter.acquire(limit, "a", now + 10 * SECOND).remaining()).isEqualTo(2);
+    }
+
+    @Test
+    void keysHaveSeparateBuckets() {
+        RateLimiter limiter = new RateLimiter(100);
+        long now = 10 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire(limit, "a", now);
+        }
+
+        assertThat(limiter.acquire(limit, "a", now).allowed()).isFalse();
+        assertThat(limiter.acquire(limit, "b", now).allowed()).isTrue();
+    }
+
+    @Test
+    void keysBeyondTheCapShareOneBucket() {
+        RateLimiter limiter = new RateLimiter(1);
+        long now = 10 * SECOND;
+        limiter.acquire(limit, "a", now);
+
+        assertThat(limiter.acquire(limit, "b", now).remaining()).isEqualTo(2);
+        assertThat(limiter.acquire(limit, "c", now).remaining()).isEqualTo(1);
+        assertThat(limiter.size()).isEqualTo(1);
+    }
+
+    @Test
+    void pruneDropsRefilledBuckets() {
+        RateLimiter limiter = new RateLimiter(100);
+        limiter.acquire(limit, "idle", RateLimiter.now() - 10 * SECOND);
+        limiter.acquire(limit, "busy", RateLimiter.now());
+
+        assertThat(limiter.prune()).isEqualTo(1);
+    }
+
+    @Test
+    void limitIsParsedAsRequestsPerSeconds() {
+        RateLimiter.Limit parsed = RateLimiter.Limit.parse("search", " 60 / 60 ");
+
+        assertThat(parsed.getRequests()).isEqualTo(60);
+        assertThat(parsed.getPeriodSeconds()).isEqualTo(60);
+        assertThat(parsed.getPolicy()).isEqualTo("60;w=60");
+    }
+}
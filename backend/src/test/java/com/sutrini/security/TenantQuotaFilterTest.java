@@ -0,0 +1,80 @@
+package com.sutrini.security;
+
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Only a tenant's staff share its permits, and a streamed response holds its permit
+ * until the async request completes.
+ */
+class TenantQuotaFilterTest {
+
+    private TenantQuotaFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        filter = new TenantQuotaFilter();
+        ReflectionTestUtils.setField(filter, "maxConcurrent", 1);
+        ReflectionTestUtils.setField(filter, "waitMillis", 0L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private static void signIn(String role) {
+        UserPrincipal principal = new UserPrincipal("u1", "u1@example.com", null, "default",
+                List.of(new SimpleGrantedAuthority("ROLE_" + role)), true);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+
+    private static MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/orders/export");
+        request.setAsyncSupported(true);
+        return request;
+    }
+
+    private int call(MockHttpServletRequest request, FilterChain chain) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response.getStatus();
+    }
+
+    @Test
+    void customersOfTheDefaultTenantAreNotCounted() throws Exception {
+        signIn("CUSTOMER");
+        MockHttpServletRequest streaming = request();
+        call(streaming, (req, res) -> req.startAsync());
+
+        assertThat(call(request(), new MockFilterChain())).isEqualTo(HttpStatus.OK.value());
+    }
+
+    @Test
+    void streamedResponseHoldsThePermitUntilComplete() throws Exception {
+        signIn("ADMIN");
+        MockHttpServletRequest streaming = request();
+        call(streaming, (req, res) -> req.startAsync());
+
+        assertThat(call(request(), new MockFilterChain())).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+
+        streaming.getAsyncContext().complete();
+
+        assertThat(call(request(), new MockFilterChain())).isEqualTo(HttpStatus.OK.value());
+    }
+}
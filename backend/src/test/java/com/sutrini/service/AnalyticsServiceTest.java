@@ -0,0 +1,137 @@
+package com.sutrini.service;
+
+import com.mongodb.MongoTimeoutException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.WriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.UpdateOptions;
+import com.sutrini.model.Order;
+import com.sutrini.model.OrderItem;
+import com.sutrini.model.OrderStatus;
+import com.sutrini.model.ProcessedEvent;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The outbox delivers at least once: a redelivered event must not be counted in the
+ * rollups a second time, also when an earlier delivery failed halfway.
+ */
+class AnalyticsServiceTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+
+    @SuppressWarnings("unchecked")
+    private final MongoCollection<Document> daily = mock(MongoCollection.class);
+
+    @SuppressWarnings("unchecked")
+    private final MongoCollection<Document> products = mock(MongoCollection.class);
+
+    @SuppressWarnings("unchecked")
+    private final MongoCollection<Document> status = mock(MongoCollection.class);
+
+    private AnalyticsService analyticsService;
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.getCollection(AnalyticsService.DAILY)).thenReturn(daily);
+        when(mongoTemplate.getCollection(AnalyticsService.PRODUCTS)).thenReturn(products);
+        when(mongoTemplate.getCollection(AnalyticsService.STATUS)).thenReturn(status);
+        analyticsService = new AnalyticsService();
+        ReflectionTestUtils.setField(analyticsService, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(analyticsService, "processedEventTtl", 60000L);
+    }
+
+    private static OrderItem item(String productId, int quantity) {
+        OrderItem item = new OrderItem();
+        item.setProductId(productId);
+        item.setProductName("Silk Saree");
+        item.setQuantity(quantity);
+        item.setUnitPrice(new BigDecimal("2500.00"));
+        return item;
+    }
+
+    private static Order order() {
+        Order order = new Order();
+        order.setId("o1");
+        order.setTenantId("boutique");
+        order.setStatus(OrderStatus.PENDING);
+        order.setTotalAmount(new BigDecimal("7500.00"));
+        order.setItems(List.of(item("p1", 1), item("p1", 2)));
+        return order;
+    }
+
+    @Test
+    void redeliveredEventIsSkipped() {
+        when(mongoTemplate.exists(any(Query.class), eq(ProcessedEvent.class))).thenReturn(true);
+
+        analyticsService.onOrderCreated(new OrderCreatedEvent("e1", order()));
+
+        verify(daily, never()).updateOne(any(Bson.class), any(Bson.class), any(UpdateOptions.class));
+        verify(products, never()).updateOne(any(Bson.class), any(Bson.class), any(UpdateOptions.class));
+        verify(mongoTemplate, never()).insert(any(ProcessedEvent.class));
+    }
+
+    @Test
+    void updatesAreGuardedByTheEventIdAndRecorded() {
+        analyticsService.onOrderCreated(new OrderCreatedEvent("e1", order()));
+
+        // Both lines of p1 in one update: a second guarded update of the document would be skipped
+        ArgumentCaptor<Bson> filter = ArgumentCaptor.forClass(Bson.class);
+        verify(products, times(1)).updateOne(filter.capture(), any(Bson.class), any(UpdateOptions.class));
+        assertThat(filter.getValue().toBsonDocument().toJson()).contains(AnalyticsService.APPLIED_EVENTS, "e1");
+
+        ArgumentCaptor<ProcessedEvent> processed = ArgumentCaptor.forClass(ProcessedEvent.class);
+        verify(mongoTemplate).insert(processed.capture());
+        assertThat(processed.getValue().getId()).isEqualTo("e1");
+        // The ids are pulled again once the event is recorded
+        verify(products).updateOne(any(Bson.class), any(Bson.class));
+        verify(daily).updateOne(any(Bson.class), any(Bson.class));
+        verify(status).updateOne(any(Bson.class), any(Bson.class));
+    }
+
+    @Test
+    void updateAppliedByAnEarlierDeliveryIsNotRepeated() {
+        // The guarded upsert finds no match and collides with the document already carrying the id
+        when(daily.updateOne(any(Bson.class), any(Bson.class), any(UpdateOptions.class))).thenThrow(
+                new MongoWriteException(new WriteError(11000, "duplicate key", new BsonDocument()),
+                        new ServerAddress()));
+
+        analyticsService.onOrderCreated(new OrderCreatedEvent("e1", order()));
+
+        verify(status, atLeastOnce()).updateOne(any(Bson.class), any(Bson.class), any(UpdateOptions.class));
+        verify(mongoTemplate).insert(any(ProcessedEvent.class));
+    }
+
+    @Test
+    void failureReachesTheOutboxForARetry() {
+        when(status.updateOne(any(Bson.class), any(Bson.class), any(UpdateOptions.class)))
+                .thenThrow(new MongoTimeoutException("no primary"));
+
+        assertThatThrownBy(() -> analyticsService.onOrderStatusChanged(
+                new OrderStatusChangedEvent("e2", "o1", "boutique", OrderStatus.PENDING, OrderStatus.PAID)))
+                .isInstanceOf(MongoTimeoutException.class);
+        verify(mongoTemplate, never()).insert(any(ProcessedEvent.class));
+    }
+}
@@ -0,0 +1,161 @@
+package com.sutrini.service;
+
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import com.sutrini.model.Product;
+import com.sutrini.repository.ProductRepository;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * How change-stream events reach the snapshot: stock-only updates from checkouts are
+ * collected and applied in one rebuild per flush, everything else right away.
+ */
+class CatalogServiceTest {
+
+    private final String sareeId = new ObjectId().toHexString();
+    private final String blouseId = new ObjectId().toHexString();
+
+    private MappingMongoConverter converter;
+    private CatalogListener listener;
+    private CatalogService catalogService;
+
+    @BeforeEach
+    void setUp() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+        converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.getConverter()).thenReturn(converter);
+        ProductRepository productRepository = mock(ProductRepository.class);
+        when(productRepository.findAll()).thenReturn(List.of(
+                product(sareeId, "Silk Saree", 5, 1L), product(blouseId, "Silk Blouse", 5, 1L)));
+        listener = mock(CatalogListener.class);
+
+        catalogService = new CatalogService();
+        ReflectionTestUtils.setField(catalogService, "enabled", true);
+        ReflectionTestUtils.setField(catalogService, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(catalogService, "productRepository", productRepository);
+        ReflectionTestUtils.setField(catalogService, "listeners", List.of(listener));
+        catalogService.reload();
+    }
+
+    private static Product product(String id, String name, int stock, long version) {
+        Product product = new Product();
+        product.setId(id);
+        product.setTenantId("boutique");
+        product.setName(name);
+        product.setCategory("sarees");
+        product.setStockQuantity(stock);
+        product.setVersion(version);
+        return product;
+    }
+
+    private void update(Product product, BsonDocument updatedFields) {
+        Document document = new Document();
+        converter.write(product, document);
+        ChangeStreamDocument<Document> change = new ChangeStreamDocument<>("update", null, null, null, document,
+                null, new BsonDocument("_id", new BsonString(product.getId())), null,
+                new UpdateDescription(List.of(), updatedFields), null, null, null, null, null);
+        assertThat((Boolean) ReflectionTestUtils.invokeMethod(catalogService, "apply", change)).isTrue();
+    }
+
+    private static BsonDocument stockChange(int stock, long version) {
+        return new BsonDocument("stockQuantity", new BsonInt32(stock))
+                .append("version", new BsonInt64(version))
+                .append("updatedAt", new BsonString("2024-12-10T12:00:00"));
+    }
+
+    @Test
+    void stockChangesWaitForTheFlush() {
+        long version = catalogService.current().getVersion();
+
+        update(product(sareeId, "Silk Saree", 4, 2L), stockChange(4, 2L));
+
+        assertThat(catalogService.current().get(sareeId).getStockQuantity()).isEqualTo(5);
+        assertThat(catalogService.current().getVersion()).isEqualTo(version);
+        assertThat(catalogService.getStats().pendingStockChanges()).isEqualTo(1);
+        verify(listener, never()).productSaved(any());
+
+        catalogService.flushStockChanges();
+
+        assertThat(catalogService.current().get(sareeId).getStockQuantity()).isEqualTo(4);
+        assertThat(catalogService.getStats().pendingStockChanges()).isZero();
+        verify(listener).productSaved(any());
+    }
+
+    @Test
+    void stockChangesOfManyCheckoutsAreOneRebuild() {
+        long version = catalogService.current().getVersion();
+        update(product(sareeId, "Silk Saree", 4, 2L), stockChange(4, 2L));
+        update(product(blouseId, "Silk Blouse", 4, 2L), stockChange(4, 2L));
+        update(product(sareeId, "Silk Saree", 3, 3L), stockChange(3, 3L));
+
+        catalogService.flushStockChanges();
+
+        assertThat(catalogService.current().getVersion()).isEqualTo(version + 1);
+        assertThat(catalogService.current().get(sareeId).getStockQuantity()).isEqualTo(3);
+        assertThat(catalogService.current().get(blouseId).getStockQuantity()).isEqualTo(4);
+        verify(listener, times(2)).productSaved(any());
+    }
+
+    @Test
+    void otherChangesApplyRightAway() {
+        update(product(sareeId, "Banarasi Silk Saree", 5, 2L),
+                new BsonDocument("name", new BsonString("Banarasi Silk Saree")).append("version", new BsonInt64(2)));
+
+        assertThat(catalogService.current().get(sareeId).getName()).isEqualTo("Banarasi Silk Saree");
+        assertThat(catalogService.getStats().pendingStockChanges()).isZero();
+    }
+
+    @Test
+    void laterSaveSupersedesAPendingStockChange() {
+        update(product(sareeId, "Silk Saree", 4, 2L), stockChange(4, 2L));
+        catalogService.productSaved(product(sareeId, "Silk Saree", 10, 3L));
+        long version = catalogService.current().getVersion();
+
+        catalogService.flushStockChanges();
+
+        assertThat(catalogService.current().get(sareeId).getStockQuantity()).isEqualTo(10);
+        assertThat(catalogService.current().getVersion()).isEqualTo(version);
+    }
+
+    @Test
+    void stockChangeTheSnapshotAlreadyHasIsSkipped() {
+        // The admin stock endpoint applies its result directly; its change event follows
+        catalogService.productSaved(product(sareeId, "Silk Saree", 8, 2L));
+        update(product(sareeId, "Silk Saree", 8, 2L), stockChange(8, 2L));
+        long version = catalogService.current().getVersion();
+
+        catalogService.flushStockChanges();
+
+        assertThat(catalogService.current().getVersion()).isEqualTo(version);
+    }
+}
@@ -0,0 +1,99 @@
+package com.sutrini.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sutrini.model.Product;
+import com.sutrini.security.TenantContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Per-tenant versions: a change to one boutique's products must not invalidate what
+ * was derived from another's.
+ */
+class CatalogSnapshotTest {
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    private static Product product(String id, String tenant, String name, long version) {
+        Product product = new Product();
+        product.setId(id);
+        product.setTenantId(tenant);
+        product.setName(name);
+        product.setCategory("sarees");
+        product.setVersion(version);
+        return product;
+    }
+
+    private static CatalogSnapshot catalog() {
+        return CatalogSnapshot.of(1, List.of(product("a1", "anya", "Silk Saree", 1),
+                product("b1", "bela", "Cotton Saree", 1)));
+    }
+
+    @Test
+    void changeBumpsOnlyItsTenant() {
+        CatalogSnapshot first = catalog();
+
+        CatalogSnapshot second = first.with(product("a1", "anya", "Silk Saree", 2));
+
+        assertThat(second.getVersion()).isEqualTo(2);
+        assertThat(second.getVersion("anya")).isEqualTo(2);
+        assertThat(second.getVersion("bela")).isEqualTo(1);
+    }
+
+    @Test
+    void reloadWithTheSameProductsKeepsTenantVersions() {
+        CatalogSnapshot first = catalog().with(product("a1", "anya", "Silk Saree", 2));
+
+        CatalogSnapshot reloaded = CatalogSnapshot.of(3, List.of(product("a1", "anya", "Silk Saree", 2),
+                product("b1", "bela", "Cotton Saree", 2)), first);
+
+        assertThat(reloaded.getVersion("anya")).isEqualTo(2);
+        assertThat(reloaded.getVersion("bela")).isEqualTo(3);
+    }
+
+    @Test
+    void tenantLosingItsLastProductGetsANewVersion() {
+        CatalogSnapshot second = catalog().without("b1");
+
+        assertThat(second.getVersion("bela")).isEqualTo(2);
+        assertThat(second.active("bela")).isEmpty();
+        assertThat(second.getVersion("anya")).isEqualTo(1);
+        assertThat(second.getVersion("unknown")).isZero();
+    }
+
+    @Test
+    void cachedListSurvivesAnotherTenantsChange() {
+        AtomicReference<CatalogSnapshot> snapshot = new AtomicReference<>(catalog());
+        CatalogService catalogService = mock(CatalogService.class);
+        when(catalogService.current()).thenAnswer(invocation -> snapshot.get());
+        CatalogResponseCache cache = new CatalogResponseCache();
+        ReflectionTestUtils.setField(cache, "catalogService", catalogService);
+        ReflectionTestUtils.setField(cache, "objectMapper", new ObjectMapper().registerModule(new JavaTimeModule()));
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(TenantContext.HEADER, "bela");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        CatalogResponseCache.Entry before = cache.get(null);
+        snapshot.set(snapshot.get().with(product("a1", "anya", "Banarasi Silk Saree", 2)));
+        assertThat(cache.get(null)).isSameAs(before);
+
+        snapshot.set(snapshot.get().with(product("b1", "bela", "Khadi Saree", 2)));
+        assertThat(cache.get(null)).isNotSameAs(before);
+    }
+}
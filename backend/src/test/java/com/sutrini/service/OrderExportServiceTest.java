@@ -0,0 +1,73 @@
+package com.sutrini.service;
+
+import com.sutrini.model.Order;
+import com.sutrini.model.OrderItem;
+import com.sutrini.model.OrderStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * CSV exports open in spreadsheets, so text that starts like a formula is written as
+ * text; numbers keep their sign.
+ */
+class OrderExportServiceTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+
+    private String csv(Order order, boolean itemRows) throws Exception {
+        OrderExportService service = new OrderExportService();
+        ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+        when(mongoTemplate.stream(any(Query.class), eq(Order.class))).thenReturn(Stream.of(order));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.write(new Query(), OrderExportService.Format.CSV, itemRows, false, out);
+        return out.toString(StandardCharsets.UTF_8).split("\r\n")[1];
+    }
+
+    private static Order order() {
+        Order order = new Order();
+        order.setId("o1");
+        order.setTenantId("default");
+        order.setCustomerId("c1");
+        order.setStatus(OrderStatus.PAID);
+        return order;
+    }
+
+    @Test
+    void formulasAreWrittenAsText() throws Exception {
+        Order order = order();
+        order.setCustomerEmail("=HYPERLINK(\"http://evil.example\",\"x\")");
+        OrderItem item = new OrderItem();
+        item.setProductName("@SUM(1+1)");
+        item.setSize("-2+3");
+        item.setQuantity(1);
+        order.setItems(List.of(item));
+
+        String row = csv(order, true);
+
+        assertThat(row).contains(",\"'=HYPERLINK(\"\"http://evil.example\"\",\"\"x\"\")\",");
+        assertThat(row).contains(",'@SUM(1+1),'-2+3,");
+    }
+
+    @Test
+    void negativeAmountsKeepTheirSign() throws Exception {
+        Order order = order();
+        order.setCustomerEmail("priya@example.com");
+        order.setTotalAmount(new BigDecimal("-12.50"));
+
+        assertThat(csv(order, false)).endsWith(",priya@example.com,PAID,0,-12.50");
+    }
+}
@@ -0,0 +1,131 @@
+package com.sutrini.service;
+
+import com.sutrini.model.Order;
+import com.sutrini.model.OrderStatus;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Status changes are conditional on the status being left, so two workers scanning the
+ * same label cannot move an order backwards; what did not apply is reported per order.
+ */
+class OrderStatusServiceTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+
+    private OrderStatusService orderStatusService;
+
+    @BeforeEach
+    void setUp() {
+        orderStatusService = new OrderStatusService();
+        ReflectionTestUtils.setField(orderStatusService, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(orderStatusService, "stockService", mock(StockService.class));
+    }
+
+    private static Order order(String id, OrderStatus status, long version) {
+        Order order = new Order();
+        order.setId(id);
+        order.setStatus(status);
+        order.setVersion(version);
+        return order;
+    }
+
+    // The order as stored; the conditional update does not match it
+    private void stored(Order order) {
+        when(mongoTemplate.findOne(argThat(query -> query != null
+                && order.getId().equals(query.getQueryObject().get("id"))), eq(Order.class))).thenReturn(order);
+    }
+
+    @Test
+    void stateMachineOnlyMovesForwardOrBackToProduction() {
+        assertThat(OrderStatus.SHIPPED.canTransitionTo(OrderStatus.IN_PRODUCTION)).isFalse();
+        assertThat(OrderStatus.QUALITY_CHECK.canTransitionTo(OrderStatus.IN_PRODUCTION)).isTrue();
+        assertThat(OrderStatus.DELIVERED.next()).isEmpty();
+        assertThat(OrderStatus.CANCELLED.next()).isEmpty();
+        assertThat(OrderStatus.IN_PRODUCTION.previous()).containsExactlyInAnyOrder(OrderStatus.PAID,
+                OrderStatus.QUALITY_CHECK);
+    }
+
+    @Test
+    void updateOnlyMatchesStatusesTheTargetIsReachedFrom() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(AggregationUpdate.class), eq(Order.class)))
+                .thenReturn(order("o1", OrderStatus.PAID, 3));
+
+        OrderStatusService.Result result = orderStatusService.transition("o1", OrderStatus.IN_PRODUCTION, 3L, "worker");
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).findAndModify(query.capture(), any(AggregationUpdate.class), eq(Order.class));
+        Document filter = query.getValue().getQueryObject();
+        assertThat(filter.get("status", Document.class).get("$in"))
+                .isEqualTo(EnumSet.of(OrderStatus.PAID, OrderStatus.QUALITY_CHECK));
+        assertThat(filter).containsEntry("version", 3L);
+        assertThat(result.outcome()).isEqualTo(OrderStatusService.Outcome.UPDATED);
+        assertThat(result.version()).isEqualTo(4L);
+        assertThat(result.order().getStatusHistory()).hasSize(1);
+    }
+
+    @Test
+    void shippedOrderIsNotMovedBackToProduction() {
+        stored(order("o1", OrderStatus.SHIPPED, 5));
+
+        OrderStatusService.Result result = orderStatusService.transitionStatusOnly("o1", OrderStatus.IN_PRODUCTION,
+                "worker");
+
+        assertThat(result.outcome()).isEqualTo(OrderStatusService.Outcome.INVALID_TRANSITION);
+        assertThat(result.status()).isEqualTo(OrderStatus.SHIPPED);
+    }
+
+    @Test
+    void staleVersionIsAConflict() {
+        stored(order("o1", OrderStatus.PAID, 4));
+
+        OrderStatusService.Result result = orderStatusService.transition("o1", OrderStatus.IN_PRODUCTION, 3L, "worker");
+
+        assertThat(result.outcome()).isEqualTo(OrderStatusService.Outcome.VERSION_CONFLICT);
+        assertThat(result.isSuccess()).isFalse();
+    }
+
+    @Test
+    void repeatedScanIsUnchanged() {
+        stored(order("o1", OrderStatus.IN_PRODUCTION, 4));
+
+        OrderStatusService.Result result = orderStatusService.transitionStatusOnly("o1", OrderStatus.IN_PRODUCTION,
+                "worker");
+
+        assertThat(result.outcome()).isEqualTo(OrderStatusService.Outcome.UNCHANGED);
+        assertThat(result.isSuccess()).isTrue();
+    }
+
+    @Test
+    void batchReportsEachOrderOnItsOwn() {
+        when(mongoTemplate.findAndModify(argThat(query -> query != null
+                && "o1".equals(query.getQueryObject().get("id"))), any(AggregationUpdate.class), eq(Order.class)))
+                .thenReturn(order("o1", OrderStatus.PAID, 1));
+        stored(order("o2", OrderStatus.DELIVERED, 7));
+
+        List<OrderStatusService.Result> results = orderStatusService.transitionAll(List.of("o1", "o2", "o3", "o1"),
+                OrderStatus.IN_PRODUCTION, "worker");
+
+        assertThat(results).extracting(OrderStatusService.Result::id).containsExactly("o1", "o2", "o3");
+        assertThat(results).extracting(OrderStatusService.Result::outcome).containsExactly(
+                OrderStatusService.Outcome.UPDATED, OrderStatusService.Outcome.INVALID_TRANSITION,
+                OrderStatusService.Outcome.NOT_FOUND);
+    }
+}
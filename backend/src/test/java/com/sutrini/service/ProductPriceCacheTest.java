@@ -0,0 +1,82 @@
+package com.sutrini.service;
+
+import com.sutrini.model.Product;
+import com.sutrini.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checkout prices must follow product changes made anywhere, not only the admin writes
+ * handled by this instance.
+ */
+class ProductPriceCacheTest {
+
+    private final ProductRepository productRepository = mock(ProductRepository.class);
+
+    private ProductPriceCache priceCache;
+
+    @BeforeEach
+    void setUp() {
+        priceCache = new ProductPriceCache();
+        ReflectionTestUtils.setField(priceCache, "productRepository", productRepository);
+        ReflectionTestUtils.setField(priceCache, "maxEntries", 100);
+        ReflectionTestUtils.setField(priceCache, "ttl", 60000L);
+    }
+
+    private void stored(String price) {
+        Product product = new Product();
+        product.setId("p1");
+        product.setName("Silk Saree");
+        product.setBasePrice(new BigDecimal(price));
+        when(productRepository.findAllById(anyIterable())).thenReturn(List.of(product));
+    }
+
+    private BigDecimal price() {
+        return priceCache.getAll(List.of("p1")).get("p1").basePrice();
+    }
+
+    @Test
+    void cachedPriceIsServedWithoutAQuery() {
+        stored("2500");
+        price();
+        price();
+
+        verify(productRepository, times(1)).findAllById(anyIterable());
+    }
+
+    @Test
+    void changeSeenByTheCatalogDropsTheEntry() {
+        stored("2500");
+        price();
+
+        // E.g. an edit on another instance, delivered by the change stream
+        stored("2800");
+        Product changed = new Product();
+        changed.setId("p1");
+        priceCache.productSaved(changed);
+
+        assertThat(price()).isEqualByComparingTo("2800");
+    }
+
+    @Test
+    void entriesExpire() {
+        ReflectionTestUtils.setField(priceCache, "ttl", 0L);
+        stored("2500");
+        price();
+
+        stored("2800");
+
+        assertThat(price()).isEqualByComparingTo("2800");
+    }
+}
@@ -0,0 +1,131 @@
+package com.sutrini.service;
+
+import com.sutrini.model.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Search box latency over a 100k-product catalog: {@link ProductSearchIndex} queries
+ * (typeahead prefix, several words, with a price range) against a case-insensitive
+ * substring scan of every name, which is the work the former regex query left to
+ * MongoDB on each keystroke (before any I/O), plus the cost of indexing one saved product.
+ * <p>
+ * {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=ProductSearchBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class ProductSearchBenchmark {
+
+    private static final String[] MATERIALS = {"silk", "cotton", "linen", "chiffon", "georgette", "organza", "velvet",
+            "crepe", "satin", "khadi"};
+    private static final String[] STYLES = {"banarasi", "kanjivaram", "chanderi", "patola", "bandhani", "ikat",
+            "kalamkari", "paithani", "jamdani", "leheriya", "zari", "embroidered", "printed", "handloom"};
+    private static final String[] CATEGORIES = {"sarees", "blouses", "fabrics", "accessories"};
+    private static final String[] COLORS = {"Red", "Blue", "Black", "Green", "Gold", "Ivory", "Maroon", "Pink"};
+    private static final String[] SIZES = {"S", "M", "L", "XL"};
+    private static final String TENANT = "tenant0";
+
+    @Param("100000")
+    private int products;
+
+    @Param({"sil", "silk sar", "banarasi silk saree"})
+    private String query;
+
+    private ProductSearchIndex index;
+
+    private List<Product> catalog;
+
+    private Pattern pattern;
+
+    private Product saved;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        catalog = new ArrayList<>(products);
+        for (int i = 0; i < products; i++) {
+            String material = MATERIALS[random.nextInt(MATERIALS.length)];
+            String style = STYLES[random.nextInt(STYLES.length)];
+            String category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+            Product product = new Product();
+            product.setId(String.format("%024x", i));
+            product.setTenantId("tenant" + (i % 10));
+            product.setName(capitalize(style) + " " + capitalize(material) + " " + singular(category) + " " + i);
+            product.setCategory(category);
+            product.setDescription("Handcrafted " + material + " " + singular(category) + " with " + style
+                    + " work, finished by our studio artisans");
+            product.setAvailableColors(List.of(COLORS[random.nextInt(COLORS.length)],
+                    COLORS[random.nextInt(COLORS.length)]));
+            product.setAvailableSizes(List.of(SIZES[random.nextInt(SIZES.length)]));
+            product.setBasePrice(BigDecimal.valueOf(500 + random.nextInt(50_000)));
+            product.setStockQuantity(random.nextInt(100));
+            product.setActive(random.nextInt(10) != 0);
+            catalog.add(product);
+        }
+
+        index = new ProductSearchIndex();
+        index.catalogLoaded(CatalogSnapshot.of(1, catalog));
+        pattern = Pattern.compile(Pattern.quote(query), Pattern.CASE_INSENSITIVE);
+        saved = catalog.get(products / 2);
+    }
+
+    @Benchmark
+    public ProductSearchIndex.Result indexFirstPage() {
+        return index.search(TENANT, query, null, null, true, 20);
+    }
+
+    @Benchmark
+    public ProductSearchIndex.Result indexFirstPageInPriceRange() {
+        return index.search(TENANT, query, BigDecimal.valueOf(5_000), BigDecimal.valueOf(20_000), true, 20);
+    }
+
+    @Benchmark
+    public int indexTotalOnly() {
+        return index.search(TENANT, query, null, null, null, 1).total();
+    }
+
+    @Benchmark
+    public List<Product> nameScan() {
+        List<Product> hits = new ArrayList<>();
+        for (Product product : catalog) {
+            if (TENANT.equals(product.getTenantId()) && product.isActive()
+                    && pattern.matcher(product.getName()).find()) {
+                hits.add(product);
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public void indexSavedProduct() {
+        index.productSaved(saved);
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    private static String singular(String category) {
+        return category.equals("accessories") ? "accessory" : category.substring(0, category.length() - 1);
+    }
+}
@@ -0,0 +1,55 @@
+package com.sutrini.service;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+import com.google.zxing.client.j2se.MatrixToImageWriter;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering an order QR code to PNG with {@link QrImageEncoder} against ZXing's
+ * MatrixToImageWriter and ImageIO, which QRCodeService used before. Run with several
+ * threads ({@code -t 4}) to include contention on the encoder's scratch pool.
+ * <p>
+ * {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=QrRenderBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QrRenderBenchmark {
+
+    private static final String CONTENT = "ORDER:64f1c0ffee0123456789abcd";
+
+    @Param({"200", "512"})
+    private int size;
+
+    @Benchmark
+    public byte[] zxingImageIo() throws WriterException, IOException {
+        BitMatrix matrix = new QRCodeWriter().encode(CONTENT, BarcodeFormat.QR_CODE, size, size);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MatrixToImageWriter.writeToStream(matrix, "PNG", out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] pooledEncoder() throws WriterException, IOException {
+        return QrImageEncoder.toPng(QrImageEncoder.encode(CONTENT), size);
+    }
+}
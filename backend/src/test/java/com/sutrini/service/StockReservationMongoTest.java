@@ -0,0 +1,101 @@
+package com.sutrini.service;
+
+import com.sutrini.model.Order;
+import com.sutrini.model.OrderItem;
+import com.sutrini.model.Product;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Concurrent checkouts against a real MongoDB: the conditional {@code $inc} must never
+ * let stock go negative, and an order that cannot get every item must put back what it
+ * took. Skipped when Docker is not available.
+ */
+@DataMongoTest
+@Import(StockService.class)
+@Testcontainers(disabledWithoutDocker = true)
+class StockReservationMongoTest {
+
+    @Container
+    @ServiceConnection
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:7.0");
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private StockService stockService;
+
+    private Product product(String name, int stock) {
+        Product product = new Product();
+        product.setName(name);
+        product.setStockQuantity(stock);
+        return mongoTemplate.insert(product);
+    }
+
+    private static Order order(Product... products) {
+        List<OrderItem> items = new ArrayList<>();
+        for (Product product : products) {
+            OrderItem item = new OrderItem();
+            item.setProductId(product.getId());
+            item.setQuantity(1);
+            items.add(item);
+        }
+        Order order = new Order();
+        order.setItems(items);
+        return order;
+    }
+
+    @Test
+    void concurrentCheckoutsNeverOversell() throws Exception {
+        Product saree = product("Silk Saree", 30);
+        Product blouse = product("Silk Blouse", 20);
+        int checkouts = 100;
+
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < checkouts; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        stockService.reserve(order(saree, blouse));
+                        return true;
+                    } catch (InsufficientStockException e) {
+                        return false;
+                    }
+                }));
+            }
+            start.countDown();
+
+            int reserved = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get()) {
+                    reserved++;
+                }
+            }
+            assertThat(reserved).isEqualTo(20);
+            assertThat(mongoTemplate.findById(blouse.getId(), Product.class).getStockQuantity()).isZero();
+            assertThat(mongoTemplate.findById(saree.getId(), Product.class).getStockQuantity()).isEqualTo(10);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
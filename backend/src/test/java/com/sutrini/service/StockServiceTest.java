@@ -0,0 +1,147 @@
+package com.sutrini.service;
+
+import com.mongodb.client.result.UpdateResult;
+import com.sutrini.model.Order;
+import com.sutrini.model.OrderItem;
+import com.sutrini.model.Product;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Reservation and compensation logic of {@link StockService} against a stand-in for
+ * the products collection that applies each conditional {@code $inc} atomically, as
+ * MongoDB does for a single-document update. {@link StockReservationMongoTest} runs
+ * the same race against a real server.
+ */
+class StockServiceTest {
+
+    private final Map<String, Integer> stock = new ConcurrentHashMap<>();
+
+    private StockService stockService;
+
+    @BeforeEach
+    void setUp() {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(Product.class)))
+                .thenAnswer(invocation -> conditionalIncrement(invocation.getArgument(0), invocation.getArgument(1)));
+        when(mongoTemplate.exists(any(Query.class), eq(Product.class))).thenReturn(false);
+
+        stockService = new StockService();
+        ReflectionTestUtils.setField(stockService, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(stockService, "reservationTtlMinutes", 30L);
+    }
+
+    // {id: x, stockQuantity: {$gte: n} or {$ne: null}} with {$inc: {stockQuantity: d}}
+    private UpdateResult conditionalIncrement(Query query, UpdateDefinition update) {
+        Document filter = query.getQueryObject();
+        String productId = filter.getString("id");
+        Document condition = filter.get("stockQuantity", Document.class);
+        int delta = update.getUpdateObject().get("$inc", Document.class).getInteger("stockQuantity");
+        Integer minimum = condition.getInteger("$gte");
+        boolean[] modified = {false};
+        stock.computeIfPresent(productId, (id, quantity) -> {
+            if (minimum != null && quantity < minimum) {
+                return quantity;
+            }
+            modified[0] = true;
+            return quantity + delta;
+        });
+        return UpdateResult.acknowledged(modified[0] ? 1 : 0, modified[0] ? 1L : 0L, null);
+    }
+
+    private static Order order(String... productIds) {
+        List<OrderItem> items = new ArrayList<>();
+        for (String productId : productIds) {
+            OrderItem item = new OrderItem();
+            item.setProductId(productId);
+            item.setQuantity(1);
+            items.add(item);
+        }
+        Order order = new Order();
+        order.setItems(items);
+        return order;
+    }
+
+    @Test
+    void reservesEveryItemAndMarksTheOrder() {
+        stock.put("saree", 5);
+        stock.put("blouse", 5);
+        Order order = order("saree", "blouse", "blouse");
+
+        stockService.reserve(order);
+
+        assertThat(stock).containsEntry("saree", 4).containsEntry("blouse", 3);
+        assertThat(order.isStockReserved()).isTrue();
+        assertThat(order.getReservationExpiresAt()).isNotNull();
+    }
+
+    @Test
+    void shortItemPutsBackWhatWasAlreadyTaken() {
+        stock.put("blouse", 5);
+        stock.put("saree", 0);
+        Order order = order("blouse", "saree");
+
+        assertThatThrownBy(() -> stockService.reserve(order)).isInstanceOf(InsufficientStockException.class);
+
+        assertThat(stock).containsEntry("blouse", 5).containsEntry("saree", 0);
+        assertThat(order.isStockReserved()).isFalse();
+    }
+
+    @Test
+    void concurrentCheckoutsNeverOversell() throws Exception {
+        // Every order takes one of each; the blouse runs out first, so later orders must give their saree back
+        stock.put("blouse", 20);
+        stock.put("saree", 30);
+        int checkouts = 64;
+
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < checkouts; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        stockService.reserve(order("saree", "blouse"));
+                        return true;
+                    } catch (InsufficientStockException e) {
+                        return false;
+                    }
+                }));
+            }
+            start.countDown();
+
+            int reserved = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get()) {
+                    reserved++;
+                }
+            }
+            assertThat(reserved).isEqualTo(20);
+            assertThat(stock).containsEntry("blouse", 0).containsEntry("saree", 10);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -5,6 +5,7 @@ export const dynamic = 'force-dynamic';
 import { useSearchParams } from 'next/navigation';
 import { useEffect, useState, Suspense } from 'react';
 import { OrderService } from '@/services/order.service';
+import { resolveApiUrl } from '@/lib/api';
 import { Button } from '@/components/ui/button';
 import Link from 'next/link';
 import Image from 'next/image';
@@ -66,7 +67,7 @@ function TrackOrderContent() {
 
                     {order.qrCodeUrl && (
                         <div className="mb-8 flex justify-center relative w-32 h-32 mx-auto">
-                            <Image src={order.qrCodeUrl} alt="Order QR" fill className="object-contain" />
+                            <Image src={resolveApiUrl(order.qrCodeUrl)} alt="Order QR" fill unoptimized className="object-contain" />
                         </div>
                     )}
 
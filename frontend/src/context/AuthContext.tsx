@@ -10,6 +10,7 @@ interface User {
     lastName?: string;
     roles?: string[];
     token?: string;
+    refreshToken?: string;
 }
 
 interface AuthContextType {
@@ -40,6 +41,7 @@ export function AuthProvider({ children }: { children: ReactNode }) {
                 console.error("Failed to load user from storage", error);
                 localStorage.removeItem('user');
                 localStorage.removeItem('token');
+                localStorage.removeItem('refreshToken');
             } finally {
                 setLoading(false);
             }
@@ -52,12 +54,16 @@ export function AuthProvider({ children }: { children: ReactNode }) {
         setUser(userData);
         localStorage.setItem('user', JSON.stringify(userData));
         localStorage.setItem('token', token);
+        if (userData.refreshToken) {
+            localStorage.setItem('refreshToken', userData.refreshToken);
+        }
     };
 
     const logout = () => {
         setUser(null);
         localStorage.removeItem('user');
         localStorage.removeItem('token');
+        localStorage.removeItem('refreshToken');
         router.push('/');
     };
 
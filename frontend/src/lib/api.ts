@@ -17,4 +17,68 @@ api.interceptors.request.use((config) => {
     return config;
 });
 
+type TokenPair = { token: string; refreshToken: string };
+
+// Refresh tokens are single-use: requests failing together share one refresh instead of racing for it
+let refreshing: Promise<TokenPair> | null = null;
+
+const refreshTokens = (refreshToken: string): Promise<TokenPair> => {
+    if (!refreshing) {
+        refreshing = axios.post<TokenPair>(`${api.defaults.baseURL}/auth/refresh`, { refreshToken })
+            .then(({ data }) => {
+                localStorage.setItem('token', data.token);
+                localStorage.setItem('refreshToken', data.refreshToken);
+                return data;
+            })
+            .catch((error) => {
+                // Another tab may have stored a newer token meanwhile; only drop the one that was rejected
+                if (localStorage.getItem('refreshToken') === refreshToken) {
+                    localStorage.removeItem('refreshToken');
+                }
+                throw error;
+            })
+            .finally(() => {
+                refreshing = null;
+            });
+    }
+    return refreshing;
+};
+
+// Access tokens are short-lived; on 401 (missing or expired token, unlike 403 for a missing role)
+// trade the refresh token for a new pair once and retry
+api.interceptors.response.use(
+    (response) => response,
+    async (error) => {
+        const original = error.config;
+        if (error.response?.status !== 401 || !original || original._retry || original.url?.startsWith('/auth/')
+            || typeof window === 'undefined') {
+            return Promise.reject(error);
+        }
+        original._retry = true;
+
+        // Sent before a concurrent refresh stored a new token: just retry with that one
+        const current = localStorage.getItem('token');
+        if (current && original.headers.Authorization !== `Bearer ${current}` && !refreshing) {
+            original.headers.Authorization = `Bearer ${current}`;
+            return api(original);
+        }
+
+        const refreshToken = localStorage.getItem('refreshToken');
+        if (!refreshToken) {
+            return Promise.reject(error);
+        }
+        try {
+            const { token } = await refreshTokens(refreshToken);
+            original.headers.Authorization = `Bearer ${token}`;
+            return api(original);
+        } catch {
+            return Promise.reject(error);
+        }
+    }
+);
+
+// Resolves server-relative paths returned by the backend (e.g. an order's qrCodeUrl) against the API origin
+export const resolveApiUrl = (path: string) =>
+    path.startsWith('/api/') ? `${api.defaults.baseURL?.replace(/\/api$/, '')}${path}` : path;
+
 export default api;